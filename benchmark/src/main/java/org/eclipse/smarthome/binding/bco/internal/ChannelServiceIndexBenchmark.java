@@ -0,0 +1,86 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the string based channel id and service type conversion formerly used by the {@link UnitHandler}
+ * with the lookups of the {@link ChannelServiceIndex}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelServiceIndexBenchmark {
+
+    @Param({"POWER_STATE_SERVICE", "TARGET_TEMPERATURE_STATE_SERVICE"})
+    public String serviceTypeName;
+
+    private ServiceType serviceType;
+    private String channelId;
+
+    @Setup
+    public void setup() {
+        serviceType = ServiceType.valueOf(serviceTypeName);
+        channelId = ChannelServiceIndex.getChannelId(serviceType);
+    }
+
+    @Benchmark
+    public String channelIdByString() {
+        return serviceType.name().replace("_SERVICE", "").toLowerCase();
+    }
+
+    @Benchmark
+    public String channelIdByIndex() {
+        return ChannelServiceIndex.getChannelId(serviceType);
+    }
+
+    @Benchmark
+    public ServiceType serviceTypeByString() {
+        return ServiceType.valueOf(channelId.toUpperCase() + "_SERVICE");
+    }
+
+    @Benchmark
+    public ServiceType serviceTypeByIndex() throws NotAvailableException {
+        return ChannelServiceIndex.getServiceType(channelId);
+    }
+}
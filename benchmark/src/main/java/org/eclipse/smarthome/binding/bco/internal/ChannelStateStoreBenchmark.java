@@ -0,0 +1,165 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares storing and comparing the last known channel states in one map per handler, the layout replaced by the
+ * {@link ChannelStateStore}, with the store. Each invocation touches the next unit so that the accesses are spread over all units
+ * as they are with many handlers. The memory footprint of both variants is reported by {@link StateStoreFootprint}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelStateStoreBenchmark {
+
+    @Param({"10000"})
+    public int unitCount;
+
+    @Param({"10"})
+    public int serviceCount;
+
+    private String[] unitIds;
+    private ServiceType[] serviceTypes;
+    private String[] channelIds;
+    private State[][] states;
+    private List<List<State>> stateLists;
+    private List<Map<String, List<State>>> channelStateMapList;
+    private ChannelStateStore channelStateStore;
+    private int[] slots;
+    private int cursor;
+    private int round;
+
+    @Setup
+    public void setup() {
+        final int services = Math.min(serviceCount, SyntheticServiceStates.SERVICE_TYPES.size());
+        serviceTypes = SyntheticServiceStates.SERVICE_TYPES.subList(0, services).toArray(new ServiceType[0]);
+        channelIds = new String[services];
+        states = new State[services][2];
+        stateLists = new ArrayList<>(services);
+        for (int i = 0; i < services; i++) {
+            channelIds[i] = ChannelServiceIndex.getChannelId(serviceTypes[i]);
+            states[i][0] = SyntheticChannelStates.getState(serviceTypes[i], 0);
+            states[i][1] = SyntheticChannelStates.getState(serviceTypes[i], 1);
+            stateLists.add(Collections.singletonList(states[i][1]));
+        }
+
+        unitIds = new String[unitCount];
+        channelStateMapList = new ArrayList<>(unitCount);
+        channelStateStore = new ChannelStateStore();
+        slots = new int[unitCount * services];
+        final List<ServiceType> serviceTypeList = Arrays.asList(serviceTypes);
+        for (int unit = 0; unit < unitCount; unit++) {
+            unitIds[unit] = "unit-" + unit;
+            final Map<String, List<State>> channelStateMap = new HashMap<>();
+            channelStateStore.register(unitIds[unit], serviceTypeList);
+            for (int i = 0; i < services; i++) {
+                channelStateMap.put(channelIds[i], Collections.singletonList(states[i][0]));
+                slots[unit * services + i] = channelStateStore.getSlot(unitIds[unit], serviceTypes[i]);
+                channelStateStore.put(slots[unit * services + i], states[i][0]);
+            }
+            channelStateMapList.add(channelStateMap);
+        }
+    }
+
+    private int next() {
+        if (++cursor == slots.length) {
+            cursor = 0;
+            round++;
+        }
+        return cursor;
+    }
+
+    @Benchmark
+    public boolean compareMap() {
+        final int position = next();
+        final int service = position % serviceTypes.length;
+        final List<State> last = channelStateMapList.get(position / serviceTypes.length).get(channelIds[service]);
+        return Collections.singletonList(states[service][1]).equals(last);
+    }
+
+    @Benchmark
+    public boolean compareStore() {
+        final int position = next();
+        final int service = position % serviceTypes.length;
+        final int slot = channelStateStore.getSlot(unitIds[position / serviceTypes.length], serviceTypes[service]);
+        return channelStateStore.equalsState(slot, states[service][1]);
+    }
+
+    /**
+     * Compares the states of a channel as the {@link UnitHandler} does before publishing them.
+     */
+    @Benchmark
+    public boolean compareStoreStates() {
+        final int position = next();
+        return channelStateStore.equalsStates(slots[position], stateLists.get(position % serviceTypes.length));
+    }
+
+    @Benchmark
+    public boolean compareStoreBySlot() {
+        final int position = next();
+        return channelStateStore.equalsState(slots[position], states[position % serviceTypes.length][1]);
+    }
+
+    @Benchmark
+    public Object putMap() {
+        final int position = next();
+        final int service = position % serviceTypes.length;
+        final State state = states[service][round & 1];
+        return channelStateMapList.get(position / serviceTypes.length).put(channelIds[service], Collections.singletonList(state));
+    }
+
+    @Benchmark
+    public int putStore() {
+        final int position = next();
+        final int service = position % serviceTypes.length;
+        final int slot = channelStateStore.getSlot(unitIds[position / serviceTypes.length], serviceTypes[service]);
+        channelStateStore.put(slot, states[service][round & 1]);
+        return slot;
+    }
+}
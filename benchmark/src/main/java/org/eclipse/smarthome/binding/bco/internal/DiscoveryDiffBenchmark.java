@@ -0,0 +1,165 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.extension.protobuf.ProtobufListDiff;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former discovery pass, which filtered all units and computed the changes with a
+ * {@link ProtobufListDiff}, with the incremental pass of the {@link BCODiscoveryService} which only filters units
+ * changed since the previous pass. Every invocation alternates between two registry states differing in a
+ * configurable number of units.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryDiffBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int unitCount;
+
+    @Param({"10"})
+    public int modifiedCount;
+
+    private DiscoveryFilterChain filterChain;
+    private List<UnitConfig>[] unitConfigs;
+    private int variant;
+
+    private ProtobufListDiff<String, UnitConfig, UnitConfig.Builder> listDiff;
+
+    private Map<String, UnitConfig> knownUnitConfigMap;
+    private Set<String> discoveredUnitIdSet;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        final SyntheticRegistry registry = new SyntheticRegistry(unitCount);
+        filterChain = DiscoveryFilterChain.createDefault(Collections.emptySet(), Collections.emptySet(), registry::getUnitConfigById, registry::getDeviceClassById);
+        unitConfigs = new List[]{registry.getUnitConfigs(), registry.getModifiedUnitConfigs(modifiedCount)};
+
+        // initial pass so that all benchmarks start with the first registry state known
+        final List<UnitConfig> handledUnitConfigList = filterAll(unitConfigs[0]);
+        listDiff = new ProtobufListDiff<>();
+        listDiff.diffMessages(handledUnitConfigList);
+        knownUnitConfigMap = new HashMap<>();
+        discoveredUnitIdSet = new HashSet<>();
+        for (final UnitConfig unitConfig : unitConfigs[0]) {
+            knownUnitConfigMap.put(unitConfig.getId(), unitConfig);
+        }
+        for (final UnitConfig unitConfig : handledUnitConfigList) {
+            discoveredUnitIdSet.add(unitConfig.getId());
+        }
+    }
+
+    private List<UnitConfig> filterAll(final List<UnitConfig> unitConfigList) throws CouldNotPerformException {
+        filterChain.reset();
+        final List<UnitConfig> handledUnitConfigList = new ArrayList<>();
+        for (final UnitConfig unitConfig : unitConfigList) {
+            if (filterChain.accept(unitConfig)) {
+                handledUnitConfigList.add(unitConfig);
+            }
+        }
+        return handledUnitConfigList;
+    }
+
+    @Benchmark
+    public int filterAndListDiff() throws Exception {
+        variant ^= 1;
+        listDiff.diffMessages(filterAll(unitConfigs[variant]));
+        return listDiff.getNewMessageMap().size() + listDiff.getUpdatedMessageMap().size() + listDiff.getRemovedMessageMap().size();
+    }
+
+    @Benchmark
+    public int incrementalDiffAndFilter() throws CouldNotPerformException {
+        variant ^= 1;
+        final List<UnitConfig> unitConfigList = unitConfigs[variant];
+        final Map<String, UnitConfig> currentUnitConfigMap = new HashMap<>(unitConfigList.size() * 2);
+        final Map<String, UnitConfig> changedUnitConfigMap = new HashMap<>();
+        final Set<String> changedHostedUnitIdSet = new HashSet<>();
+
+        for (final UnitConfig unitConfig : unitConfigList) {
+            currentUnitConfigMap.put(unitConfig.getId(), unitConfig);
+            if (unitConfig.equals(knownUnitConfigMap.get(unitConfig.getId()))) {
+                continue;
+            }
+            changedUnitConfigMap.put(unitConfig.getId(), unitConfig);
+            if (unitConfig.getUnitType() == UnitType.DEVICE) {
+                changedHostedUnitIdSet.addAll(unitConfig.getDeviceConfig().getUnitIdList());
+            }
+        }
+
+        // the units never disappear, but the removal check is part of every pass
+        for (final String unitId : knownUnitConfigMap.keySet()) {
+            if (!currentUnitConfigMap.containsKey(unitId)) {
+                discoveredUnitIdSet.remove(unitId);
+            }
+        }
+        for (final String unitId : changedHostedUnitIdSet) {
+            final UnitConfig unitConfig = currentUnitConfigMap.get(unitId);
+            if (unitConfig != null) {
+                changedUnitConfigMap.putIfAbsent(unitId, unitConfig);
+            }
+        }
+
+        int changes = 0;
+        filterChain.reset();
+        for (final UnitConfig unitConfig : changedUnitConfigMap.values()) {
+            if (filterChain.accept(unitConfig)) {
+                discoveredUnitIdSet.add(unitConfig.getId());
+                changes++;
+            } else if (discoveredUnitIdSet.remove(unitConfig.getId())) {
+                changes++;
+            }
+        }
+        knownUnitConfigMap = currentUnitConfigMap;
+        return changes;
+    }
+}
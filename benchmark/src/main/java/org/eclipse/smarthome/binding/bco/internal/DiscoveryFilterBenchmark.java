@@ -0,0 +1,91 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a discovery filter pass over a synthetic registry, once with the host decision cached for the whole pass
+ * and once with the cache reset for every unit which equals the former behaviour of resolving the host every time.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryFilterBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int unitCount;
+
+    private SyntheticRegistry registry;
+    private DiscoveryFilterChain filterChain;
+
+    @Setup
+    public void setup() {
+        registry = new SyntheticRegistry(unitCount);
+        filterChain = DiscoveryFilterChain.createDefault(Collections.emptySet(), Collections.emptySet(), registry::getUnitConfigById, registry::getDeviceClassById);
+    }
+
+    @Benchmark
+    public int filterWithHostCache() throws CouldNotPerformException {
+        int handled = 0;
+        filterChain.reset();
+        for (final UnitConfig unitConfig : registry.getUnitConfigs()) {
+            if (filterChain.accept(unitConfig)) {
+                handled++;
+            }
+        }
+        return handled;
+    }
+
+    @Benchmark
+    public int filterWithoutHostCache() throws CouldNotPerformException {
+        int handled = 0;
+        for (final UnitConfig unitConfig : registry.getUnitConfigs()) {
+            filterChain.reset();
+            if (filterChain.accept(unitConfig)) {
+                handled++;
+            }
+        }
+        return handled;
+    }
+}
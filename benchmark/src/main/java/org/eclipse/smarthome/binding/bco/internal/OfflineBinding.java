@@ -0,0 +1,158 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Dictionary;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates all components shared by the handlers without connecting to bco, so that handlers can be driven with
+ * stub remotes. Remotes and unit configs are provided by the given pool and registry access instead of bco.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class OfflineBinding {
+
+    private final ScheduledExecutorService scheduler;
+    private final BCOMetricRegistry metricRegistry;
+    private final BCOExecutor executor;
+    private final BCOConnector connector;
+    private final CommandBatcher commandBatcher;
+    private final UnitInitializer unitInitializer;
+    private final ReconnectManager reconnectManager;
+    private final LocationAggregateCache locationAggregateCache;
+    private final RemoteActivationTracker activationTracker;
+    private final BCOBindingContext context;
+
+    /**
+     * @param remotePool         the pool providing the remotes of the units.
+     * @param registryAccess     the access providing the unit configs.
+     * @param commandBatchWindow the time in milliseconds commands are collected before they are dispatched.
+     * @param updateInterval     the minimal time in milliseconds between two channel updates of a thing.
+     */
+    public OfflineBinding(final UnitRemotePool remotePool, final BCORegistryAccess registryAccess, final long commandBatchWindow, final long updateInterval) {
+        this.scheduler = Executors.newScheduledThreadPool(2);
+        this.metricRegistry = new BCOMetricRegistry();
+        this.executor = new BCOExecutor();
+        this.executor.setMetricRegistry(metricRegistry);
+        this.executor.activate(null);
+        this.connector = new OfflineConnector(metricRegistry);
+        this.commandBatcher = new CommandBatcher(
+                commandBatchWindow,
+                BCOBindingConstants.DEFAULT_MAX_IN_FLIGHT_ACTIONS,
+                BCOBindingConstants.DEFAULT_MAX_IN_FLIGHT_ACTIONS_PER_UNIT,
+                scheduler,
+                executor,
+                metricRegistry);
+        this.unitInitializer = new UnitInitializer(BCOBindingConstants.DEFAULT_INITIALIZATION_THREADS, metricRegistry);
+        this.reconnectManager = new ReconnectManager(
+                BCOBindingConstants.DEFAULT_RECONNECT_GROUPING_WINDOW,
+                BCOBindingConstants.DEFAULT_RECONNECT_JITTER,
+                BCOBindingConstants.DEFAULT_MAX_CONCURRENT_RESYNCS,
+                scheduler,
+                metricRegistry);
+        this.locationAggregateCache = new LocationAggregateCache(remotePool, registryAccess);
+        // remotes are activated eagerly because the simulated things have no link registry
+        this.activationTracker = new RemoteActivationTracker(false, BCOBindingConstants.DEFAULT_REMOTE_IDLE_TIMEOUT, metricRegistry);
+        // the snapshot store is not activated, so states are only kept in memory
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        final BCOSnapshotStore snapshotStore = new BCOSnapshotStore();
+        snapshotStore.setChannelStateStore(channelStateStore);
+        this.context = new BCOBindingContext(
+                updateInterval,
+                connector,
+                commandBatcher,
+                unitInitializer,
+                locationAggregateCache,
+                metricRegistry,
+                reconnectManager,
+                remotePool,
+                executor,
+                SamplingConfiguration.DISABLED,
+                snapshotStore,
+                registryAccess,
+                activationTracker,
+                channelStateStore);
+    }
+
+    public BCOBindingContext getContext() {
+        return context;
+    }
+
+    public BCOMetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public BCOExecutor getExecutor() {
+        return executor;
+    }
+
+    public CommandBatcher getCommandBatcher() {
+        return commandBatcher;
+    }
+
+    /**
+     * Stop all components in the same order as the handler factory.
+     *
+     * @throws InterruptedException is thrown if the thread was externally interrupted.
+     */
+    public void shutdown() throws InterruptedException {
+        connector.shutdown();
+        commandBatcher.shutdown();
+        locationAggregateCache.shutdown();
+        reconnectManager.shutdown();
+        unitInitializer.shutdown();
+        activationTracker.shutdown();
+        executor.deactivate();
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Connector which is ready right away, so that handlers initialize without connecting to bco.
+     */
+    private static class OfflineConnector extends BCOConnector {
+
+        private final CompletableFuture<Void> readyFuture = CompletableFuture.completedFuture(null);
+
+        private OfflineConnector(final BCOMetricRegistry metricRegistry) {
+            super(BCOBindingConstants.DEFAULT_CONNECTION_TIMEOUT,
+                    BCOBindingConstants.DEFAULT_CONNECTION_BACKOFF,
+                    BCOBindingConstants.DEFAULT_MAX_CONNECTION_BACKOFF,
+                    metricRegistry);
+        }
+
+        @Override
+        public void connect(final Dictionary<String, Object> properties) {
+            // nothing to connect to
+        }
+
+        @Override
+        public CompletableFuture<Void> getReadyFuture() {
+            return readyFuture;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.config.discovery.DiscoveryListener;
+import org.eclipse.smarthome.config.discovery.DiscoveryResult;
+import org.eclipse.smarthome.config.discovery.DiscoveryService;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.extension.type.processing.LabelProcessor;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.language.LabelType.Label;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load and soak harness running the discovery and the unit handlers of the binding against a simulated registry
+ * with thousands of units. The units change their service states and configs at configurable rates and the
+ * harness periodically reports the throughput, the latency from a state change to the channel update
+ * published to openHAB, the allocation rate and the number of threads.
+ * <p>
+ * The harness is configured by system properties:
+ * <ul>
+ * <li>{@code units}: the number of units of the registry, about half of them are handled by the binding (default 10000).</li>
+ * <li>{@code services}: the number of services per unit (default 3).</li>
+ * <li>{@code stateRate}: the number of state changes per second over all units (default 5000).</li>
+ * <li>{@code configRate}: the number of config changes per second over all units (default 1).</li>
+ * <li>{@code updateInterval}: the update interval of the handlers in milliseconds (default 50).</li>
+ * <li>{@code duration}: the duration of the measurement in seconds (default 60).</li>
+ * <li>{@code reportInterval}: the time between two reports in seconds (default 5).</li>
+ * <li>{@code gate.p99}: if set, the harness exits with 1 if the 99th percentile of the end-to-end latency in
+ * milliseconds is higher, so that it can be used as a regression gate.</li>
+ * </ul>
+ * Run it via {@code java -Dunits=20000 -cp target/benchmarks.jar org.eclipse.smarthome.binding.bco.internal.SoakHarness}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class SoakHarness {
+
+    // in milliseconds
+    private static final long GENERATOR_PERIOD = 10;
+    // in milliseconds
+    private static final long STARTUP_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private final int unitCount;
+    private final int serviceCount;
+    private final double stateRate;
+    private final double configRate;
+    private final long updateInterval;
+    private final long duration;
+    private final long reportInterval;
+    private final long p99Gate;
+
+    private final SyntheticRegistryAccess registryAccess;
+    private final SyntheticUnitRemotePool remotePool;
+    private final OfflineBinding binding;
+    private final StubThingHandlerCallback callback;
+    private final BCODiscoveryService discoveryService;
+    private final Map<ThingUID, UnitHandler> handlerMap;
+
+    /**
+     * Time of the oldest state change per channel which has not been published yet, measured by {@link System#nanoTime()}.
+     */
+    private final Map<ChannelUID, Long> pendingChangeMap;
+    private final LatencyHistogram intervalLatencyHistogram;
+    private final LatencyHistogram totalLatencyHistogram;
+    private final AtomicLong stateChangeCounter;
+    private final AtomicLong configChangeCounter;
+
+    private final ThreadMXBean threadMXBean;
+    private List<UnitStream> unitStreamList;
+    private long measurementStartTime;
+    private double pendingStateChanges;
+    private double pendingConfigChanges;
+
+    public SoakHarness() {
+        this.unitCount = Integer.getInteger("units", 10000);
+        this.serviceCount = Math.min(Integer.getInteger("services", 3), SyntheticServiceStates.SERVICE_TYPES.size());
+        this.stateRate = Double.parseDouble(System.getProperty("stateRate", "5000"));
+        this.configRate = Double.parseDouble(System.getProperty("configRate", "1"));
+        this.updateInterval = Long.getLong("updateInterval", BCOBindingConstants.DEFAULT_UPDATE_INTERVAL);
+        this.duration = TimeUnit.SECONDS.toMillis(Long.getLong("duration", 60));
+        this.reportInterval = TimeUnit.SECONDS.toMillis(Long.getLong("reportInterval", 5));
+        this.p99Gate = Long.getLong("gate.p99", -1);
+
+        final SyntheticRegistry registry = new SyntheticRegistry(unitCount);
+        this.registryAccess = new SyntheticRegistryAccess(registry);
+        this.remotePool = new SyntheticUnitRemotePool(registry, serviceCount);
+        this.binding = new OfflineBinding(remotePool, registryAccess, BCOBindingConstants.DEFAULT_COMMAND_BATCH_WINDOW, updateInterval);
+        this.handlerMap = new ConcurrentHashMap<>();
+        this.pendingChangeMap = new ConcurrentHashMap<>();
+        this.intervalLatencyHistogram = new LatencyHistogram("EndToEnd");
+        this.totalLatencyHistogram = new LatencyHistogram("EndToEndTotal");
+        this.stateChangeCounter = new AtomicLong();
+        this.configChangeCounter = new AtomicLong();
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.callback = new StubThingHandlerCallback((channelUID, state) -> {
+            final Long changeTime = pendingChangeMap.remove(channelUID);
+            if (changeTime != null) {
+                intervalLatencyHistogram.recordSince(changeTime);
+                totalLatencyHistogram.recordSince(changeTime);
+            }
+        });
+
+        this.discoveryService = new BCODiscoveryService();
+        discoveryService.setMetricRegistry(binding.getMetricRegistry());
+        discoveryService.setExecutor(binding.getExecutor());
+        discoveryService.setSnapshotStore(new BCOSnapshotStore());
+        discoveryService.setRegistryAccess(registryAccess);
+        discoveryService.addDiscoveryListener(createDiscoveryListener());
+    }
+
+    /**
+     * Emulates the inbox with auto approval: every discovered thing is created and initialized right away.
+     */
+    private DiscoveryListener createDiscoveryListener() {
+        return (DiscoveryListener) Proxy.newProxyInstance(DiscoveryListener.class.getClassLoader(), new Class<?>[]{DiscoveryListener.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "thingDiscovered":
+                    thingDiscovered((DiscoveryResult) args[1]);
+                    return null;
+                case "thingRemoved":
+                    thingRemoved((ThingUID) args[1]);
+                    return null;
+                case "removeOlderResults":
+                    return Collections.emptyList();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private void thingDiscovered(final DiscoveryResult discoveryResult) {
+        handlerMap.computeIfAbsent(discoveryResult.getThingUID(), thingUID -> {
+            final Thing thing = ThingBuilder.create(BCOBindingConstants.UNIT_THING_TYPE_UID, thingUID.getId()).withLabel(discoveryResult.getLabel()).build();
+            final UnitHandler unitHandler = new UnitHandler(thing, binding.getContext());
+            unitHandler.setCallback(callback.getCallback());
+            unitHandler.initialize();
+            return unitHandler;
+        });
+    }
+
+    private void thingRemoved(final ThingUID thingUID) {
+        final UnitHandler unitHandler = handlerMap.remove(thingUID);
+        if (unitHandler != null) {
+            unitHandler.dispose();
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final SoakHarness harness = new SoakHarness();
+        final boolean passed = harness.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Start the binding, apply the load for the configured duration and shut everything down.
+     *
+     * @return false if the latency gate was exceeded or the startup failed.
+     * @throws Exception if the harness could not be executed.
+     */
+    public boolean run() throws Exception {
+        System.out.printf("Start %d units with %d services, %.0f state changes/s and %.1f config changes/s for %ds%n",
+                unitCount, serviceCount, stateRate, configRate, TimeUnit.MILLISECONDS.toSeconds(duration));
+
+        final long startupTime = System.nanoTime();
+        final Map<String, Object> discoveryConfig = new HashMap<>();
+        discoveryConfig.put(DiscoveryService.CONFIG_PROPERTY_BACKGROUND_DISCOVERY, true);
+        discoveryService.activate(discoveryConfig);
+        if (!awaitStartup()) {
+            System.out.println("Startup did not finish within " + TimeUnit.MILLISECONDS.toSeconds(STARTUP_TIMEOUT) + "s");
+            shutdown();
+            return false;
+        }
+        System.out.printf("Started %d handlers in %dms, %d threads%n", handlerMap.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startupTime), threadMXBean.getThreadCount());
+
+        unitStreamList = new ArrayList<>();
+        for (final UnitHandler unitHandler : handlerMap.values()) {
+            unitStreamList.add(new UnitStream(remotePool.getStub(unitHandler.getThing().getUID().getId()), unitHandler.getThing().getUID()));
+        }
+        intervalLatencyHistogram.reset();
+        totalLatencyHistogram.reset();
+
+        final ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor();
+        generator.scheduleAtFixedRate(this::generate, GENERATOR_PERIOD, GENERATOR_PERIOD, TimeUnit.MILLISECONDS);
+
+        measurementStartTime = System.nanoTime();
+        final long publishedStart = callback.getStateUpdateCount();
+        Snapshot lastSnapshot = new Snapshot();
+        while (System.nanoTime() - measurementStartTime < TimeUnit.MILLISECONDS.toNanos(duration)) {
+            Thread.sleep(reportInterval);
+            final Snapshot snapshot = new Snapshot();
+            report(lastSnapshot, snapshot);
+            lastSnapshot = snapshot;
+        }
+
+        generator.shutdownNow();
+        generator.awaitTermination(5, TimeUnit.SECONDS);
+
+        final double seconds = (System.nanoTime() - measurementStartTime) / 1e9;
+        final long p99 = TimeUnit.MICROSECONDS.toMillis(totalLatencyHistogram.getPercentile(0.99));
+        System.out.printf("Total: %d state changes, %.0f channel updates/s, %d config changes, %s, peak %d threads%n",
+                stateChangeCounter.get(), (callback.getStateUpdateCount() - publishedStart) / seconds, configChangeCounter.get(),
+                totalLatencyHistogram, threadMXBean.getPeakThreadCount());
+        for (final LatencyHistogram histogram : binding.getMetricRegistry().getHistograms()) {
+            System.out.println("  " + histogram);
+        }
+
+        shutdown();
+
+        if (p99Gate >= 0 && p99 > p99Gate) {
+            System.out.printf("FAILED: p99 end-to-end latency of %dms exceeds the gate of %dms%n", p99, p99Gate);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wait until all handled units are discovered and their handlers acquired a remote.
+     */
+    private boolean awaitStartup() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            if (!handlerMap.isEmpty() && remotePool.getReferenceCount() == handlerMap.size() && discoveryService.getLastProcessedUnitCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Emit the state and config changes due for one generator period.
+     */
+    private void generate() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        pendingStateChanges += stateRate * GENERATOR_PERIOD / 1000d;
+        while (pendingStateChanges >= 1) {
+            pendingStateChanges--;
+            unitStreamList.get(random.nextInt(unitStreamList.size())).changeState(random.nextInt(serviceCount));
+        }
+
+        pendingConfigChanges += configRate * GENERATOR_PERIOD / 1000d;
+        while (pendingConfigChanges >= 1) {
+            pendingConfigChanges--;
+            try {
+                unitStreamList.get(random.nextInt(unitStreamList.size())).changeConfig();
+            } catch (CouldNotPerformException ex) {
+                System.out.println("Could not change config: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void report(final Snapshot last, final Snapshot current) {
+        final double seconds = (current.time - last.time) / 1e9;
+        System.out.printf("%5ds changes %7.0f/s published %7.0f/s configs %4d discovery passes %4d queue %5d threads %3d alloc %7.1fMB/s %s%n",
+                TimeUnit.NANOSECONDS.toSeconds(current.time - measurementStartTime),
+                (current.stateChanges - last.stateChanges) / seconds,
+                (current.published - last.published) / seconds,
+                current.configChanges - last.configChanges,
+                current.discoveryPasses - last.discoveryPasses,
+                binding.getExecutor().getQueueDepth(),
+                current.threads,
+                (current.allocatedBytes - last.allocatedBytes) / seconds / (1024 * 1024),
+                intervalLatencyHistogram);
+        intervalLatencyHistogram.reset();
+    }
+
+    private void shutdown() throws InterruptedException {
+        discoveryService.deactivate();
+        for (final ThingUID thingUID : new ArrayList<>(handlerMap.keySet())) {
+            thingRemoved(thingUID);
+        }
+        binding.shutdown();
+        if (remotePool.getReferenceCount() != 0) {
+            System.out.println("Remote references left after shutdown: " + remotePool.getReferenceCountMap());
+        }
+        if (remotePool.getObserverCount() != 0) {
+            System.out.println("Remote observers left after shutdown: " + remotePool.getObserverCountMap());
+        }
+        if (!remotePool.getActiveReleasedRemoteIds().isEmpty()) {
+            System.out.println("Released remotes still active after shutdown: " + remotePool.getActiveReleasedRemoteIds());
+        }
+    }
+
+    /**
+     * Sum of the bytes allocated by all live threads. Allocations of threads which already terminated are lost,
+     * so the rate is a lower bound.
+     */
+    private long getAllocatedBytes() {
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long allocatedBytes = 0;
+        for (final long allocated : ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            allocatedBytes += Math.max(0, allocated);
+        }
+        return allocatedBytes;
+    }
+
+    /**
+     * Counters at one point in time.
+     */
+    private class Snapshot {
+
+        private final long time = System.nanoTime();
+        private final long stateChanges = stateChangeCounter.get();
+        private final long configChanges = configChangeCounter.get();
+        private final long published = callback.getStateUpdateCount();
+        private final long discoveryPasses = binding.getMetricRegistry().getHistogram(BCOMetricRegistry.DISCOVERY_SCAN).getCount();
+        private final int threads = threadMXBean.getThreadCount();
+        private final long allocatedBytes = getAllocatedBytes();
+    }
+
+    /**
+     * State and config changes of one unit.
+     */
+    private class UnitStream {
+
+        private final StubUnitRemote stub;
+        private final ServiceType[] serviceTypes;
+        private final ChannelUID[] channelUIDs;
+        private final int[] variants;
+        private int renameCount;
+
+        private UnitStream(final StubUnitRemote stub, final ThingUID thingUID) {
+            this.stub = stub;
+            this.serviceTypes = new ServiceType[serviceCount];
+            this.channelUIDs = new ChannelUID[serviceCount];
+            this.variants = new int[serviceCount];
+            for (int i = 0; i < serviceCount; i++) {
+                serviceTypes[i] = SyntheticServiceStates.SERVICE_TYPES.get(i);
+                channelUIDs[i] = new ChannelUID(thingUID, ChannelServiceIndex.getChannelId(serviceTypes[i]));
+            }
+        }
+
+        private void changeState(final int serviceIndex) {
+            variants[serviceIndex] ^= 1;
+            pendingChangeMap.putIfAbsent(channelUIDs[serviceIndex], System.nanoTime());
+            stub.setServiceState(serviceTypes[serviceIndex], SyntheticServiceStates.getState(serviceTypes[serviceIndex], variants[serviceIndex]));
+            stateChangeCounter.incrementAndGet();
+        }
+
+        private void changeConfig() throws CouldNotPerformException {
+            final UnitConfig unitConfig = registryAccess.getUnitConfigById(stub.getId()).toBuilder()
+                    .setLabel(LabelProcessor.addLabel(Label.newBuilder(), Locale.ENGLISH, stub.getId() + " renamed " + (++renameCount)))
+                    .build();
+            registryAccess.update(unitConfig);
+            stub.setConfig(unitConfig);
+            configChangeCounter.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the heap retained by the last known channel states of many units, once stored in one map per handler,
+ * the layout replaced by the {@link ChannelStateStore}, and once in the store.
+ * The retained heap is the difference of the used heap after a full garbage collection, so the JVM should be
+ * started with a fixed heap size, e.g. {@code -Xms2g -Xmx2g}, to get stable results.
+ * <p>
+ * Options, given as system properties:
+ * <ul>
+ * <li>{@code units}: the number of units, default 10000.</li>
+ * <li>{@code services}: the number of services per unit, at most 10, default 10.</li>
+ * </ul>
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class StateStoreFootprint {
+
+    private static final int GC_RUNS = 5;
+
+    private final int unitCount;
+    private final List<ServiceType> serviceTypeList;
+
+    public StateStoreFootprint() {
+        this.unitCount = Integer.getInteger("units", 10000);
+        final int serviceCount = Math.min(Integer.getInteger("services", 10), SyntheticServiceStates.SERVICE_TYPES.size());
+        this.serviceTypeList = SyntheticServiceStates.SERVICE_TYPES.subList(0, serviceCount);
+    }
+
+    public static void main(final String[] args) {
+        new StateStoreFootprint().run();
+    }
+
+    private void run() {
+        final int stateCount = unitCount * serviceTypeList.size();
+        System.out.printf("Store the states of %d units with %d services%n", unitCount, serviceTypeList.size());
+
+        long baseline = usedHeap();
+        final List<Map<String, List<State>>> channelStateMapList = createChannelStateMaps();
+        final long mapBytes = usedHeap() - baseline;
+        report("Maps per handler", mapBytes, stateCount);
+        // keep the maps reachable until they have been measured
+        if (channelStateMapList.size() != unitCount) {
+            throw new IllegalStateException("Unexpected number of maps");
+        }
+        channelStateMapList.clear();
+
+        baseline = usedHeap();
+        final ChannelStateStore channelStateStore = createChannelStateStore();
+        final long storeBytes = usedHeap() - baseline;
+        report("Channel state store", storeBytes, stateCount);
+        System.out.printf("Channel state store estimate: %d bytes for %d slots%n", channelStateStore.getFootprint(), channelStateStore.getSlotCount());
+        System.out.printf("Ratio: %.1fx%n", storeBytes > 0 ? (double) mapBytes / storeBytes : Double.NaN);
+    }
+
+    private List<Map<String, List<State>>> createChannelStateMaps() {
+        final List<Map<String, List<State>>> channelStateMapList = new ArrayList<>(unitCount);
+        for (int unit = 0; unit < unitCount; unit++) {
+            final Map<String, List<State>> channelStateMap = new HashMap<>();
+            for (final ServiceType serviceType : serviceTypeList) {
+                final List<State> stateList = new ArrayList<>();
+                stateList.add(SyntheticChannelStates.getState(serviceType, unit));
+                channelStateMap.put(ChannelServiceIndex.getChannelId(serviceType), stateList);
+            }
+            channelStateMapList.add(channelStateMap);
+        }
+        return channelStateMapList;
+    }
+
+    private ChannelStateStore createChannelStateStore() {
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        for (int unit = 0; unit < unitCount; unit++) {
+            final String unitId = "unit-" + unit;
+            channelStateStore.register(unitId, serviceTypeList);
+            for (final ServiceType serviceType : serviceTypeList) {
+                channelStateStore.put(channelStateStore.getSlot(unitId, serviceType), SyntheticChannelStates.getState(serviceType, unit));
+            }
+        }
+        return channelStateStore;
+    }
+
+    private static void report(final String name, final long bytes, final int stateCount) {
+        System.out.printf("%s: %d KiB, %.1f bytes per state%n", name, bytes / 1024, (double) bytes / stateCount);
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_RUNS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,108 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.binding.ThingHandlerCallback;
+import org.eclipse.smarthome.core.types.State;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Stand-in for the callback openHAB passes to thing handlers. State updates are counted and forwarded to an
+ * optional listener, thing updates are accepted and all other calls are ignored.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class StubThingHandlerCallback implements InvocationHandler {
+
+    private final AtomicLong stateUpdateCounter;
+    private final AtomicLong thingUpdateCounter;
+    private final BiConsumer<ChannelUID, State> stateListener;
+    private final ThingHandlerCallback proxy;
+
+    public StubThingHandlerCallback() {
+        this((channelUID, state) -> {
+            // ignore
+        });
+    }
+
+    /**
+     * @param stateListener called for every state update of a channel.
+     */
+    public StubThingHandlerCallback(final BiConsumer<ChannelUID, State> stateListener) {
+        this.stateUpdateCounter = new AtomicLong();
+        this.thingUpdateCounter = new AtomicLong();
+        this.stateListener = stateListener;
+        this.proxy = (ThingHandlerCallback) Proxy.newProxyInstance(ThingHandlerCallback.class.getClassLoader(), new Class<?>[]{ThingHandlerCallback.class}, this);
+    }
+
+    /**
+     * @return the callback backed by this stub.
+     */
+    public ThingHandlerCallback getCallback() {
+        return proxy;
+    }
+
+    /**
+     * @return the number of channel states published.
+     */
+    public long getStateUpdateCount() {
+        return stateUpdateCounter.get();
+    }
+
+    /**
+     * @return the number of thing updates, e.g. because channels were added.
+     */
+    public long getThingUpdateCount() {
+        return thingUpdateCounter.get();
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "stateUpdated":
+                stateUpdateCounter.incrementAndGet();
+                stateListener.accept((ChannelUID) args[0], (State) args[1]);
+                return null;
+            case "thingUpdated":
+                thingUpdateCounter.incrementAndGet();
+                return null;
+            case "isChannelLinked":
+                return true;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "StubThingHandlerCallback";
+            default:
+                return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.extension.type.processing.LabelProcessor;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.type.domotic.action.ActionDescriptionType.ActionDescription;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.state.ConnectionStateType.ConnectionState;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the remote of a unit. Only the methods used by the binding are answered, all other methods
+ * return default values. Service states and the config are set directly and reported to the observers like a remote
+ * would do after receiving new data.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class StubUnitRemote implements InvocationHandler {
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULT_MAP = new HashMap<>();
+
+    static {
+        PRIMITIVE_DEFAULT_MAP.put(boolean.class, false);
+        PRIMITIVE_DEFAULT_MAP.put(byte.class, (byte) 0);
+        PRIMITIVE_DEFAULT_MAP.put(short.class, (short) 0);
+        PRIMITIVE_DEFAULT_MAP.put(char.class, (char) 0);
+        PRIMITIVE_DEFAULT_MAP.put(int.class, 0);
+        PRIMITIVE_DEFAULT_MAP.put(long.class, 0L);
+        PRIMITIVE_DEFAULT_MAP.put(float.class, 0f);
+        PRIMITIVE_DEFAULT_MAP.put(double.class, 0d);
+    }
+
+    private volatile UnitConfig unitConfig;
+    private volatile String label;
+    private final Set<ServiceType> serviceTypes;
+    private final Map<ServiceType, Message> serviceStateMap;
+    private final List<Observer> dataObserverList;
+    private final List<Observer> configObserverList;
+    private final AtomicLong appliedActionCounter;
+    private volatile boolean active;
+    private final UnitRemote<?> proxy;
+
+    /**
+     * @param unitId        the id of the unit.
+     * @param unitType      the type of the unit.
+     * @param serviceStates the initial state of every service provided by the unit.
+     */
+    public StubUnitRemote(final String unitId, final UnitType unitType, final Map<ServiceType, Message> serviceStates) {
+        this(UnitConfig.newBuilder().setId(unitId).setUnitType(unitType).addAlias(unitId).build(), serviceStates);
+    }
+
+    /**
+     * @param unitConfig    the config of the unit.
+     * @param serviceStates the initial state of every service provided by the unit.
+     */
+    public StubUnitRemote(final UnitConfig unitConfig, final Map<ServiceType, Message> serviceStates) {
+        this.unitConfig = unitConfig;
+        this.label = resolveLabel(unitConfig);
+        this.serviceStateMap = Collections.synchronizedMap(new EnumMap<>(ServiceType.class));
+        this.serviceStateMap.putAll(serviceStates);
+        this.serviceTypes = Collections.unmodifiableSet(serviceStates.isEmpty() ? EnumSet.noneOf(ServiceType.class) : EnumSet.copyOf(serviceStates.keySet()));
+        this.dataObserverList = new CopyOnWriteArrayList<>();
+        this.configObserverList = new CopyOnWriteArrayList<>();
+        this.appliedActionCounter = new AtomicLong();
+        this.proxy = (UnitRemote<?>) Proxy.newProxyInstance(UnitRemote.class.getClassLoader(), new Class<?>[]{UnitRemote.class}, this);
+    }
+
+    private static String resolveLabel(final UnitConfig unitConfig) {
+        try {
+            return LabelProcessor.getBestMatch(unitConfig.getLabel());
+        } catch (NotAvailableException ex) {
+            return unitConfig.getId();
+        }
+    }
+
+    /**
+     * @return the remote backed by this stub.
+     */
+    public UnitRemote<?> getRemote() {
+        return proxy;
+    }
+
+    public String getId() {
+        return unitConfig.getId();
+    }
+
+    /**
+     * Change the state of a service without notifying the data observers.
+     *
+     * @param serviceType  the service to change.
+     * @param serviceState the new state of the service.
+     */
+    public void putServiceState(final ServiceType serviceType, final Message serviceState) {
+        serviceStateMap.put(serviceType, serviceState);
+    }
+
+    /**
+     * Change the state of a service and notify the data observers.
+     *
+     * @param serviceType  the service to change.
+     * @param serviceState the new state of the service.
+     */
+    public void setServiceState(final ServiceType serviceType, final Message serviceState) {
+        serviceStateMap.put(serviceType, serviceState);
+        notifyObservers(dataObserverList, serviceState);
+    }
+
+    /**
+     * Change the config of the unit and notify the config observers.
+     *
+     * @param unitConfig the new config of the unit.
+     */
+    public void setConfig(final UnitConfig unitConfig) {
+        this.unitConfig = unitConfig;
+        this.label = resolveLabel(unitConfig);
+        notifyObservers(configObserverList, unitConfig);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyObservers(final List<Observer> observerList, final Object value) {
+        for (final Observer observer : observerList) {
+            try {
+                observer.update(proxy, value);
+            } catch (Exception ex) {
+                throw new IllegalStateException("Observer of " + getId() + " failed", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the number of actions applied on the remote.
+     */
+    public long getAppliedActionCount() {
+        return appliedActionCounter.get();
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "getId":
+                return unitConfig.getId();
+            case "getLabel":
+                return label;
+            case "getUnitType":
+                return unitConfig.getUnitType();
+            case "getConfig":
+                return unitConfig;
+            case "getAvailableServiceTypes":
+                return serviceTypes;
+            case "getServiceState":
+                if (args != null && args.length == 1 && args[0] instanceof ServiceType) {
+                    return serviceStateMap.get(args[0]);
+                }
+                break;
+            case "activate":
+                active = true;
+                return null;
+            case "deactivate":
+                active = false;
+                return null;
+            case "isActive":
+                return active;
+            case "isConnected":
+            case "isDataAvailable":
+                return true;
+            case "getConnectionState":
+                return ConnectionState.State.CONNECTED;
+            case "addDataObserver":
+                dataObserverList.add((Observer) args[0]);
+                return null;
+            case "removeDataObserver":
+                dataObserverList.remove(args[0]);
+                return null;
+            case "addConfigObserver":
+                configObserverList.add((Observer) args[0]);
+                return null;
+            case "removeConfigObserver":
+                configObserverList.remove(args[0]);
+                return null;
+            case "applyAction":
+                appliedActionCounter.incrementAndGet();
+                return CompletableFuture.completedFuture(ActionDescription.getDefaultInstance());
+            case "requestData":
+                return CompletableFuture.completedFuture(null);
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "StubUnitRemote[" + unitConfig.getId() + "]";
+            default:
+                break;
+        }
+        return PRIMITIVE_DEFAULT_MAP.get(method.getReturnType());
+    }
+}
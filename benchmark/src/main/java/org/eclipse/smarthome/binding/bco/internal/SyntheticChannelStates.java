@@ -0,0 +1,78 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.math.BigDecimal;
+
+/**
+ * Channel states of the service types of {@link SyntheticServiceStates} as published by the handlers. Every call
+ * creates new state objects, as the transformation of a service state does.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public final class SyntheticChannelStates {
+
+    private SyntheticChannelStates() {
+        // utility class
+    }
+
+    /**
+     * @param serviceType one of {@link SyntheticServiceStates#SERVICE_TYPES}.
+     * @param variant     selects one of two different states.
+     * @return the channel state.
+     */
+    public static State getState(final ServiceType serviceType, final int variant) {
+        final boolean first = variant % 2 == 0;
+        switch (serviceType) {
+            case POWER_STATE_SERVICE:
+            case MOTION_STATE_SERVICE:
+                return first ? OnOffType.ON : OnOffType.OFF;
+            case CONTACT_STATE_SERVICE:
+                return first ? OpenClosedType.OPEN : OpenClosedType.CLOSED;
+            case BRIGHTNESS_STATE_SERVICE:
+                return new PercentType(first ? 20 : 80);
+            case BATTERY_STATE_SERVICE:
+                return new PercentType(first ? 95 : 40);
+            case COLOR_STATE_SERVICE:
+                return new HSBType(new DecimalType(first ? 120 : 240), new PercentType(100), new PercentType(first ? 20 : 80));
+            case TEMPERATURE_STATE_SERVICE:
+                return new DecimalType(new BigDecimal(first ? "20.5" : "21.5"));
+            case TARGET_TEMPERATURE_STATE_SERVICE:
+                return new DecimalType(new BigDecimal(first ? "19" : "22"));
+            case ILLUMINANCE_STATE_SERVICE:
+                return new DecimalType(new BigDecimal(first ? "350" : "12000"));
+            case POWER_CONSUMPTION_STATE_SERVICE:
+                return new DecimalType(new BigDecimal(first ? "12.3" : "1830.75"));
+            default:
+                throw new IllegalArgumentException("No synthetic channel state for " + serviceType);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.extension.type.processing.LabelProcessor;
+import org.openbase.type.domotic.binding.BindingConfigType.BindingConfig;
+import org.openbase.type.domotic.service.ServiceConfigType.ServiceConfig;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
+import org.openbase.type.domotic.unit.device.DeviceConfigType.DeviceConfig;
+import org.openbase.type.domotic.unit.location.LocationConfigType.LocationConfig;
+import org.openbase.type.language.LabelType.Label;
+import org.openbase.type.spatial.PlacementConfigType.PlacementConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory stand-in for the unit and class registry. The registry consists of devices each hosting a fixed number
+ * of units, where every second device is handled by the openhab app. All units are placed in a single root location.
+ * Units can be updated while the registry is read, readers always see a consistent list.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class SyntheticRegistry {
+
+    public static final int UNITS_PER_DEVICE = 9;
+    public static final String ROOT_LOCATION_ID = "location-root";
+
+    private static final String OPENHAB_DEVICE_CLASS_ID = "device-class-openhab";
+    private static final String BCO_DEVICE_CLASS_ID = "device-class-bco";
+
+    private final Map<String, Integer> unitIndexMap;
+    private final Map<String, UnitConfig> unitConfigMap;
+    private final Map<String, DeviceClass> deviceClassMap;
+    private volatile List<UnitConfig> unitConfigList;
+
+    /**
+     * @param unitCount the approximate number of units, including the devices hosting them.
+     */
+    public SyntheticRegistry(final int unitCount) {
+        final List<UnitConfig> unitConfigList = new ArrayList<>(unitCount);
+        this.unitIndexMap = new HashMap<>();
+        this.unitConfigMap = new ConcurrentHashMap<>();
+        this.deviceClassMap = new HashMap<>();
+
+        deviceClassMap.put(OPENHAB_DEVICE_CLASS_ID, createDeviceClass(OPENHAB_DEVICE_CLASS_ID, "openhab"));
+        deviceClassMap.put(BCO_DEVICE_CLASS_ID, createDeviceClass(BCO_DEVICE_CLASS_ID, "bco"));
+
+        add(unitConfigList, UnitConfig.newBuilder()
+                .setId(ROOT_LOCATION_ID)
+                .setUnitType(UnitType.LOCATION)
+                .setLabel(createLabel("Home"))
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(true))
+                .build());
+
+        final int deviceCount = Math.max(1, unitCount / (UNITS_PER_DEVICE + 1));
+        for (int i = 0; i < deviceCount; i++) {
+            final String deviceId = "device-" + i;
+            final UnitConfig.Builder device = UnitConfig.newBuilder()
+                    .setId(deviceId)
+                    .setUnitType(UnitType.DEVICE)
+                    .setLabel(createLabel("Device " + i))
+                    .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(ROOT_LOCATION_ID))
+                    .setDeviceConfig(DeviceConfig.newBuilder().setDeviceClassId(i % 2 == 0 ? OPENHAB_DEVICE_CLASS_ID : BCO_DEVICE_CLASS_ID));
+            for (int j = 0; j < UNITS_PER_DEVICE; j++) {
+                final String unitId = deviceId + "-unit-" + j;
+                device.getDeviceConfigBuilder().addUnitId(unitId);
+                add(unitConfigList, UnitConfig.newBuilder()
+                        .setId(unitId)
+                        .setUnitType(j % 3 == 0 ? UnitType.COLORABLE_LIGHT : UnitType.POWER_SWITCH)
+                        .setLabel(createLabel("Unit " + i + "-" + j))
+                        .setUnitHostId(deviceId)
+                        .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(ROOT_LOCATION_ID))
+                        .addServiceConfig(ServiceConfig.getDefaultInstance())
+                        .build());
+            }
+            add(unitConfigList, device.build());
+        }
+        this.unitConfigList = Collections.unmodifiableList(unitConfigList);
+    }
+
+    private static DeviceClass createDeviceClass(final String id, final String bindingId) {
+        return DeviceClass.newBuilder().setId(id).setBindingConfig(BindingConfig.newBuilder().setBindingId(bindingId)).build();
+    }
+
+    private static Label createLabel(final String label) {
+        return LabelProcessor.addLabel(Label.newBuilder(), Locale.ENGLISH, label).build();
+    }
+
+    private void add(final List<UnitConfig> unitConfigList, final UnitConfig unitConfig) {
+        unitIndexMap.put(unitConfig.getId(), unitConfigList.size());
+        unitConfigList.add(unitConfig);
+        unitConfigMap.put(unitConfig.getId(), unitConfig);
+    }
+
+    public List<UnitConfig> getUnitConfigs() {
+        return unitConfigList;
+    }
+
+    /**
+     * Replace the config of a unit of the registry.
+     *
+     * @param unitConfig the new config of the unit.
+     * @throws NotAvailableException if the registry does not contain the unit.
+     */
+    public synchronized void update(final UnitConfig unitConfig) throws NotAvailableException {
+        final Integer index = unitIndexMap.get(unitConfig.getId());
+        if (index == null) {
+            throw new NotAvailableException("UnitConfig", unitConfig.getId());
+        }
+        final List<UnitConfig> unitConfigList = new ArrayList<>(this.unitConfigList);
+        unitConfigList.set(index, unitConfig);
+        unitConfigMap.put(unitConfig.getId(), unitConfig);
+        this.unitConfigList = Collections.unmodifiableList(unitConfigList);
+    }
+
+    /**
+     * Create a copy of the unit configs in which some units, spread evenly over the registry, are modified
+     * as if a user renamed them.
+     *
+     * @param modifiedCount the number of units to modify.
+     * @return the modified unit configs in the same order.
+     */
+    public List<UnitConfig> getModifiedUnitConfigs(final int modifiedCount) {
+        final List<UnitConfig> modifiedUnitConfigList = new ArrayList<>(unitConfigList);
+        if (modifiedCount <= 0) {
+            return modifiedUnitConfigList;
+        }
+        final int step = Math.max(1, modifiedUnitConfigList.size() / modifiedCount);
+        for (int i = 0, modified = 0; i < modifiedUnitConfigList.size() && modified < modifiedCount; i += step, modified++) {
+            final UnitConfig unitConfig = modifiedUnitConfigList.get(i);
+            modifiedUnitConfigList.set(i, unitConfig.toBuilder().addAlias(unitConfig.getId() + "-renamed").build());
+        }
+        return modifiedUnitConfigList;
+    }
+
+    public UnitConfig getUnitConfigById(final String id) throws CouldNotPerformException {
+        final UnitConfig unitConfig = unitConfigMap.get(id);
+        if (unitConfig == null) {
+            throw new NotAvailableException("UnitConfig", id);
+        }
+        return unitConfig;
+    }
+
+    public DeviceClass getDeviceClassById(final String id) throws CouldNotPerformException {
+        final DeviceClass deviceClass = deviceClassMap.get(id);
+        if (deviceClass == null) {
+            throw new NotAvailableException("DeviceClass", id);
+        }
+        return deviceClass;
+    }
+}
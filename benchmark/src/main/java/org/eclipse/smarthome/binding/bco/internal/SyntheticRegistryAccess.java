@@ -0,0 +1,109 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.jul.pattern.provider.DataProvider;
+import org.openbase.type.domotic.registry.UnitRegistryDataType.UnitRegistryData;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry access backed by a {@link SyntheticRegistry}. Updates of units are reported to the registry observers
+ * like the unit registry would do.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class SyntheticRegistryAccess extends BCORegistryAccess {
+
+    private final SyntheticRegistry registry;
+    private final List<Observer<DataProvider<UnitRegistryData>, UnitRegistryData>> observerList;
+
+    /**
+     * @param registry the registry providing the unit configs.
+     */
+    public SyntheticRegistryAccess(final SyntheticRegistry registry) {
+        this.registry = registry;
+        this.observerList = new CopyOnWriteArrayList<>();
+    }
+
+    public SyntheticRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Update a unit and notify the registry observers.
+     *
+     * @param unitConfig the new config of the unit.
+     * @throws CouldNotPerformException if the unit is not part of the registry or an observer failed.
+     */
+    public void update(final UnitConfig unitConfig) throws CouldNotPerformException {
+        registry.update(unitConfig);
+        for (final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> observer : observerList) {
+            try {
+                observer.update(null, UnitRegistryData.getDefaultInstance());
+            } catch (Exception ex) {
+                throw new CouldNotPerformException("Could not notify registry observer", ex);
+            }
+        }
+    }
+
+    @Override
+    public boolean isDataAvailable() {
+        return true;
+    }
+
+    @Override
+    public void waitForData() {
+        // always available
+    }
+
+    @Override
+    public List<UnitConfig> getUnitConfigs() {
+        return registry.getUnitConfigs();
+    }
+
+    @Override
+    public UnitConfig getUnitConfigById(final String unitId) throws CouldNotPerformException {
+        return registry.getUnitConfigById(unitId);
+    }
+
+    @Override
+    public DeviceClass getDeviceClassById(final String deviceClassId) throws CouldNotPerformException {
+        return registry.getDeviceClassById(deviceClassId);
+    }
+
+    @Override
+    public void addUnitRegistryObserver(final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> observer) {
+        observerList.add(observer);
+    }
+
+    @Override
+    public void removeUnitRegistryObserver(final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> observer) {
+        observerList.remove(observer);
+    }
+}
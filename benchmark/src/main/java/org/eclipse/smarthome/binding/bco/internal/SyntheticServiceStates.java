@@ -0,0 +1,134 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.state.BatteryStateType.BatteryState;
+import org.openbase.type.domotic.state.BrightnessStateType.BrightnessState;
+import org.openbase.type.domotic.state.ColorStateType.ColorState;
+import org.openbase.type.domotic.state.ContactStateType.ContactState;
+import org.openbase.type.domotic.state.IlluminanceStateType.IlluminanceState;
+import org.openbase.type.domotic.state.MotionStateType.MotionState;
+import org.openbase.type.domotic.state.PowerConsumptionStateType.PowerConsumptionState;
+import org.openbase.type.domotic.state.PowerStateType.PowerState;
+import org.openbase.type.domotic.state.TemperatureStateType.TemperatureState;
+import org.openbase.type.vision.ColorType.Color;
+import org.openbase.type.vision.HSBColorType.HSBColor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service states of the service types most common in a bco installation. Every service type has two variants
+ * so that consecutive updates can be made to differ.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public final class SyntheticServiceStates {
+
+    /**
+     * All service types with synthetic states, ordered by how common they are.
+     */
+    public static final List<ServiceType> SERVICE_TYPES;
+
+    private static final Map<ServiceType, Message[]> VARIANT_MAP;
+
+    static {
+        final Map<ServiceType, Message[]> variantMap = new EnumMap<>(ServiceType.class);
+        final List<ServiceType> serviceTypes = new ArrayList<>();
+        add(variantMap, serviceTypes, ServiceType.POWER_STATE_SERVICE,
+                PowerState.newBuilder().setValue(PowerState.State.ON).build(),
+                PowerState.newBuilder().setValue(PowerState.State.OFF).build());
+        add(variantMap, serviceTypes, ServiceType.BRIGHTNESS_STATE_SERVICE,
+                BrightnessState.newBuilder().setBrightness(0.2).build(),
+                BrightnessState.newBuilder().setBrightness(0.8).build());
+        add(variantMap, serviceTypes, ServiceType.COLOR_STATE_SERVICE,
+                createColorState(0.2),
+                createColorState(0.8));
+        add(variantMap, serviceTypes, ServiceType.TEMPERATURE_STATE_SERVICE,
+                TemperatureState.newBuilder().setTemperature(20.5).build(),
+                TemperatureState.newBuilder().setTemperature(21.5).build());
+        add(variantMap, serviceTypes, ServiceType.TARGET_TEMPERATURE_STATE_SERVICE,
+                TemperatureState.newBuilder().setTemperature(19).build(),
+                TemperatureState.newBuilder().setTemperature(22).build());
+        add(variantMap, serviceTypes, ServiceType.MOTION_STATE_SERVICE,
+                MotionState.newBuilder().setValue(MotionState.State.MOTION).build(),
+                MotionState.newBuilder().setValue(MotionState.State.NO_MOTION).build());
+        add(variantMap, serviceTypes, ServiceType.CONTACT_STATE_SERVICE,
+                ContactState.newBuilder().setValue(ContactState.State.OPEN).build(),
+                ContactState.newBuilder().setValue(ContactState.State.CLOSED).build());
+        add(variantMap, serviceTypes, ServiceType.ILLUMINANCE_STATE_SERVICE,
+                IlluminanceState.newBuilder().setIlluminance(300).build(),
+                IlluminanceState.newBuilder().setIlluminance(600).build());
+        add(variantMap, serviceTypes, ServiceType.BATTERY_STATE_SERVICE,
+                BatteryState.newBuilder().setLevel(0.9).build(),
+                BatteryState.newBuilder().setLevel(0.8).build());
+        add(variantMap, serviceTypes, ServiceType.POWER_CONSUMPTION_STATE_SERVICE,
+                PowerConsumptionState.newBuilder().setConsumption(60).build(),
+                PowerConsumptionState.newBuilder().setConsumption(120).build());
+        VARIANT_MAP = Collections.unmodifiableMap(variantMap);
+        SERVICE_TYPES = Collections.unmodifiableList(serviceTypes);
+    }
+
+    private SyntheticServiceStates() {
+        // utility class
+    }
+
+    private static void add(final Map<ServiceType, Message[]> variantMap, final List<ServiceType> serviceTypes, final ServiceType serviceType, final Message first, final Message second) {
+        variantMap.put(serviceType, new Message[]{first, second});
+        serviceTypes.add(serviceType);
+    }
+
+    private static ColorState createColorState(final double brightness) {
+        return ColorState.newBuilder().setColor(Color.newBuilder()
+                .setType(Color.Type.HSB)
+                .setHsbColor(HSBColor.newBuilder().setHue(120).setSaturation(0.5).setBrightness(brightness)))
+                .build();
+    }
+
+    /**
+     * @param serviceType a service type of {@link #SERVICE_TYPES}.
+     * @param variant     the variant of the state, either 0 or 1.
+     * @return the state of the service.
+     */
+    public static Message getState(final ServiceType serviceType, final int variant) {
+        return VARIANT_MAP.get(serviceType)[variant & 1];
+    }
+
+    /**
+     * @param serviceCount the number of services, at most the size of {@link #SERVICE_TYPES}.
+     * @param variant      the variant of the states, either 0 or 1.
+     * @return states for the most common service types.
+     */
+    public static Map<ServiceType, Message> getStates(final int serviceCount, final int variant) {
+        final Map<ServiceType, Message> serviceStateMap = new EnumMap<>(ServiceType.class);
+        for (final ServiceType serviceType : SERVICE_TYPES.subList(0, Math.min(serviceCount, SERVICE_TYPES.size()))) {
+            serviceStateMap.put(serviceType, getState(serviceType, variant));
+        }
+        return serviceStateMap;
+    }
+}
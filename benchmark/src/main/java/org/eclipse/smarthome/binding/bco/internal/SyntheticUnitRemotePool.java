@@ -0,0 +1,81 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remote pool handing out {@link StubUnitRemote}s for the units of a {@link SyntheticRegistry}. Every unit
+ * provides the same number of services.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class SyntheticUnitRemotePool extends UnitRemotePool {
+
+    private final SyntheticRegistry registry;
+    private final int serviceCount;
+    private final Map<String, StubUnitRemote> stubMap;
+
+    /**
+     * @param registry     the registry providing the unit configs.
+     * @param serviceCount the number of services per unit.
+     */
+    public SyntheticUnitRemotePool(final SyntheticRegistry registry, final int serviceCount) {
+        this.registry = registry;
+        this.serviceCount = serviceCount;
+        this.stubMap = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    protected UnitRemote<?> getRemote(final String unitId) throws CouldNotPerformException {
+        return getStub(unitId).getRemote();
+    }
+
+    /**
+     * @param unitId the id of a unit of the registry.
+     * @return the stub of the unit, created on first access.
+     * @throws CouldNotPerformException if the registry does not contain the unit.
+     */
+    public StubUnitRemote getStub(final String unitId) throws CouldNotPerformException {
+        final StubUnitRemote stub = stubMap.get(unitId);
+        if (stub != null) {
+            return stub;
+        }
+        final StubUnitRemote newStub = new StubUnitRemote(registry.getUnitConfigById(unitId), SyntheticServiceStates.getStates(serviceCount, 0));
+        final StubUnitRemote previousStub = stubMap.putIfAbsent(unitId, newStub);
+        return previousStub == null ? newStub : previousStub;
+    }
+
+    /**
+     * @return the stubs of all units acquired so far.
+     */
+    public List<StubUnitRemote> getStubs() {
+        return new ArrayList<>(stubMap.values());
+    }
+}
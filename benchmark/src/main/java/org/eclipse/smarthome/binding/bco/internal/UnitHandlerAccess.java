@@ -0,0 +1,82 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.jul.pattern.Observer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Reaches into a {@link UnitHandler} to attach a remote without the initialization, which needs a connection to
+ * the bco registry, and to call its channel update directly.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+public final class UnitHandlerAccess {
+
+    private UnitHandlerAccess() {
+        // utility class
+    }
+
+    /**
+     * Set the remote of a handler as done by the initialization. No observers are registered, so the channels are
+     * only updated if requested explicitly.
+     *
+     * @param unitHandler the handler.
+     * @param unitRemote  the remote of the unit handled.
+     * @throws ReflectiveOperationException if the handler does not provide the expected field.
+     */
+    public static void setUnitRemote(final UnitHandler unitHandler, final UnitRemote<?> unitRemote) throws ReflectiveOperationException {
+        getField("unitRemote").set(unitHandler, unitRemote);
+    }
+
+    /**
+     * @param unitHandler the handler.
+     * @return the observer the handler registers for data updates of its remote.
+     * @throws ReflectiveOperationException if the handler does not provide the expected field.
+     */
+    public static Observer getDataObserver(final UnitHandler unitHandler) throws ReflectiveOperationException {
+        return (Observer) getField("unitDataObserver").get(unitHandler);
+    }
+
+    /**
+     * @param unitHandler the handler.
+     * @return a handle invoking the channel update of the handler synchronously.
+     * @throws ReflectiveOperationException if the handler does not provide the expected method.
+     */
+    public static MethodHandle getUpdateChannels(final UnitHandler unitHandler) throws ReflectiveOperationException {
+        final Method method = UnitHandler.class.getDeclaredMethod("updateChannels");
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method).bindTo(unitHandler);
+    }
+
+    private static Field getField(final String name) throws NoSuchFieldException {
+        final Field field = UnitHandler.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
@@ -0,0 +1,148 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.Command;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hot paths of the {@link UnitHandler} against a stub remote providing a configurable number of
+ * services: the channel update if all services changed, the channel update if no service changed and the handling
+ * of a command until it is handed to the {@link CommandBatcher} which would apply the action.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitHandlerBenchmark {
+
+    private static final String UNIT_ID = "unit-0";
+
+    @Param({"1", "5", "10"})
+    public int serviceCount;
+
+    private OfflineBinding binding;
+    private StubUnitRemote unitRemote;
+    private StubThingHandlerCallback callback;
+    private UnitHandler unitHandler;
+    private MethodHandle updateChannels;
+    private Map<ServiceType, Message>[] serviceStates;
+    private int variant;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException {
+        serviceStates = new Map[]{SyntheticServiceStates.getStates(serviceCount, 0), SyntheticServiceStates.getStates(serviceCount, 1)};
+        unitRemote = new StubUnitRemote(UNIT_ID, UnitType.COLORABLE_LIGHT, serviceStates[0]);
+
+        // commands stay pending in the batcher, so only the handling until the dispatch is measured
+        binding = new OfflineBinding(new UnitRemotePool(), new BCORegistryAccess(), TimeUnit.HOURS.toMillis(1), 0);
+        callback = new StubThingHandlerCallback();
+
+        final Thing thing = ThingBuilder.create(BCOBindingConstants.UNIT_THING_TYPE_UID, UNIT_ID).build();
+        unitHandler = new UnitHandler(thing, binding.getContext());
+        unitHandler.setCallback(callback.getCallback());
+        UnitHandlerAccess.setUnitRemote(unitHandler, unitRemote.getRemote());
+        updateChannels = UnitHandlerAccess.getUpdateChannels(unitHandler);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        unitHandler.dispose();
+        binding.shutdown();
+    }
+
+    @Benchmark
+    public long updateChannelsChanged() throws Throwable {
+        variant ^= 1;
+        for (final Map.Entry<ServiceType, Message> entry : serviceStates[variant].entrySet()) {
+            unitRemote.putServiceState(entry.getKey(), entry.getValue());
+        }
+        updateChannels.invoke();
+        return callback.getStateUpdateCount();
+    }
+
+    @Benchmark
+    public long updateChannelsUnchanged() throws Throwable {
+        updateChannels.invoke();
+        return callback.getStateUpdateCount();
+    }
+
+    @Benchmark
+    public int handleCommand(final CommandState commandState) {
+        variant ^= 1;
+        unitHandler.handleCommand(commandState.channelUID, commandState.commands[variant]);
+        return variant;
+    }
+
+    /**
+     * The commands sent, only used by the command handling so the channel updates are not run for every channel.
+     */
+    @State(Scope.Benchmark)
+    public static class CommandState {
+
+        @Param({"power_state", "brightness_state"})
+        public String channelId;
+
+        private ChannelUID channelUID;
+        private Command[] commands;
+
+        @Setup
+        public void setup() {
+            channelUID = new ChannelUID(new ThingUID(BCOBindingConstants.UNIT_THING_TYPE_UID, UNIT_ID), channelId);
+            if (channelId.equals(ChannelServiceIndex.getChannelId(ServiceType.POWER_STATE_SERVICE))) {
+                commands = new Command[]{OnOffType.ON, OnOffType.OFF};
+            } else {
+                commands = new Command[]{new PercentType(20), new PercentType(80)};
+            }
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.eclipse.smarthome.core.thing.ThingTypeUID;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@link BCOBindingConstants} class defines common constants, which are
@@ -39,13 +40,91 @@ public class BCOBindingConstants {
 
     public static final String BINDING_ID = "bco";
     public static final String UNIT_THING_TYPE = "unit";
+    public static final String SERVER_THING_TYPE = "server";
+
+    // Configuration
+    public static final String CONFIG_UPDATE_INTERVAL = "updateInterval";
+    // in milliseconds
+    public static final long DEFAULT_UPDATE_INTERVAL = 50;
+    public static final String CONFIG_AUTO_UPDATE = "autoUpdate";
+    public static final boolean DEFAULT_AUTO_UPDATE = true;
+    public static final String CONFIG_COMMAND_BATCH_WINDOW = "commandBatchWindow";
+    // in milliseconds
+    public static final long DEFAULT_COMMAND_BATCH_WINDOW = 5;
+    public static final String CONFIG_MAX_IN_FLIGHT_ACTIONS = "maxInFlightActions";
+    public static final int DEFAULT_MAX_IN_FLIGHT_ACTIONS = 64;
+    public static final String CONFIG_MAX_IN_FLIGHT_ACTIONS_PER_UNIT = "maxInFlightActionsPerUnit";
+    public static final int DEFAULT_MAX_IN_FLIGHT_ACTIONS_PER_UNIT = 2;
+    public static final String CONFIG_INITIALIZATION_THREADS = "initializationThreads";
+    public static final int DEFAULT_INITIALIZATION_THREADS = 4;
+    public static final String CONFIG_CONNECTION_TIMEOUT = "connectionTimeout";
+    // in milliseconds
+    public static final long DEFAULT_CONNECTION_TIMEOUT = 30000;
+    public static final String CONFIG_CONNECTION_BACKOFF = "connectionBackoff";
+    // in milliseconds
+    public static final long DEFAULT_CONNECTION_BACKOFF = 1000;
+    public static final String CONFIG_MAX_CONNECTION_BACKOFF = "maxConnectionBackoff";
+    // in milliseconds
+    public static final long DEFAULT_MAX_CONNECTION_BACKOFF = 60000;
+    public static final String CONFIG_RECONNECT_GROUPING_WINDOW = "reconnectGroupingWindow";
+    // in milliseconds
+    public static final long DEFAULT_RECONNECT_GROUPING_WINDOW = 250;
+    public static final String CONFIG_RECONNECT_JITTER = "reconnectJitter";
+    // in milliseconds
+    public static final long DEFAULT_RECONNECT_JITTER = 2000;
+    public static final String CONFIG_MAX_CONCURRENT_RESYNCS = "maxConcurrentResyncs";
+    public static final int DEFAULT_MAX_CONCURRENT_RESYNCS = 4;
+    public static final String CONFIG_EXECUTOR_THREADS = "executorThreads";
+    public static final int DEFAULT_EXECUTOR_THREADS = 8;
+    public static final String CONFIG_VIRTUAL_THREADS = "virtualThreads";
+    public static final String CONFIG_COMMAND_LATENCY_BUDGET = "commandLatencyBudget";
+    // in milliseconds
+    public static final long DEFAULT_COMMAND_LATENCY_BUDGET = 100;
+    public static final String CONFIG_CONNECTION_LATENCY_BUDGET = "connectionLatencyBudget";
+    // in milliseconds
+    public static final long DEFAULT_CONNECTION_LATENCY_BUDGET = 500;
+    public static final String CONFIG_CHANNEL_STATE_LATENCY_BUDGET = "channelStateLatencyBudget";
+    // in milliseconds
+    public static final long DEFAULT_CHANNEL_STATE_LATENCY_BUDGET = 1000;
+    public static final String CONFIG_CONFIG_LATENCY_BUDGET = "configLatencyBudget";
+    // in milliseconds
+    public static final long DEFAULT_CONFIG_LATENCY_BUDGET = 10000;
+    public static final String CONFIG_SAMPLING_SERVICE_TYPES = "samplingServiceTypes";
+    public static final String CONFIG_SAMPLING_INTERVAL = "samplingInterval";
+    // in milliseconds
+    public static final long DEFAULT_SAMPLING_INTERVAL = 60000;
+    public static final String CONFIG_SAMPLING_DEADBAND = "samplingDeadband";
+    public static final double DEFAULT_SAMPLING_DEADBAND = 0;
+    public static final String CONFIG_SNAPSHOT_MAX_AGE = "snapshotMaxAge";
+    // in milliseconds
+    public static final long DEFAULT_SNAPSHOT_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+    public static final String CONFIG_SNAPSHOT_EVICT_AGE = "snapshotEvictAge";
+    // in milliseconds
+    public static final long DEFAULT_SNAPSHOT_EVICT_AGE = TimeUnit.DAYS.toMillis(30);
+    public static final String CONFIG_SNAPSHOT_WRITE_INTERVAL = "snapshotWriteInterval";
+    // in milliseconds
+    public static final long DEFAULT_SNAPSHOT_WRITE_INTERVAL = 60000;
+    public static final String CONFIG_LAZY_REMOTE_ACTIVATION = "lazyRemoteActivation";
+    public static final boolean DEFAULT_LAZY_REMOTE_ACTIVATION = false;
+    public static final String CONFIG_REMOTE_IDLE_TIMEOUT = "remoteIdleTimeout";
+    // in milliseconds
+    public static final long DEFAULT_REMOTE_IDLE_TIMEOUT = 300000;
+
+    // Threads owned by the binding, all of them are stopped on deactivation
+    public static final String INITIALIZATION_THREAD_NAME = BINDING_ID + "-init";
+    public static final String RESYNC_THREAD_NAME = BINDING_ID + "-resync";
+    public static final String EXECUTOR_THREAD_NAME = BINDING_ID + "-exec";
 
     // Custom Channels
     public static final String CHANNEL_POWER_LIGHT = "power_state_light";
 
+    public static final ThingTypeUID UNIT_THING_TYPE_UID = new ThingTypeUID(BINDING_ID, UNIT_THING_TYPE);
+    public static final ThingTypeUID SERVER_THING_TYPE_UID = new ThingTypeUID(BINDING_ID, SERVER_THING_TYPE);
+
     static Set<ThingTypeUID> THING_TYPES = new HashSet<>();
 
     static {
-        THING_TYPES.add(new ThingTypeUID(BINDING_ID, UNIT_THING_TYPE));
+        THING_TYPES.add(UNIT_THING_TYPE_UID);
+        THING_TYPES.add(SERVER_THING_TYPE_UID);
     }
 }
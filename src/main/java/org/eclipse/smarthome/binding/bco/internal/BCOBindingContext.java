@@ -0,0 +1,140 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link BCOBindingContext} bundles the components shared by all handlers of the binding.
+ * It is created by the {@link BCOHandlerFactory} on activation.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class BCOBindingContext {
+
+    private final long defaultUpdateInterval;
+    private final BCOConnector connector;
+    private final CommandBatcher commandBatcher;
+    private final UnitInitializer unitInitializer;
+    private final LocationAggregateCache locationAggregateCache;
+    private final BCOMetricRegistry metricRegistry;
+    private final ReconnectManager reconnectManager;
+    private final UnitRemotePool remotePool;
+    private final BCOExecutor executor;
+    private final SamplingConfiguration defaultSamplingConfiguration;
+    private final BCOSnapshotStore snapshotStore;
+    private final BCORegistryAccess registryAccess;
+    private final RemoteActivationTracker activationTracker;
+    private final ChannelStateStore channelStateStore;
+
+    /**
+     * @param defaultUpdateInterval  the minimal time in milliseconds between two channel updates used if
+     *                               a thing does not configure an own interval.
+     * @param connector              the connector providing the readiness of the connection to bco.
+     * @param commandBatcher         the batcher used to dispatch commands.
+     * @param unitInitializer        the initializer used to acquire unit remotes in the background.
+     * @param locationAggregateCache the cache providing the aggregated light state of locations.
+     * @param metricRegistry         the registry metrics are recorded in.
+     * @param reconnectManager       the manager resynchronizing things after a reconnect.
+     * @param remotePool             the pool used to acquire unit remotes.
+     * @param executor               the executor processing the asynchronous work of the handlers.
+     * @param defaultSamplingConfiguration the sampling used if a thing does not configure an own sampling.
+     * @param snapshotStore          the store providing and persisting the last known channel states.
+     * @param registryAccess         the access to the bco registries.
+     * @param activationTracker      the tracker deciding when remotes are active.
+     * @param channelStateStore      the store keeping the last known state of every service.
+     */
+    public BCOBindingContext(final long defaultUpdateInterval, final BCOConnector connector, final CommandBatcher commandBatcher, final UnitInitializer unitInitializer, final LocationAggregateCache locationAggregateCache, final BCOMetricRegistry metricRegistry, final ReconnectManager reconnectManager, final UnitRemotePool remotePool, final BCOExecutor executor, final SamplingConfiguration defaultSamplingConfiguration, final BCOSnapshotStore snapshotStore, final BCORegistryAccess registryAccess, final RemoteActivationTracker activationTracker, final ChannelStateStore channelStateStore) {
+        this.defaultUpdateInterval = defaultUpdateInterval;
+        this.connector = connector;
+        this.commandBatcher = commandBatcher;
+        this.unitInitializer = unitInitializer;
+        this.locationAggregateCache = locationAggregateCache;
+        this.metricRegistry = metricRegistry;
+        this.reconnectManager = reconnectManager;
+        this.remotePool = remotePool;
+        this.executor = executor;
+        this.defaultSamplingConfiguration = defaultSamplingConfiguration;
+        this.snapshotStore = snapshotStore;
+        this.registryAccess = registryAccess;
+        this.activationTracker = activationTracker;
+        this.channelStateStore = channelStateStore;
+    }
+
+    public long getDefaultUpdateInterval() {
+        return defaultUpdateInterval;
+    }
+
+    public BCOConnector getConnector() {
+        return connector;
+    }
+
+    public CommandBatcher getCommandBatcher() {
+        return commandBatcher;
+    }
+
+    public UnitInitializer getUnitInitializer() {
+        return unitInitializer;
+    }
+
+    public LocationAggregateCache getLocationAggregateCache() {
+        return locationAggregateCache;
+    }
+
+    public BCOMetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public ReconnectManager getReconnectManager() {
+        return reconnectManager;
+    }
+
+    public UnitRemotePool getRemotePool() {
+        return remotePool;
+    }
+
+    public BCOExecutor getExecutor() {
+        return executor;
+    }
+
+    public SamplingConfiguration getDefaultSamplingConfiguration() {
+        return defaultSamplingConfiguration;
+    }
+
+    public BCOSnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    public BCORegistryAccess getRegistryAccess() {
+        return registryAccess;
+    }
+
+    public RemoteActivationTracker getActivationTracker() {
+        return activationTracker;
+    }
+
+    public ChannelStateStore getChannelStateStore() {
+        return channelStateStore;
+    }
+}
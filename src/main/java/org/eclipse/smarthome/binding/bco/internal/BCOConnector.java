@@ -0,0 +1,275 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.bco.authentication.lib.SessionManager;
+import org.openbase.bco.dal.remote.layer.unit.Units;
+import org.openbase.bco.registry.remote.Registries;
+import org.openbase.bco.registry.remote.login.BCOLogin;
+import org.openbase.bco.registry.unit.lib.UnitRegistry;
+import org.openbase.jps.core.JPService;
+import org.openbase.jps.exception.JPServiceException;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.extension.rsb.com.RSBSharedConnectionConfig;
+import org.openbase.jul.extension.rsb.com.jp.JPRSBHost;
+import org.openbase.jul.extension.rsb.com.jp.JPRSBPort;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Base64;
+import java.util.Dictionary;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BCOConnector} connects the binding to bco in the background, so that the activation of the
+ * {@link BCOHandlerFactory} does not block. It configures the middleware, waits for the registries and logs in.
+ * Failed attempts are repeated with an exponential backoff.
+ * <p>
+ * Handlers wait on the {@link #getReadyFuture()} before they acquire their unit remotes.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class BCOConnector {
+
+    /**
+     * The phases of the connection to bco.
+     */
+    public enum ConnectionPhase {
+        CONNECTING,
+        AUTHENTICATING,
+        READY
+    }
+
+    // the middleware is configured statically, so a re-initialization is only required if it was configured before
+    private static boolean initialActivate = true;
+
+    private final Logger logger = LoggerFactory.getLogger(BCOConnector.class);
+
+    private final long connectionTimeout;
+    private final long connectionBackoff;
+    private final long maxConnectionBackoff;
+    private final BCOMetricRegistry metricRegistry;
+    private final CompletableFuture<Void> readyFuture;
+
+    private final SyncObject connectionLock = new SyncObject("ConnectionLock");
+    private @Nullable Future<?> connectionTask;
+    private volatile ConnectionPhase phase;
+
+    /**
+     * @param connectionTimeout    the time in milliseconds to wait for the registries per attempt.
+     * @param connectionBackoff    the time in milliseconds to wait after the first failed attempt.
+     * @param maxConnectionBackoff the maximal time in milliseconds to wait between two attempts.
+     * @param metricRegistry       the registry the registry wait and login times are recorded in.
+     */
+    public BCOConnector(final long connectionTimeout, final long connectionBackoff, final long maxConnectionBackoff, final BCOMetricRegistry metricRegistry) {
+        this.connectionTimeout = Math.max(1, connectionTimeout);
+        this.connectionBackoff = Math.max(0, connectionBackoff);
+        this.maxConnectionBackoff = Math.max(this.connectionBackoff, maxConnectionBackoff);
+        this.metricRegistry = metricRegistry;
+        this.readyFuture = new CompletableFuture<>();
+        this.phase = ConnectionPhase.CONNECTING;
+    }
+
+    /**
+     * Start connecting in the background.
+     *
+     * @param properties the configuration of the binding providing the middleware settings and credentials.
+     */
+    public void connect(final Dictionary<String, Object> properties) {
+        synchronized (connectionLock) {
+            if (connectionTask != null) {
+                return;
+            }
+            connectionTask = GlobalCachedExecutorService.submit(() -> {
+                try {
+                    establishConnection(properties);
+                } catch (InterruptedException ex) {
+                    logger.debug("Connection to bco cancelled");
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException ex) {
+                    logger.error("Connection to bco failed", ex);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Stop connecting. Handlers still waiting on the ready future are not initialized anymore.
+     */
+    public void shutdown() {
+        synchronized (connectionLock) {
+            final Future<?> connectionTask = this.connectionTask;
+            if (connectionTask != null && !connectionTask.isDone()) {
+                connectionTask.cancel(true);
+            }
+        }
+        readyFuture.cancel(false);
+    }
+
+    /**
+     * @return a future completed once the binding is connected and logged in.
+     */
+    public CompletableFuture<Void> getReadyFuture() {
+        return readyFuture;
+    }
+
+    /**
+     * @return the current phase of the connection.
+     */
+    public ConnectionPhase getPhase() {
+        return phase;
+    }
+
+    private void establishConnection(final Dictionary<String, Object> properties) throws InterruptedException {
+        configureMiddleware(properties);
+
+        long backoff = connectionBackoff;
+        while (true) {
+            try {
+                phase = ConnectionPhase.CONNECTING;
+                final long registryWaitStartTime = System.nanoTime();
+                Registries.waitForData(connectionTimeout, TimeUnit.MILLISECONDS);
+                metricRegistry.getHistogram(BCOMetricRegistry.ACTIVATION_REGISTRY_WAIT).recordSince(registryWaitStartTime);
+
+                phase = ConnectionPhase.AUTHENTICATING;
+                login(properties);
+
+                phase = ConnectionPhase.READY;
+                logger.info("Connection to bco established");
+                readyFuture.complete(null);
+                return;
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not connect to bco, retry in " + backoff + "ms", ex, logger);
+            }
+
+            Thread.sleep(backoff);
+            backoff = Math.min(maxConnectionBackoff, Math.max(1, backoff * 2));
+        }
+    }
+
+    private void configureMiddleware(final Dictionary<String, Object> properties) throws InterruptedException {
+        try {
+            final Integer oldPort = JPService.getProperty(JPRSBPort.class).getValue();
+            final String oldHost = JPService.getProperty(JPRSBHost.class).getValue();
+            logger.info("OldHost {}, oldPort {}, initAct {}", oldHost, oldPort, initialActivate);
+
+            final Object rsbHost = properties.get("rsbHost");
+            if (rsbHost instanceof String) {
+                JPService.registerProperty(JPRSBHost.class, (String) rsbHost);
+                JPService.getProperty(JPRSBHost.class).update((String) rsbHost);
+
+            }
+
+            final Object rsbPort = properties.get("rsbPort");
+            if (rsbPort instanceof String) {
+                try {
+                    final int port = Integer.parseInt(((String) rsbPort).trim());
+                    JPService.registerProperty(JPRSBPort.class, port);
+                    JPService.getProperty(JPRSBPort.class).update(port);
+                } catch (NumberFormatException ex) {
+                    logger.error("Ignore invalid rsbPort {}, keep port {}", rsbPort, oldPort);
+                }
+            }
+            final String[] args = {};
+            JPService.parse(args);
+
+            final Integer newPort = JPService.getProperty(JPRSBPort.class).getValue();
+            final String newHost = JPService.getProperty(JPRSBHost.class).getValue();
+
+            logger.info("Activate with RSBHost {} and RSBPort {}", newHost, newPort);
+            if (!oldPort.equals(newPort) || !oldHost.equals(newHost)) {
+                logger.info("RSBHost changed from {} to {}", oldHost, newHost);
+                logger.info("RSBPort changed from {} to {}", oldPort, newPort);
+
+                RSBSharedConnectionConfig.reload();
+                logger.info("Middleware configuration finished.");
+
+                // do not perform re-init on initial start because there is no need for it.
+                if (!initialActivate) {
+                    try {
+                        logger.info("Reinit registries");
+                        Registries.reinitialize();
+                        logger.info("Reinit units");
+                        Units.reinitialize();
+                    } catch (CouldNotPerformException ex) {
+                        logger.error("Could not reinitialize remotes after host and/or port change!", ex);
+                    }
+                } else {
+                    initialActivate = false;
+                }
+            }
+        } catch (JPServiceException ex) {
+            logger.error("Could not read or update JPProperty", ex);
+        }
+    }
+
+    /**
+     * Login as the openHAB user with the configured credentials. Without credentials the default admin account is
+     * used as before.
+     *
+     * @param properties the configuration of the binding containing the credentials.
+     * @throws CouldNotPerformException is thrown if the login failed, so that the connection is retried.
+     */
+    private void login(final Dictionary<String, Object> properties) throws CouldNotPerformException {
+        if (SessionManager.getInstance().isLoggedIn()) {
+            return;
+        }
+
+        final long loginStartTime = System.nanoTime();
+        logger.info("Establish an authorized connection to bco...");
+        final Object credentials = properties.get("credentials");
+        if (!(credentials instanceof String) || ((String) credentials).isEmpty()) {
+            logger.warn("No credentials configured, login with the default admin account");
+            try {
+                BCOLogin.getSession().loginUserViaUsername("admin", "admin", true);
+            } catch (CouldNotPerformException ex) {
+                throw new CouldNotPerformException("Could not login with the default admin account", ex);
+            }
+        } else {
+            try {
+                final LoginCredentials loginCredentials = LoginCredentials.newBuilder()
+                        .setId(Registries.getUnitRegistry().getUnitConfigByAlias(UnitRegistry.OPENHAB_USER_ALIAS).getId())
+                        .setSymmetric(false)
+                        .setAdmin(false)
+                        .setCredentials(ByteString.copyFrom(Base64.getDecoder().decode((String) credentials)))
+                        .build();
+                SessionManager.getInstance().loginClient(loginCredentials.getId(), loginCredentials, true);
+            } catch (CouldNotPerformException | IllegalArgumentException ex) {
+                throw new CouldNotPerformException("Could not login as openhab user", ex);
+            }
+        }
+        metricRegistry.getHistogram(BCOMetricRegistry.ACTIVATION_LOGIN).recordSince(loginStartTime);
+        logger.info("Authorization successful");
+    }
+}
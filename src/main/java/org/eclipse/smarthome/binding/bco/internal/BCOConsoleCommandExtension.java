@@ -0,0 +1,151 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.eclipse.smarthome.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BCOConsoleCommandExtension} prints the metrics of the bco binding on the openHAB console.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ConsoleCommandExtension.class)
+public class BCOConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String SUBCMD_METRICS = "metrics";
+    private static final String SUBCMD_TOP = "top";
+    private static final String SUBCMD_RESET = "reset";
+    private static final String SUBCMD_RECONNECTS = "reconnects";
+    private static final String SUBCMD_ROUND_TRIPS = "roundtrips";
+    private static final String SUBCMD_STATES = "states";
+    private static final int DEFAULT_TOP_LIMIT = 10;
+
+    private @NonNullByDefault({}) BCOMetricRegistry metricRegistry;
+    private @NonNullByDefault({}) ChannelStateStore channelStateStore;
+
+    public BCOConsoleCommandExtension() {
+        super(BCOBindingConstants.BINDING_ID, "Inspect the bco binding.");
+    }
+
+    @Reference
+    protected void setMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    protected void unsetMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = null;
+    }
+
+    @Reference
+    protected void setChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = channelStateStore;
+    }
+
+    protected void unsetChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = null;
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 0) {
+            printUsage(console);
+            return;
+        }
+
+        switch (args[0]) {
+            case SUBCMD_METRICS:
+                for (final Map.Entry<String, Number> entry : metricRegistry.getGauges().entrySet()) {
+                    console.println(entry.getKey() + ": " + entry.getValue());
+                }
+                for (final LatencyHistogram histogram : metricRegistry.getHistograms()) {
+                    console.println(histogram.toString());
+                }
+                break;
+            case SUBCMD_TOP:
+                int limit = DEFAULT_TOP_LIMIT;
+                if (args.length > 1) {
+                    try {
+                        limit = Integer.parseInt(args[1]);
+                    } catch (NumberFormatException ex) {
+                        console.println("Invalid limit " + args[1]);
+                        return;
+                    }
+                }
+                for (final BCOMetricRegistry.StateUpdateRate stateUpdateRate : metricRegistry.getTopStateUpdateRates(limit)) {
+                    console.println(String.format("%s: %.2f updates/s (%d total)", stateUpdateRate.getThingId(), stateUpdateRate.getRate(), stateUpdateRate.getTotalCount()));
+                }
+                break;
+            case SUBCMD_RECONNECTS:
+                for (final Map.Entry<String, ReconnectStatistics> entry : metricRegistry.getReconnectStatistics().entrySet()) {
+                    final ReconnectStatistics statistics = entry.getValue();
+                    console.println(String.format("%s: %d reconnects, %ds downtime%s", entry.getKey(), statistics.getReconnectCount(), TimeUnit.MILLISECONDS.toSeconds(statistics.getDowntime()), statistics.isDisconnected() ? " (disconnected)" : ""));
+                }
+                break;
+            case SUBCMD_ROUND_TRIPS:
+                for (final LatencyHistogram histogram : metricRegistry.getCommandRoundTripHistograms().values()) {
+                    console.println(histogram.toString());
+                }
+                break;
+            case SUBCMD_STATES:
+                if (args.length < 2) {
+                    printUsage(console);
+                    return;
+                }
+                for (final Map.Entry<String, List<State>> entry : new TreeMap<>(channelStateStore.getChannelStates(args[1])).entrySet()) {
+                    console.println(entry.getKey() + ": " + entry.getValue());
+                }
+                break;
+            case SUBCMD_RESET:
+                metricRegistry.reset();
+                console.println("Metrics reset.");
+                break;
+            default:
+                printUsage(console);
+                break;
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(
+                buildCommandUsage(SUBCMD_METRICS, "print all gauges and latency histograms of the binding"),
+                buildCommandUsage(SUBCMD_TOP + " [<limit>]", "print the things with the highest channel update rate"),
+                buildCommandUsage(SUBCMD_RECONNECTS, "print how often and how long the connection to units was lost"),
+                buildCommandUsage(SUBCMD_ROUND_TRIPS, "print the time until commands were confirmed per thing"),
+                buildCommandUsage(SUBCMD_STATES + " <thingId>", "print the last known states of every channel of a thing"),
+                buildCommandUsage(SUBCMD_RESET, "reset all latency histograms"));
+    }
+}
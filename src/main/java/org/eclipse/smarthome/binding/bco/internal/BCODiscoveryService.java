@@ -22,31 +22,37 @@ package org.eclipse.smarthome.binding.bco.internal;
  * #L%
  */
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
 import org.eclipse.smarthome.config.discovery.DiscoveryResult;
 import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
 import org.eclipse.smarthome.config.discovery.DiscoveryService;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.ThingUID;
-import org.openbase.bco.registry.remote.Registries;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.NotAvailableException;
-import org.openbase.jul.extension.protobuf.ProtobufListDiff;
 import org.openbase.jul.extension.type.processing.LabelProcessor;
 import org.openbase.jul.pattern.Observer;
 import org.openbase.jul.pattern.provider.DataProvider;
-import org.openbase.jul.schedule.GlobalCachedExecutorService;
 import org.openbase.jul.schedule.SyncObject;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.openbase.type.domotic.registry.UnitRegistryDataType.UnitRegistryData;
 import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
 import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
-import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -62,75 +68,403 @@ public class BCODiscoveryService extends AbstractDiscoveryService {
     // in milliseconds
     private static final long OPENHAB_PREPERATION_TIME = TimeUnit.SECONDS.toMillis(5);
 
+    // in milliseconds
+    private static final long REGISTRY_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    // comma separated lists of unit types
+    private static final String CONFIG_UNIT_TYPE_INCLUDES = "unitTypeIncludes";
+    private static final String CONFIG_UNIT_TYPE_EXCLUDES = "unitTypeExcludes";
+
+    // discovery passes are executed in order on the binding executor
+    private static final String DISCOVERY_TASK_KEY = "discovery";
+
     private final Logger logger = LoggerFactory.getLogger(BCODiscoveryService.class);
     private final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> unitRegistryObserver;
-    private final ProtobufListDiff<String, UnitConfig, UnitConfig.Builder> diff;
+
+    /**
+     * All unit configs known by the last successful discovery pass, used to process only changed units.
+     * Note: only accessed by the discovery tasks.
+     */
+    private Map<String, UnitConfig> knownUnitConfigMap;
+
+    /**
+     * Ids of all units currently reported as discovered things.
+     */
+    private final Set<String> discoveredUnitIdSet;
+
+    /**
+     * Filters deciding which units are handled by the binding.
+     */
+    private volatile DiscoveryFilterChain filterChain;
+    private Set<UnitType> unitTypeIncludes;
+    private Set<UnitType> unitTypeExcludes;
 
     private boolean initialDiscovery;
 
-    // discovery task and lock
-    private Future<Void> discoveryTask;
+    // discovery task and lock, either the preparation on the scheduler or the pass on the executor
+    private Future<?> discoveryTask;
     private final SyncObject discoveryTaskLock = new SyncObject("DiscoveryTaskLock");
+    private boolean discoveryRunning;
+    private boolean followUpDiscoveryRequested;
+    private boolean fullDiscoveryRequested;
+    // incremented on cancellation so that a pass still running on the executor stops without being interrupted
+    private long discoveryGeneration;
+
+    private volatile long lastDiscoveryDuration;
+    private volatile int lastProcessedUnitCount;
+    private BCOMetricRegistry metricRegistry;
+    private BCOExecutor executor;
+    private BCOSnapshotStore snapshotStore;
+    private BCORegistryAccess registryAccess;
+    // guarded by the discovery task lock
+    private boolean snapshotRestored;
 
     public BCODiscoveryService() throws IllegalArgumentException {
         super(BCOBindingConstants.THING_TYPES, TIMEOUT);
 
-        this.diff = new ProtobufListDiff<>();
+        this.knownUnitConfigMap = new HashMap<>();
+        this.discoveredUnitIdSet = new HashSet<>();
+        this.filterChain = createFilterChain(Collections.emptySet(), Collections.emptySet());
         this.initialDiscovery = true;
 
         // prepare registry observation
         unitRegistryObserver = (observable, unitRegistryData) -> {
-            triggerDiscovery();
+            triggerDiscovery(false);
         };
     }
 
+    @Override
+    @Activate
+    protected void activate(@Nullable Map<String, @Nullable Object> configProperties) {
+        updateFilterChain(configProperties);
+        super.activate(configProperties);
+    }
+
+    @Reference
+    protected void setMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    protected void unsetMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = null;
+    }
+
+    @Reference
+    protected void setExecutor(final BCOExecutor executor) {
+        this.executor = executor;
+    }
+
+    protected void unsetExecutor(final BCOExecutor executor) {
+        this.executor = null;
+    }
+
+    @Reference
+    protected void setSnapshotStore(final BCOSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    protected void unsetSnapshotStore(final BCOSnapshotStore snapshotStore) {
+        this.snapshotStore = null;
+    }
+
+    @Reference
+    protected void setRegistryAccess(final BCORegistryAccess registryAccess) {
+        this.registryAccess = registryAccess;
+    }
+
+    protected void unsetRegistryAccess(final BCORegistryAccess registryAccess) {
+        this.registryAccess = null;
+    }
+
+    @Override
+    @Modified
+    protected void modified(@Nullable Map<String, @Nullable Object> configProperties) {
+        if (updateFilterChain(configProperties)) {
+            triggerDiscovery(true);
+        }
+        super.modified(configProperties);
+    }
+
     /**
-     * Method adds all units to the openhab inbox and removes outdated ones.
+     * Update the filter chain with the unit type includes and excludes configured.
+     *
+     * @param configProperties the configuration of the discovery service.
+     * @return true if the unit type filter has changed.
      */
-    private void triggerDiscovery() {
+    private boolean updateFilterChain(@Nullable Map<String, @Nullable Object> configProperties) {
+        if (configProperties == null) {
+            return false;
+        }
 
+        final Set<UnitType> unitTypeIncludes = parseUnitTypes(configProperties.get(CONFIG_UNIT_TYPE_INCLUDES));
+        final Set<UnitType> unitTypeExcludes = parseUnitTypes(configProperties.get(CONFIG_UNIT_TYPE_EXCLUDES));
+        if (unitTypeIncludes.equals(this.unitTypeIncludes) && unitTypeExcludes.equals(this.unitTypeExcludes)) {
+            return false;
+        }
+
+        logger.info("Discover unit types {} excluding {}", unitTypeIncludes.isEmpty() ? "ALL" : unitTypeIncludes, unitTypeExcludes);
+        this.filterChain = createFilterChain(unitTypeIncludes, unitTypeExcludes);
+        return true;
+    }
+
+    private DiscoveryFilterChain createFilterChain(final Set<UnitType> unitTypeIncludes, final Set<UnitType> unitTypeExcludes) {
+        this.unitTypeIncludes = unitTypeIncludes;
+        this.unitTypeExcludes = unitTypeExcludes;
+        return DiscoveryFilterChain.createDefault(unitTypeIncludes, unitTypeExcludes,
+                id -> registryAccess.getUnitConfigById(id),
+                id -> registryAccess.getDeviceClassById(id));
+    }
+
+    private Set<UnitType> parseUnitTypes(@Nullable final Object value) {
+        final Set<UnitType> unitTypes = new HashSet<>();
+        if (!(value instanceof String)) {
+            return unitTypes;
+        }
+
+        for (final String unitTypeName : ((String) value).split(",")) {
+            if (unitTypeName.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                unitTypes.add(UnitType.valueOf(unitTypeName.trim().toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                logger.warn("Ignore unknown unit type {}", unitTypeName);
+            }
+        }
+        return unitTypes;
+    }
+
+    /**
+     * Method adds all new units to the openhab inbox and removes outdated ones.
+     * If a discovery is already running, a follow up pass is performed after it finished so that no change gets lost.
+     *
+     * @param fullDiscovery if true all units are processed instead of only the units changed since the last pass.
+     */
+    private void triggerDiscovery(final boolean fullDiscovery) {
         synchronized (discoveryTaskLock) {
-            if (discoveryTask != null && !discoveryTask.isDone()) {
-                logger.info("Discovery still running, skip request...");
+            fullDiscoveryRequested |= fullDiscovery;
+            if (discoveryRunning) {
+                logger.debug("Discovery still running, queue follow up pass...");
+                followUpDiscoveryRequested = true;
                 return;
             }
+            discoveryRunning = true;
+            prepareDiscovery();
+        }
+    }
 
-            discoveryTask = GlobalCachedExecutorService.submit(() -> {
-                try {
+    /**
+     * Wait on the scheduler until the registry is available and openhab is prepared, so that the executor lane of the
+     * discovery is only occupied by the passes themselves.
+     * Note: needs to be called while holding the discovery task lock.
+     */
+    private void prepareDiscovery() {
+        if (!registryAccess.isDataAvailable()) {
+            if (!snapshotRestored) {
+                snapshotRestored = true;
+                logger.info("Discovery will be started after the bco registry is available...");
+                executor.execute(DISCOVERY_TASK_KEY, ExecutionLane.CONFIG, this::restoreSnapshot);
+            }
+            discoveryTask = scheduler.schedule(this::continueDiscovery, REGISTRY_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        // initial waiting required until openhab is ready and knows the thing types bco can handle.
+        if (initialDiscovery) {
+            initialDiscovery = false;
+            logger.info("Waiting for openhab to prepare the binding registration...");
+            discoveryTask = scheduler.schedule(this::continueDiscovery, OPENHAB_PREPERATION_TIME, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        final long generation = discoveryGeneration;
+        try {
+            discoveryTask = executor.submit(DISCOVERY_TASK_KEY, ExecutionLane.CONFIG, () -> {
+                runDiscoveryPasses(generation);
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            // the pass will never run, so the next trigger has to start a new one
+            logger.warn("Could not submit discovery", ex);
+            discoveryRunning = false;
+            followUpDiscoveryRequested = false;
+        }
+    }
+
+    private void continueDiscovery() {
+        synchronized (discoveryTaskLock) {
+            if (!discoveryRunning) {
+                // cancelled in the meantime
+                return;
+            }
+            try {
+                prepareDiscovery();
+            } catch (RuntimeException ex) {
+                logger.warn("Could not prepare discovery", ex);
+                discoveryRunning = false;
+                followUpDiscoveryRequested = false;
+            }
+        }
+    }
 
-                    if (!Registries.isDataAvailable()) {
-                        logger.info("Discovery will be started after the bco registry is available...");
-                        Registries.waitForData();
+    /**
+     * Perform discovery passes until no follow up pass is requested anymore. Executed on the binding executor.
+     *
+     * @param generation the discovery generation the passes were submitted for.
+     */
+    private void runDiscoveryPasses(final long generation) {
+        try {
+            boolean fullPass;
+            while (true) {
+                synchronized (discoveryTaskLock) {
+                    if (generation != discoveryGeneration) {
+                        return;
                     }
+                    fullPass = fullDiscoveryRequested;
+                    fullDiscoveryRequested = false;
+                    followUpDiscoveryRequested = false;
+                }
+
+                discover(fullPass, generation);
 
-                    // initial waiting required until openhab is ready and knows the thing types bco can handle.
-                    if(initialDiscovery) {
-                        logger.info("Waiting for openhab to prepare the binding registration...");
-                        Thread.sleep(OPENHAB_PREPERATION_TIME);
-                        this.initialDiscovery = false;
+                synchronized (discoveryTaskLock) {
+                    if (!followUpDiscoveryRequested) {
+                        break;
                     }
+                }
+            }
+        } catch (CouldNotPerformException ex) {
+            logger.error("Could not discover things", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (discoveryTaskLock) {
+                // after a cancellation the flag may already belong to a newer discovery
+                if (generation == discoveryGeneration) {
+                    discoveryRunning = false;
+                }
+            }
+        }
+    }
 
-                    logger.info("Start discovery...");
+    /**
+     * @param generation the discovery generation a pass was submitted for.
+     * @return true if the discovery was cancelled since the pass was submitted.
+     */
+    private boolean isDiscoveryCancelled(final long generation) {
+        synchronized (discoveryTaskLock) {
+            return generation != discoveryGeneration;
+        }
+    }
 
-                    diff.diffMessages(getHandledUnitConfigList());
+    /**
+     * Discover the units of the snapshot while the registry is not available yet. They are treated as known, so
+     * that the first pass with live data removes units which do not exist anymore.
+     */
+    private void restoreSnapshot() {
+        for (final UnitConfig unitConfig : snapshotStore.getUnitConfigs()) {
+            try {
+                final DiscoveryResult discoveryResult = getDiscoveryResult(unitConfig);
+                knownUnitConfigMap.put(unitConfig.getId(), unitConfig);
+                discoveredUnitIdSet.add(unitConfig.getId());
+                thingDiscovered(discoveryResult);
+            } catch (NotAvailableException ex) {
+                logger.debug("Skip unit {} of snapshot without label", unitConfig.getId());
+            }
+        }
+        logger.info("Discovered {} units of the snapshot", discoveredUnitIdSet.size());
+    }
 
-                    // add new units to discovery
-                    for (final UnitConfig unitConfig : diff.getNewMessageMap().getMessages()) {
-                        thingDiscovered(getDiscoveryResult(unitConfig));
-                    }
+    /**
+     * Process all units added, removed or modified since the last pass.
+     *
+     * @param fullDiscovery if true all units are processed.
+     * @param generation    the discovery generation the pass was submitted for, results are not published anymore
+     *                      after a cancellation.
+     * @throws CouldNotPerformException is thrown in case the units could not be discovered.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    private void discover(final boolean fullDiscovery, final long generation) throws CouldNotPerformException, InterruptedException {
+        logger.debug("Start {} discovery...", fullDiscovery ? "full" : "incremental");
+        final long startTime = System.nanoTime();
+
+        final DiscoveryFilterChain filterChain = this.filterChain;
+        filterChain.reset();
+
+        final List<UnitConfig> unitConfigs = registryAccess.getUnitConfigs();
+        // the known units are only replaced once the pass succeeded, so that a failed pass is repeated completely
+        final Map<String, UnitConfig> currentUnitConfigMap = new HashMap<>(unitConfigs.size() * 2);
+        final Map<String, UnitConfig> changedUnitConfigMap = new HashMap<>();
+        final Set<String> changedHostedUnitIdSet = new HashSet<>();
+
+        // detect added and modified units
+        for (final UnitConfig unitConfig : unitConfigs) {
+            currentUnitConfigMap.put(unitConfig.getId(), unitConfig);
+            if (!fullDiscovery && unitConfig.equals(knownUnitConfigMap.get(unitConfig.getId()))) {
+                continue;
+            }
+            changedUnitConfigMap.put(unitConfig.getId(), unitConfig);
 
-                    // remove units from discovery
-                    for (final UnitConfig unitConfig : diff.getRemovedMessageMap().getMessages()) {
-                        thingRemoved(getThingUID(unitConfig));
-                    }
+            // a changed device can change if its units are handled
+            if (unitConfig.getUnitType() == UnitType.DEVICE) {
+                changedHostedUnitIdSet.addAll(unitConfig.getDeviceConfig().getUnitIdList());
+            }
+        }
+
+        if (isDiscoveryCancelled(generation)) {
+            logger.debug("Discovery cancelled, skip publishing the results");
+            return;
+        }
+
+        // detect removed units
+        for (final String unitId : knownUnitConfigMap.keySet()) {
+            if (!currentUnitConfigMap.containsKey(unitId) && discoveredUnitIdSet.remove(unitId)) {
+                thingRemoved(getThingUID(unitId));
+            }
+        }
+
+        // re-evaluate units of changed hosts
+        for (final String unitId : changedHostedUnitIdSet) {
+            final UnitConfig unitConfig = currentUnitConfigMap.get(unitId);
+            if (unitConfig != null) {
+                changedUnitConfigMap.putIfAbsent(unitId, unitConfig);
+            }
+        }
 
-                    logger.info("Discovery successful.");
-                } catch (CouldNotPerformException ex) {
-                    logger.error("Could not discover things", ex);
+        // add new units to discovery and remove units which are not handled anymore
+        for (final UnitConfig unitConfig : changedUnitConfigMap.values()) {
+            if (isDiscoveryCancelled(generation)) {
+                // the known units are not replaced, so the next pass processes the remaining units again
+                logger.debug("Discovery cancelled, stop publishing the results");
+                return;
+            }
+            if (filterChain.accept(unitConfig)) {
+                final DiscoveryResult discoveryResult;
+                try {
+                    discoveryResult = getDiscoveryResult(unitConfig);
+                } catch (NotAvailableException ex) {
+                    logger.debug("Skip unit {} without label", unitConfig.getId());
+                    continue;
                 }
-                return null;
-            });
+                discoveredUnitIdSet.add(unitConfig.getId());
+                thingDiscovered(discoveryResult);
+            } else if (discoveredUnitIdSet.remove(unitConfig.getId())) {
+                thingRemoved(getThingUID(unitConfig.getId()));
+            }
+        }
+        knownUnitConfigMap = currentUnitConfigMap;
+
+        // remember the discovered units for the next start
+        final List<UnitConfig> discoveredUnitConfigList = new ArrayList<>(discoveredUnitIdSet.size());
+        for (final String unitId : discoveredUnitIdSet) {
+            discoveredUnitConfigList.add(knownUnitConfigMap.get(unitId));
         }
+        snapshotStore.setUnitConfigs(discoveredUnitConfigList);
+
+        lastDiscoveryDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        metricRegistry.getHistogram(BCOMetricRegistry.DISCOVERY_SCAN).recordSince(startTime);
+        lastProcessedUnitCount = changedUnitConfigMap.size();
+        logger.info("Discovery successful, processed {} of {} units in {}ms.", lastProcessedUnitCount, unitConfigs.size(), lastDiscoveryDuration);
     }
 
     /**
@@ -139,85 +473,86 @@ public class BCODiscoveryService extends AbstractDiscoveryService {
     @Override
     protected void startScan() {
         logger.info("Start scan for new unis...");
-        triggerDiscovery();
+        triggerDiscovery(true);
     }
 
     @Override
     protected synchronized void stopScan() {
         synchronized (discoveryTaskLock) {
-            discoveryTask.cancel(true);
-            discoveryTask = null;
+            cancelDiscoveryTask();
             super.stopScan();
         }
     }
 
+    @Override
+    @Deactivate
+    protected void deactivate() {
+        super.deactivate();
+        synchronized (discoveryTaskLock) {
+            cancelDiscoveryTask();
+        }
+    }
+
     /**
-     * Generates a list with all units that are handled by the bco binding.
-     * @return the list of supported units.
-     * @throws CouldNotPerformException is thrown in case the list could not be generated.
-     * @throws InterruptedException is thrown if the thread was externally interrupted.
+     * Note: needs to be called while holding the discovery task lock.
      */
-    private List<UnitConfig> getHandledUnitConfigList() throws CouldNotPerformException, InterruptedException {
-
-        final List<UnitConfig> handledUnitConfigs = new ArrayList<>();
-        for (UnitConfig unitConfig : Registries.getUnitRegistry().getUnitConfigs()) {
-            // ignore all units without services
-            if (unitConfig.getServiceConfigCount() == 0) {
-                continue;
-            }
-
-            // ignore system users
-            if (unitConfig.getUnitType() == UnitType.USER && unitConfig.getUserConfig().getSystemUser()) {
-                continue;
-            }
-
-            // ignore all units from devices handled by the openhab app
-            if (!unitConfig.getUnitHostId().isEmpty()) {
-                UnitConfig unitHost = Registries.getUnitRegistry().getUnitConfigById(unitConfig.getUnitHostId());
-                if (unitHost.getUnitType() == UnitType.DEVICE) {
-                    DeviceClass deviceClass = Registries.getClassRegistry().getDeviceClassById(unitHost.getDeviceConfig().getDeviceClassId());
-                    if (deviceClass.getBindingConfig().getBindingId().equalsIgnoreCase("openhab")) {
-                        continue;
-                    }
-                }
-            }
-
-            handledUnitConfigs.add(unitConfig);
+    private void cancelDiscoveryTask() {
+        // the pass runs on a shared executor worker which must not be interrupted, it stops by checking the generation
+        discoveryGeneration++;
+        if (discoveryTask != null) {
+            discoveryTask.cancel(false);
+            discoveryTask = null;
         }
+        discoveryRunning = false;
+        followUpDiscoveryRequested = false;
+    }
 
-        return handledUnitConfigs;
+    /**
+     * @return the duration of the last discovery pass in milliseconds.
+     */
+    public long getLastDiscoveryDuration() {
+        return lastDiscoveryDuration;
+    }
+
+    /**
+     * @return the number of units processed by the last discovery pass.
+     */
+    public int getLastProcessedUnitCount() {
+        return lastProcessedUnitCount;
     }
 
     @Override
     protected void startBackgroundDiscovery() {
         logger.info("Start background discovery");
         try {
-            Registries.getUnitRegistry().addDataObserver(unitRegistryObserver);
+            registryAccess.addUnitRegistryObserver(unitRegistryObserver);
         } catch (NotAvailableException ex) {
             logger.warn("Could not start background discovery", ex);
         }
 
         // initial discovery
-        this.initialDiscovery = true;
-        triggerDiscovery();
+        synchronized (discoveryTaskLock) {
+            this.initialDiscovery = true;
+        }
+        triggerDiscovery(true);
     }
 
     @Override
     protected void stopBackgroundDiscovery() {
         logger.info("Stop background discovery");
         try {
-            Registries.getUnitRegistry().removeDataObserver(unitRegistryObserver);
+            registryAccess.removeUnitRegistryObserver(unitRegistryObserver);
         } catch (NotAvailableException ex) {
             logger.warn("Could not stop background discovery", ex);
         }
     }
 
-    private ThingUID getThingUID(final UnitConfig unitConfig) {
-        return new ThingUID(new ThingTypeUID(BCOBindingConstants.BINDING_ID, BCOBindingConstants.UNIT_THING_TYPE), unitConfig.getId());
+    private ThingUID getThingUID(final String unitId) {
+        return new ThingUID(new ThingTypeUID(BCOBindingConstants.BINDING_ID, BCOBindingConstants.UNIT_THING_TYPE), unitId);
     }
 
     private DiscoveryResult getDiscoveryResult(final UnitConfig unitConfig) throws NotAvailableException {
-        final ThingUID thingUID = getThingUID(unitConfig);
+        final ThingUID thingUID = getThingUID(unitConfig.getId());
         final String label = LabelProcessor.getBestMatch(unitConfig.getLabel());
         return DiscoveryResultBuilder.create(thingUID).withLabel(label).build();
     }
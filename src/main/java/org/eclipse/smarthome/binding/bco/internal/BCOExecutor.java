@@ -0,0 +1,470 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.common.NamedThreadFactory;
+import org.openbase.jul.schedule.SyncObject;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link BCOExecutor} runs the asynchronous work of the binding on a bounded number of threads owned by the
+ * binding instead of the unbounded executor shared with the rest of the bco stack.
+ * <p>
+ * Tasks are submitted with a key, e.g. the id of a thing. Tasks with the same key are executed one after another,
+ * while tasks of different keys are executed in parallel.
+ * <p>
+ * Every task belongs to an {@link ExecutionLane}. Waiting tasks of a higher priority lane are executed first, both
+ * between keys and within the tasks of one key. Tasks of the same key and lane are executed in the order they were
+ * submitted. The time tasks wait is recorded per lane and a warning is logged if it exceeds the latency budget.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = BCOExecutor.class, configurationPid = "binding.bco")
+public class BCOExecutor {
+
+    public static final String QUEUE_DEPTH = "executor.queueDepth";
+    public static final String SATURATION = "executor.saturation";
+
+    // maximal number of tasks of one key executed before other keys get a turn
+    private static final int MAX_TASKS_PER_TURN = 16;
+    // in milliseconds, minimal time between two warnings about an exceeded latency budget of the same lane
+    private static final long LATENCY_WARNING_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private static final ExecutionLane[] LANES = ExecutionLane.values();
+    private static final int NOT_SCHEDULED = Integer.MAX_VALUE;
+    // in milliseconds
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Logger logger = LoggerFactory.getLogger(BCOExecutor.class);
+
+    private final SyncObject keyQueueLock = new SyncObject("KeyQueueLock");
+    private final Map<String, KeyQueue> keyQueueMap;
+    private final int[] laneQueueDepths;
+    private int queuedTaskCount;
+    private long turnSequence;
+    private LaneStatistics[] laneStatistics;
+
+    private @Nullable ThreadPoolExecutor executor;
+    private @NonNullByDefault({}) BCOMetricRegistry metricRegistry;
+
+    public BCOExecutor() {
+        this.keyQueueMap = new HashMap<>();
+        this.laneQueueDepths = new int[LANES.length];
+        this.laneStatistics = new LaneStatistics[0];
+    }
+
+    @Reference
+    protected void setMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    protected void unsetMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = null;
+    }
+
+    @Activate
+    protected void activate(@Nullable final Map<String, @Nullable Object> configProperties) {
+        int threadCount = BCOBindingConstants.DEFAULT_EXECUTOR_THREADS;
+        boolean virtualThreads = false;
+        if (configProperties != null) {
+            final Object threads = configProperties.get(BCOBindingConstants.CONFIG_EXECUTOR_THREADS);
+            if (threads instanceof Number) {
+                threadCount = ((Number) threads).intValue();
+            } else if (threads instanceof String) {
+                try {
+                    threadCount = Integer.parseInt((String) threads);
+                } catch (NumberFormatException ex) {
+                    logger.warn("Ignore invalid value {} of property {}", threads, BCOBindingConstants.CONFIG_EXECUTOR_THREADS);
+                }
+            }
+            virtualThreads = Boolean.parseBoolean(String.valueOf(configProperties.get(BCOBindingConstants.CONFIG_VIRTUAL_THREADS)));
+        }
+
+        final LaneStatistics[] laneStatistics = new LaneStatistics[LANES.length];
+        for (final ExecutionLane lane : LANES) {
+            laneStatistics[lane.ordinal()] = new LaneStatistics(lane, getLatencyBudget(configProperties, lane));
+            metricRegistry.registerGauge(lane.getQueueDepthMetric(), () -> getQueueDepth(lane));
+            metricRegistry.registerGauge(lane.getBudgetExceededMetric(), laneStatistics[lane.ordinal()].budgetExceededCounter::get);
+        }
+        this.laneStatistics = laneStatistics;
+
+        // the queue orders the turns of all keys by the priority of their lanes
+        final int poolSize = Math.max(1, threadCount);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), createThreadFactory(virtualThreads));
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+
+        metricRegistry.registerGauge(QUEUE_DEPTH, this::getQueueDepth);
+        metricRegistry.registerGauge(SATURATION, this::getSaturation);
+    }
+
+    private long getLatencyBudget(@Nullable final Map<String, @Nullable Object> configProperties, final ExecutionLane lane) {
+        final Object value = configProperties == null ? null : configProperties.get(lane.getLatencyBudgetKey());
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ex) {
+                logger.warn("Ignore invalid value {} of property {}", value, lane.getLatencyBudgetKey());
+            }
+        }
+        return lane.getDefaultLatencyBudget();
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        metricRegistry.unregisterGauge(QUEUE_DEPTH);
+        metricRegistry.unregisterGauge(SATURATION);
+        for (final ExecutionLane lane : LANES) {
+            metricRegistry.unregisterGauge(lane.getQueueDepthMetric());
+            metricRegistry.unregisterGauge(lane.getBudgetExceededMetric());
+        }
+
+        final ThreadPoolExecutor executor = this.executor;
+        this.executor = null;
+        synchronized (keyQueueLock) {
+            keyQueueMap.clear();
+            Arrays.fill(laneQueueDepths, 0);
+            queuedTaskCount = 0;
+        }
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Executor threads did not stop within {}ms", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Virtual threads are only available on newer java versions, so they are created via reflection and
+     * platform threads are used as a fallback.
+     */
+    private ThreadFactory createThreadFactory(final boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                Object builder = ofVirtual.invoke(null);
+                builder = builder.getClass().getMethod("name", String.class, long.class).invoke(builder, BCOBindingConstants.EXECUTOR_THREAD_NAME + "-", 0L);
+                final Method factory = builder.getClass().getMethod("factory");
+                factory.setAccessible(true);
+                logger.info("Execute binding tasks on virtual threads");
+                return (ThreadFactory) factory.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                logger.info("Virtual threads are not supported by this java version, use platform threads instead");
+            }
+        }
+        return new NamedThreadFactory(BCOBindingConstants.EXECUTOR_THREAD_NAME);
+    }
+
+    /**
+     * Execute a task after all tasks submitted before with the same key and lane, and after all waiting tasks of
+     * the same key in lanes of a higher priority.
+     *
+     * @param key  the key determining the order, e.g. the id of a thing.
+     * @param lane the priority of the task.
+     * @param task the task to execute.
+     * @return false if the task was dropped because the executor is not active.
+     */
+    public boolean execute(final String key, final ExecutionLane lane, final Runnable task) {
+        final ThreadPoolExecutor executor = this.executor;
+        if (executor == null || executor.isShutdown()) {
+            logger.debug("Drop task for {} because the executor is not active", key);
+            return false;
+        }
+
+        synchronized (keyQueueLock) {
+            final KeyQueue keyQueue = keyQueueMap.computeIfAbsent(key, KeyQueue::new);
+            keyQueue.laneQueues[lane.ordinal()].add(new QueuedTask(task, System.nanoTime()));
+            laneQueueDepths[lane.ordinal()]++;
+            queuedTaskCount++;
+            keyQueue.schedule(executor, lane.ordinal());
+        }
+        return true;
+    }
+
+    /**
+     * Execute a task after all tasks submitted before with the same key and lane.
+     *
+     * @param key  the key determining the order.
+     * @param lane the priority of the task.
+     * @param task the task to execute.
+     * @param <T>  the type of the result.
+     * @return a future providing the result which can also be used to cancel the task.
+     * @throws RejectedExecutionException is thrown if the executor is not active, so the task would never complete.
+     */
+    public <T> Future<T> submit(final String key, final ExecutionLane lane, final Callable<T> task) {
+        final FutureTask<T> futureTask = new FutureTask<>(task);
+        if (!execute(key, lane, futureTask)) {
+            throw new RejectedExecutionException("Executor is not active");
+        }
+        return futureTask;
+    }
+
+    /**
+     * @return the number of tasks waiting to be executed.
+     */
+    public int getQueueDepth() {
+        synchronized (keyQueueLock) {
+            return queuedTaskCount;
+        }
+    }
+
+    /**
+     * @param lane the lane of the tasks.
+     * @return the number of tasks of the lane waiting to be executed.
+     */
+    public int getQueueDepth(final ExecutionLane lane) {
+        synchronized (keyQueueLock) {
+            return laneQueueDepths[lane.ordinal()];
+        }
+    }
+
+    /**
+     * @return the number of keys with waiting or running tasks.
+     */
+    public int getActiveKeyCount() {
+        synchronized (keyQueueLock) {
+            return keyQueueMap.size();
+        }
+    }
+
+    /**
+     * @return the fraction of threads currently busy, 1 means the executor is saturated.
+     */
+    public double getSaturation() {
+        final ThreadPoolExecutor executor = this.executor;
+        if (executor == null) {
+            return 0;
+        }
+        return executor.getActiveCount() / (double) executor.getMaximumPoolSize();
+    }
+
+    /**
+     * The tasks of one key, separated by lane. At most one thread processes the queue at a time which ensures the
+     * order.
+     */
+    private class KeyQueue {
+
+        private final String key;
+        private final Queue<QueuedTask>[] laneQueues;
+        private boolean running;
+
+        /**
+         * The highest priority a turn of this queue has been handed to the thread pool with since the queue was
+         * processed the last time.
+         */
+        private int scheduledLane;
+
+        @SuppressWarnings("unchecked")
+        private KeyQueue(final String key) {
+            this.key = key;
+            this.laneQueues = new Queue[LANES.length];
+            for (int i = 0; i < laneQueues.length; i++) {
+                laneQueues[i] = new ArrayDeque<>();
+            }
+            this.scheduledLane = NOT_SCHEDULED;
+        }
+
+        /**
+         * Hand a turn to the thread pool unless the queue is processed or a turn of at least the same priority
+         * is already waiting. A turn of a lower priority which is still waiting finds the queue processed and
+         * returns immediately.
+         * Note: needs to be called while holding the key queue lock.
+         */
+        private void schedule(final ThreadPoolExecutor executor, final int lane) {
+            if (running || lane >= scheduledLane) {
+                return;
+            }
+            scheduledLane = lane;
+            executor.execute(new Turn(this, lane, turnSequence++));
+        }
+
+        /**
+         * Note: needs to be called while holding the key queue lock.
+         *
+         * @return the lane with the highest priority with waiting tasks or {@link #NOT_SCHEDULED} if there are none.
+         */
+        private int getNextLane() {
+            for (int lane = 0; lane < laneQueues.length; lane++) {
+                if (!laneQueues[lane].isEmpty()) {
+                    return lane;
+                }
+            }
+            return NOT_SCHEDULED;
+        }
+
+        private void process() {
+            synchronized (keyQueueLock) {
+                if (running) {
+                    // superseded by a turn of higher priority
+                    return;
+                }
+                running = true;
+                scheduledLane = NOT_SCHEDULED;
+            }
+
+            for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+                final int lane;
+                final QueuedTask task;
+                synchronized (keyQueueLock) {
+                    lane = getNextLane();
+                    if (lane == NOT_SCHEDULED) {
+                        running = false;
+                        keyQueueMap.remove(key, this);
+                        return;
+                    }
+                    task = laneQueues[lane].poll();
+                    laneQueueDepths[lane]--;
+                    queuedTaskCount--;
+                }
+
+                laneStatistics[lane].recordQueueTime(key, task.enqueueTime);
+                try {
+                    task.task.run();
+                } catch (RuntimeException ex) {
+                    logger.warn("Task for {} failed", key, ex);
+                }
+            }
+
+            // give other keys a turn, the remaining tasks are continued afterwards
+            synchronized (keyQueueLock) {
+                running = false;
+                final ThreadPoolExecutor executor = BCOExecutor.this.executor;
+                final int lane = getNextLane();
+                if (lane != NOT_SCHEDULED && executor != null && !executor.isShutdown()) {
+                    schedule(executor, lane);
+                }
+            }
+        }
+    }
+
+    /**
+     * A turn of a key queue waiting for a thread. Turns are ordered by the priority of their lane and then by the
+     * order they were handed to the thread pool.
+     */
+    private static class Turn implements Runnable, Comparable<Turn> {
+
+        private final KeyQueue keyQueue;
+        private final int lane;
+        private final long sequence;
+
+        private Turn(final KeyQueue keyQueue, final int lane, final long sequence) {
+            this.keyQueue = keyQueue;
+            this.lane = lane;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            keyQueue.process();
+        }
+
+        @Override
+        public int compareTo(final Turn other) {
+            if (lane != other.lane) {
+                return Integer.compare(lane, other.lane);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable task;
+        private final long enqueueTime;
+
+        private QueuedTask(final Runnable task, final long enqueueTime) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+    /**
+     * The queue time and the latency budget violations of one lane.
+     */
+    private class LaneStatistics {
+
+        private final ExecutionLane lane;
+        private final LatencyHistogram queueTimeHistogram;
+        // in milliseconds
+        private final long latencyBudget;
+        private final AtomicLong budgetExceededCounter;
+        private final AtomicLong lastWarningTime;
+
+        private LaneStatistics(final ExecutionLane lane, final long latencyBudget) {
+            this.lane = lane;
+            this.queueTimeHistogram = metricRegistry.getHistogram(lane.getQueueTimeMetric());
+            this.latencyBudget = latencyBudget;
+            this.budgetExceededCounter = new AtomicLong();
+            this.lastWarningTime = new AtomicLong(System.currentTimeMillis() - LATENCY_WARNING_INTERVAL);
+        }
+
+        private void recordQueueTime(final String key, final long enqueueTime) {
+            final long queueTime = System.nanoTime() - enqueueTime;
+            queueTimeHistogram.record(queueTime, TimeUnit.NANOSECONDS);
+            if (TimeUnit.NANOSECONDS.toMillis(queueTime) <= latencyBudget) {
+                return;
+            }
+
+            final long budgetExceededCount = budgetExceededCounter.incrementAndGet();
+            final long currentTime = System.currentTimeMillis();
+            final long lastWarningTime = this.lastWarningTime.get();
+            // warn at most once per interval during a storm
+            if (currentTime - lastWarningTime >= LATENCY_WARNING_INTERVAL && this.lastWarningTime.compareAndSet(lastWarningTime, currentTime)) {
+                logger.warn("Task for {} waited {}ms in lane {} which exceeds the latency budget of {}ms, budget exceeded {} times in total",
+                        key, TimeUnit.NANOSECONDS.toMillis(queueTime), lane.name(), latencyBudget, budgetExceededCount);
+            }
+        }
+    }
+}
@@ -22,34 +22,30 @@ package org.eclipse.smarthome.binding.bco.internal;
  * #L%
  */
 
-import com.google.protobuf.ByteString;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.eclipse.smarthome.core.thing.binding.ThingHandlerFactory;
-import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.bco.dal.remote.layer.unit.Units;
 import org.openbase.bco.registry.remote.Registries;
-import org.openbase.bco.registry.remote.login.BCOLogin;
-import org.openbase.bco.registry.unit.lib.UnitRegistry;
-import org.openbase.jps.core.JPService;
-import org.openbase.jps.exception.JPServiceException;
-import org.openbase.jul.exception.CouldNotPerformException;
-import org.openbase.jul.exception.NotAvailableException;
-import org.openbase.jul.extension.rsb.com.RSBSharedConnectionConfig;
-import org.openbase.jul.extension.rsb.com.jp.JPRSBHost;
-import org.openbase.jul.extension.rsb.com.jp.JPRSBPort;
-import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
+import org.osgi.framework.Bundle;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * The {@link BCOHandlerFactory} is responsible for creating things and thing
@@ -70,105 +66,218 @@ public class BCOHandlerFactory extends BaseThingHandlerFactory {
 
     @Override
     protected @Nullable ThingHandler createHandler(final Thing thing) {
-        return new UnitHandler(thing);
+        final BCOBindingContext context = this.context;
+        if (context == null) {
+            logger.warn("Cannot create handler for thing {} before the factory is activated", thing.getUID());
+            return null;
+        }
+        if (BCOBindingConstants.SERVER_THING_TYPE_UID.equals(thing.getThingTypeUID())) {
+            return new BCOServerHandler((Bridge) thing, context);
+        }
+        return new UnitHandler(thing, context);
+    }
+
+    @Reference
+    protected void setMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
     }
 
-    private static boolean initialActivate = true;
+    protected void unsetMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = null;
+    }
+
+    @Reference
+    protected void setExecutor(final BCOExecutor executor) {
+        this.executor = executor;
+    }
+
+    protected void unsetExecutor(final BCOExecutor executor) {
+        this.executor = null;
+    }
+
+    @Reference
+    protected void setSnapshotStore(final BCOSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    protected void unsetSnapshotStore(final BCOSnapshotStore snapshotStore) {
+        this.snapshotStore = null;
+    }
 
+    @Reference
+    protected void setRegistryAccess(final BCORegistryAccess registryAccess) {
+        this.registryAccess = registryAccess;
+    }
+
+    protected void unsetRegistryAccess(final BCORegistryAccess registryAccess) {
+        this.registryAccess = null;
+    }
+
+    @Reference
+    protected void setChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = channelStateStore;
+    }
+
+    protected void unsetChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = null;
+    }
+
+    private @Nullable BCOBindingContext context;
+    private @NonNullByDefault({}) BCOMetricRegistry metricRegistry;
+    private @NonNullByDefault({}) BCOExecutor executor;
+    private @NonNullByDefault({}) BCOSnapshotStore snapshotStore;
+    private @NonNullByDefault({}) BCORegistryAccess registryAccess;
+    private @NonNullByDefault({}) ChannelStateStore channelStateStore;
+
+    /**
+     * Activation only reads the configuration. Connecting to bco is done in the background by the {@link BCOConnector}
+     * and handlers are initialized once it is ready.
+     */
     @Override
     protected void activate(ComponentContext componentContext) {
         super.activate(componentContext);
 
         final Dictionary<String, Object> properties = componentContext.getProperties();
+        final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(BCOBindingConstants.BINDING_ID);
 
-        try {
-            final Integer oldPort = JPService.getProperty(JPRSBPort.class).getValue();
-            final String oldHost = JPService.getProperty(JPRSBHost.class).getValue();
-            logger.info("OldHost {}, oldPort {}, initAct {}", oldHost, oldPort, initialActivate);
-
-            final Object rsbHost = properties.get("rsbHost");
-            if (rsbHost instanceof String) {
-                JPService.registerProperty(JPRSBHost.class, (String) rsbHost);
-                JPService.getProperty(JPRSBHost.class).update((String) rsbHost);
+        final UnitRemotePool remotePool = new UnitRemotePool();
+        final CommandBatcher commandBatcher = new CommandBatcher(
+                getLongProperty(properties, BCOBindingConstants.CONFIG_COMMAND_BATCH_WINDOW, BCOBindingConstants.DEFAULT_COMMAND_BATCH_WINDOW),
+                (int) getLongProperty(properties, BCOBindingConstants.CONFIG_MAX_IN_FLIGHT_ACTIONS, BCOBindingConstants.DEFAULT_MAX_IN_FLIGHT_ACTIONS),
+                (int) getLongProperty(properties, BCOBindingConstants.CONFIG_MAX_IN_FLIGHT_ACTIONS_PER_UNIT, BCOBindingConstants.DEFAULT_MAX_IN_FLIGHT_ACTIONS_PER_UNIT),
+                scheduler,
+                executor,
+                metricRegistry);
+        final UnitInitializer unitInitializer = new UnitInitializer((int) getLongProperty(properties, BCOBindingConstants.CONFIG_INITIALIZATION_THREADS, BCOBindingConstants.DEFAULT_INITIALIZATION_THREADS), metricRegistry);
 
-            }
+        final BCOConnector connector = new BCOConnector(
+                getLongProperty(properties, BCOBindingConstants.CONFIG_CONNECTION_TIMEOUT, BCOBindingConstants.DEFAULT_CONNECTION_TIMEOUT),
+                getLongProperty(properties, BCOBindingConstants.CONFIG_CONNECTION_BACKOFF, BCOBindingConstants.DEFAULT_CONNECTION_BACKOFF),
+                getLongProperty(properties, BCOBindingConstants.CONFIG_MAX_CONNECTION_BACKOFF, BCOBindingConstants.DEFAULT_MAX_CONNECTION_BACKOFF),
+                metricRegistry);
+        final ReconnectManager reconnectManager = new ReconnectManager(
+                getLongProperty(properties, BCOBindingConstants.CONFIG_RECONNECT_GROUPING_WINDOW, BCOBindingConstants.DEFAULT_RECONNECT_GROUPING_WINDOW),
+                getLongProperty(properties, BCOBindingConstants.CONFIG_RECONNECT_JITTER, BCOBindingConstants.DEFAULT_RECONNECT_JITTER),
+                (int) getLongProperty(properties, BCOBindingConstants.CONFIG_MAX_CONCURRENT_RESYNCS, BCOBindingConstants.DEFAULT_MAX_CONCURRENT_RESYNCS),
+                scheduler,
+                metricRegistry);
+        this.context = new BCOBindingContext(
+                getLongProperty(properties, BCOBindingConstants.CONFIG_UPDATE_INTERVAL, BCOBindingConstants.DEFAULT_UPDATE_INTERVAL),
+                connector,
+                commandBatcher,
+                unitInitializer,
+                new LocationAggregateCache(remotePool, registryAccess),
+                metricRegistry,
+                reconnectManager,
+                remotePool,
+                executor,
+                SamplingConfiguration.read(properties::get, new SamplingConfiguration(
+                        Collections.emptySet(),
+                        BCOBindingConstants.DEFAULT_SAMPLING_INTERVAL,
+                        BCOBindingConstants.DEFAULT_SAMPLING_DEADBAND)),
+                snapshotStore,
+                registryAccess,
+                new RemoteActivationTracker(
+                        getBooleanProperty(properties, BCOBindingConstants.CONFIG_LAZY_REMOTE_ACTIVATION, BCOBindingConstants.DEFAULT_LAZY_REMOTE_ACTIVATION),
+                        getLongProperty(properties, BCOBindingConstants.CONFIG_REMOTE_IDLE_TIMEOUT, BCOBindingConstants.DEFAULT_REMOTE_IDLE_TIMEOUT),
+                        metricRegistry),
+                channelStateStore);
+        connector.connect(properties);
+    }
 
-            final Object rsbPort = properties.get("rsbPort");
-            if (rsbPort instanceof String) {
-                JPService.registerProperty(JPRSBPort.class, Integer.parseInt((String) rsbPort));
-                JPService.getProperty(JPRSBPort.class).update(Integer.parseInt((String) rsbPort));
-            }
-            final String[] args = {};
-            JPService.parse(args);
-
-            final Integer newPort = JPService.getProperty(JPRSBPort.class).getValue();
-            final String newHost = JPService.getProperty(JPRSBHost.class).getValue();
-
-            logger.info("Activate with RSBHost {} and RSBPort {}", newHost, newPort);
-            if (!oldPort.equals(newPort) || !oldHost.equals(newHost)) {
-                logger.info("RSBHost changed from {} to {}", oldHost, newHost);
-                logger.info("RSBPort changed from {} to {}", oldPort, newPort);
-
-                RSBSharedConnectionConfig.reload();
-                logger.info("Middleware configuration finished.");
-
-                // do not perform re-init on initial start because there is no need for it.
-                if (!initialActivate) {
-                    try {
-                        logger.info("Reinit registries");
-                        Registries.reinitialize();
-                        logger.info("Reinit units");
-                        Units.reinitialize();
-                    } catch (CouldNotPerformException ex) {
-                        logger.error("Could not reinitialize remotes after host and/or port change!", ex);
-                    } catch (InterruptedException ex) {
-                        Thread.currentThread().interrupt();
-                    }
-                } else {
-                    initialActivate = false;
-                }
+    private long getLongProperty(final Dictionary<String, Object> properties, final String key, final long defaultValue) {
+        final Object value = properties.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ex) {
+                logger.warn("Ignore invalid value {} of property {}", value, key);
             }
+        }
+        return defaultValue;
+    }
 
-            if (!SessionManager.getInstance().isLoggedIn()) {
-                try {
-                    logger.info("Establish an authorized connection to bco...");
-                    Object credentials = properties.get("credentials");
-                    if (!(credentials instanceof String)) {
-                        throw new NotAvailableException("Credentials");
-                    }
-                    Registries.waitForData();
-                    Registries.waitForData();
-                    LoginCredentials loginCredentials = LoginCredentials.newBuilder()
-                            .setId(Registries.getUnitRegistry().getUnitConfigByAlias(UnitRegistry.OPENHAB_USER_ALIAS).getId())
-                            .setSymmetric(false)
-                            .setAdmin(false)
-                            .setCredentials(ByteString.copyFrom(Base64.getDecoder().decode((String) credentials)))
-                            .build();
-                    SessionManager.getInstance().loginClient(loginCredentials.getId(), loginCredentials, true);
-                    logger.info("Authorization successful");
-                } catch (Exception e) {
-                    logger.error("Could not login as openhab user", e);
-                    if (!BCOLogin.getSession().isLoggedIn()) {
-                        try {
-                            BCOLogin.getSession().loginUserViaUsername("admin", "admin", true);
-                        } catch (CouldNotPerformException ex) {
-                            logger.error("Could not login admin", ex);
-                        }
-                    }
-                }
-            }
-        } catch (JPServiceException ex) {
-            logger.error("Could not read or update JPProperty", ex);
+    private boolean getBooleanProperty(final Dictionary<String, Object> properties, final String key, final boolean defaultValue) {
+        final Object value = properties.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof String) {
+            return Boolean.parseBoolean((String) value);
         }
+        return defaultValue;
     }
 
+    /**
+     * Tear down all components of the binding. The handlers have already been disposed at this point, so they
+     * released their remotes and removed their observers. If the bundle is stopped, the remotes and registries
+     * are shut down as well because they live in the class loader of this bundle.
+     */
     @Override
     protected void deactivate(ComponentContext componentContext) {
         super.deactivate(componentContext);
 
-        // shutdown binding
-        // TODO: 18.12.20 implement proper binding shutdown
-//        Registries.shutdown();
-//        Units.shutdown();
+        final BCOBindingContext context = this.context;
+        this.context = null;
+        if (context == null) {
+            return;
+        }
+
+        context.getConnector().shutdown();
+        context.getCommandBatcher().shutdown();
+        context.getLocationAggregateCache().shutdown();
+        context.getActivationTracker().shutdown();
+        try {
+            context.getReconnectManager().shutdown();
+            context.getUnitInitializer().shutdown();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        // verify before the remotes are shut down, otherwise remotes which were not deactivated on release go unnoticed
+        verifyShutdown(context.getRemotePool());
+
+        if (componentContext.getBundleContext().getBundle().getState() == Bundle.STOPPING) {
+            logger.info("Shutdown bco remotes");
+            Units.shutdown();
+            Registries.shutdown();
+        }
+    }
+
+    /**
+     * Log remotes still referenced, released remotes still active, observers still registered and threads of the
+     * binding still alive after deactivation.
+     */
+    private void verifyShutdown(final UnitRemotePool remotePool) {
+        final Map<String, Integer> referenceCountMap = remotePool.getReferenceCountMap();
+        if (!referenceCountMap.isEmpty()) {
+            logger.warn("{} remote references left after deactivation: {}", remotePool.getReferenceCount(), referenceCountMap);
+        }
+
+        final Map<String, Integer> observerCountMap = remotePool.getObserverCountMap();
+        if (!observerCountMap.isEmpty()) {
+            logger.warn("{} remote observers left after deactivation: {}", remotePool.getObserverCount(), observerCountMap);
+        }
+
+        final List<String> activeRemoteIdList = remotePool.getActiveReleasedRemoteIds();
+        if (!activeRemoteIdList.isEmpty()) {
+            logger.warn("{} released remotes still active after deactivation: {}", activeRemoteIdList.size(), activeRemoteIdList);
+        }
+
+        final List<String> threadNameList = new ArrayList<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            final String name = thread.getName();
+            if (thread.isAlive() && (name.contains(BCOBindingConstants.INITIALIZATION_THREAD_NAME) || name.contains(BCOBindingConstants.RESYNC_THREAD_NAME))) {
+                threadNameList.add(name);
+            }
+        }
+        if (!threadNameList.isEmpty()) {
+            logger.warn("{} threads left after deactivation: {}", threadNameList.size(), threadNameList);
+        }
+
+        if (referenceCountMap.isEmpty() && observerCountMap.isEmpty() && activeRemoteIdList.isEmpty() && threadNameList.isEmpty()) {
+            logger.info("Binding deactivated without remaining remotes, observers or threads");
+        }
     }
 }
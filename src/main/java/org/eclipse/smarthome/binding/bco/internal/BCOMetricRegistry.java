@@ -0,0 +1,288 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.osgi.service.component.annotations.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The {@link BCOMetricRegistry} collects the metrics of the whole binding, e.g. to find the units causing load.
+ * It is provided as an OSGi service and printed by the bco console command.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = BCOMetricRegistry.class)
+public class BCOMetricRegistry {
+
+    public static final String OBSERVER_QUEUE_TIME = "observer.queueTime";
+    public static final String DISCOVERY_SCAN = "discovery.scan";
+    public static final String ACTIVATION_REGISTRY_WAIT = "activation.registryWait";
+    public static final String ACTIVATION_LOGIN = "activation.login";
+    public static final String CHANNEL_UPDATES_EMITTED = "channel.updates.emitted";
+    public static final String CHANNEL_UPDATES_SUPPRESSED = "channel.updates.suppressed";
+    public static final String CHANNEL_UPDATES_COALESCED = "channel.updates.coalesced";
+    public static final String CHANNEL_UPDATES_HELD_BACK = "channel.updates.heldBack";
+
+    private static final String COMMAND_DISPATCH_PREFIX = "command.applyAction.";
+    private static final String TRANSFORM_PREFIX = "transform.";
+    private static final String COMMAND_ROUND_TRIP_PREFIX = "command.roundTrip.";
+
+    private final Map<String, LatencyHistogram> histogramMap;
+    private final Map<ServiceType, LatencyHistogram> commandDispatchHistogramMap;
+    private final Map<ServiceType, LatencyHistogram> transformHistogramMap;
+    private final Map<ServiceType, LatencyHistogram> commandRoundTripHistogramMap;
+    private final Map<String, LatencyHistogram> thingRoundTripHistogramMap;
+    private final Map<String, RateMeter> stateUpdateRateMap;
+    private final Map<String, ReconnectStatistics> reconnectStatisticsMap;
+    private final Map<String, Supplier<? extends Number>> gaugeMap;
+    private final Map<String, LongAdder> counterMap;
+
+    public BCOMetricRegistry() {
+        this.histogramMap = new ConcurrentHashMap<>();
+        this.commandDispatchHistogramMap = new ConcurrentHashMap<>();
+        this.transformHistogramMap = new ConcurrentHashMap<>();
+        this.commandRoundTripHistogramMap = new ConcurrentHashMap<>();
+        this.thingRoundTripHistogramMap = new ConcurrentHashMap<>();
+        this.stateUpdateRateMap = new ConcurrentHashMap<>();
+        this.reconnectStatisticsMap = new ConcurrentHashMap<>();
+        this.gaugeMap = new ConcurrentHashMap<>();
+        this.counterMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get a histogram by name. The histogram is created if it does not exist yet.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public LatencyHistogram getHistogram(final String name) {
+        return histogramMap.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Register a histogram created by another component, so that it is listed with the metrics of the binding.
+     *
+     * @param histogram the histogram to register. A histogram with the same name is replaced.
+     */
+    public void register(final LatencyHistogram histogram) {
+        histogramMap.put(histogram.getName(), histogram);
+    }
+
+    /**
+     * Register a gauge which is read whenever the metrics are printed, e.g. the depth of a queue.
+     *
+     * @param name  the name of the gauge. A gauge with the same name is replaced.
+     * @param gauge supplies the current value.
+     */
+    public void registerGauge(final String name, final Supplier<? extends Number> gauge) {
+        gaugeMap.put(name, gauge);
+    }
+
+    /**
+     * @param name the name of the gauge to remove.
+     */
+    public void unregisterGauge(final String name) {
+        gaugeMap.remove(name);
+    }
+
+    /**
+     * Get a counter by name, e.g. to count events of all things. The counter is created and listed with the
+     * gauges if it does not exist yet.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public LongAdder getCounter(final String name) {
+        return counterMap.computeIfAbsent(name, key -> {
+            final LongAdder counter = new LongAdder();
+            gaugeMap.put(key, counter::sum);
+            return counter;
+        });
+    }
+
+    /**
+     * @return the current values of all gauges sorted by name.
+     */
+    public Map<String, Number> getGauges() {
+        final Map<String, Number> valueMap = new TreeMap<>();
+        for (final Map.Entry<String, Supplier<? extends Number>> entry : gaugeMap.entrySet()) {
+            valueMap.put(entry.getKey(), entry.getValue().get());
+        }
+        return valueMap;
+    }
+
+    /**
+     * @param serviceType the service type targeted by commands.
+     * @return the histogram of the time from receiving a command until its action is requested.
+     */
+    public LatencyHistogram getCommandDispatchHistogram(final ServiceType serviceType) {
+        return commandDispatchHistogramMap.computeIfAbsent(serviceType, key -> getHistogram(COMMAND_DISPATCH_PREFIX + key.name()));
+    }
+
+    /**
+     * @param serviceType the service type whose states are transformed.
+     * @return the histogram of the time needed to transform a service state into channel states.
+     */
+    public LatencyHistogram getTransformHistogram(final ServiceType serviceType) {
+        return transformHistogramMap.computeIfAbsent(serviceType, key -> getHistogram(TRANSFORM_PREFIX + key.name()));
+    }
+
+    /**
+     * @param serviceType the service type targeted by commands.
+     * @return the histogram of the time from receiving a command until bco confirmed it with a state update.
+     */
+    public LatencyHistogram getCommandRoundTripHistogram(final ServiceType serviceType) {
+        return commandRoundTripHistogramMap.computeIfAbsent(serviceType, key -> getHistogram(COMMAND_ROUND_TRIP_PREFIX + key.name()));
+    }
+
+    /**
+     * The histograms of things are not listed with the other histograms, because there can be thousands of them.
+     *
+     * @param thingId the id of a thing.
+     * @return the histogram of the time from receiving a command for the thing until bco confirmed it.
+     */
+    public LatencyHistogram getCommandRoundTripHistogram(final String thingId) {
+        return thingRoundTripHistogramMap.computeIfAbsent(thingId, key -> new LatencyHistogram(COMMAND_ROUND_TRIP_PREFIX + key));
+    }
+
+    /**
+     * @return the command round trip histograms of all things which received a command, sorted by thing id.
+     */
+    public Map<String, LatencyHistogram> getCommandRoundTripHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(thingRoundTripHistogramMap));
+    }
+
+    /**
+     * @param thingId the id of a thing.
+     * @return the rate of channel updates published by the thing.
+     */
+    public RateMeter getStateUpdateRate(final String thingId) {
+        return stateUpdateRateMap.computeIfAbsent(thingId, key -> new RateMeter());
+    }
+
+    /**
+     * @param thingId the id of a thing.
+     * @return the statistics about lost connections to the unit of the thing.
+     */
+    public ReconnectStatistics getReconnectStatistics(final String thingId) {
+        return reconnectStatisticsMap.computeIfAbsent(thingId, key -> new ReconnectStatistics());
+    }
+
+    /**
+     * @return the reconnect statistics of all things which lost their connection at least once, sorted by thing id.
+     */
+    public Map<String, ReconnectStatistics> getReconnectStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(reconnectStatisticsMap));
+    }
+
+    /**
+     * Remove all metrics of a thing, e.g. after it has been removed.
+     *
+     * @param thingId the id of the thing.
+     */
+    public void removeThing(final String thingId) {
+        stateUpdateRateMap.remove(thingId);
+        reconnectStatisticsMap.remove(thingId);
+        thingRoundTripHistogramMap.remove(thingId);
+    }
+
+    /**
+     * @return all histograms sorted by name.
+     */
+    public List<LatencyHistogram> getHistograms() {
+        final List<LatencyHistogram> histogramList = new ArrayList<>(histogramMap.values());
+        histogramList.sort((first, second) -> first.getName().compareTo(second.getName()));
+        return histogramList;
+    }
+
+    /**
+     * @param limit the maximal number of things returned.
+     * @return the state update rates of the things with the highest rates, highest first.
+     */
+    public List<StateUpdateRate> getTopStateUpdateRates(final int limit) {
+        // take the rates once, they change while sorting
+        final List<StateUpdateRate> rateList = new ArrayList<>(stateUpdateRateMap.size());
+        for (final Map.Entry<String, RateMeter> entry : stateUpdateRateMap.entrySet()) {
+            rateList.add(new StateUpdateRate(entry.getKey(), entry.getValue().getRate(), entry.getValue().getTotalCount()));
+        }
+        rateList.sort((first, second) -> Double.compare(second.getRate(), first.getRate()));
+        return Collections.unmodifiableList(rateList.subList(0, Math.min(limit, rateList.size())));
+    }
+
+    /**
+     * Clear all recorded latencies.
+     */
+    public void reset() {
+        for (final LatencyHistogram histogram : histogramMap.values()) {
+            histogram.reset();
+        }
+        for (final LatencyHistogram histogram : thingRoundTripHistogramMap.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * The state update rate of a thing at the time it was queried.
+     */
+    public static class StateUpdateRate {
+
+        private final String thingId;
+        private final double rate;
+        private final long totalCount;
+
+        private StateUpdateRate(final String thingId, final double rate, final long totalCount) {
+            this.thingId = thingId;
+            this.rate = rate;
+            this.totalCount = totalCount;
+        }
+
+        public String getThingId() {
+            return thingId;
+        }
+
+        /**
+         * @return the mean number of updates per second during the last minute.
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the number of updates since the thing was first seen.
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+    }
+}
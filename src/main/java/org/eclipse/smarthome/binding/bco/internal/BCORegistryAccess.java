@@ -0,0 +1,106 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.bco.registry.remote.Registries;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.jul.pattern.provider.DataProvider;
+import org.openbase.type.domotic.registry.UnitRegistryDataType.UnitRegistryData;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
+import org.osgi.service.component.annotations.Component;
+
+import java.util.List;
+
+/**
+ * The {@link BCORegistryAccess} bundles all reads of the bco registries done by the discovery and the handlers,
+ * so that the binding can be driven by simulated registries, e.g. by the load harness of the benchmark module.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = BCORegistryAccess.class)
+public class BCORegistryAccess {
+
+    /**
+     * @return if the data of all registries is available.
+     */
+    public boolean isDataAvailable() {
+        return Registries.isDataAvailable();
+    }
+
+    /**
+     * Wait until the data of all registries is available.
+     *
+     * @throws CouldNotPerformException is thrown if the registries are not reachable.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    public void waitForData() throws CouldNotPerformException, InterruptedException {
+        Registries.waitForData();
+    }
+
+    /**
+     * @return all units of the unit registry.
+     * @throws CouldNotPerformException is thrown if the unit registry is not available.
+     */
+    public List<UnitConfig> getUnitConfigs() throws CouldNotPerformException {
+        return Registries.getUnitRegistry().getUnitConfigs();
+    }
+
+    /**
+     * @param unitId the id of a unit.
+     * @return the config of the unit.
+     * @throws CouldNotPerformException is thrown if the unit is not available.
+     */
+    public UnitConfig getUnitConfigById(final String unitId) throws CouldNotPerformException {
+        return Registries.getUnitRegistry().getUnitConfigById(unitId);
+    }
+
+    /**
+     * @param deviceClassId the id of a device class.
+     * @return the device class.
+     * @throws CouldNotPerformException is thrown if the device class is not available.
+     */
+    public DeviceClass getDeviceClassById(final String deviceClassId) throws CouldNotPerformException {
+        return Registries.getClassRegistry().getDeviceClassById(deviceClassId);
+    }
+
+    /**
+     * @param observer notified whenever the data of the unit registry changes.
+     * @throws NotAvailableException is thrown if the unit registry is not available.
+     */
+    public void addUnitRegistryObserver(final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> observer) throws NotAvailableException {
+        Registries.getUnitRegistry().addDataObserver(observer);
+    }
+
+    /**
+     * @param observer the observer added before.
+     * @throws NotAvailableException is thrown if the unit registry is not available.
+     */
+    public void removeUnitRegistryObserver(final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> observer) throws NotAvailableException {
+        Registries.getUnitRegistry().removeDataObserver(observer);
+    }
+}
@@ -0,0 +1,115 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
+import org.eclipse.smarthome.core.types.Command;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link BCOServerHandler} represents the connection to a bco server. It owns the single subscription to the
+ * unit registry shared by all unit things attached to the bridge and dispatches config changes to them.
+ * Unit things without this bridge observe the config of their own remote instead.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class BCOServerHandler extends BaseBridgeHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(BCOServerHandler.class);
+
+    private final BCOConnector connector;
+    private final BCOExecutor executor;
+    private final BCORegistryAccess registryAccess;
+    private final BCOMetricRegistry metricRegistry;
+
+    private volatile @Nullable UnitRegistryIndex registryIndex;
+
+    /**
+     * @param bridge  the bridge handled.
+     * @param context the components shared by all handlers of the binding.
+     */
+    public BCOServerHandler(final Bridge bridge, final BCOBindingContext context) {
+        super(bridge);
+        this.connector = context.getConnector();
+        this.executor = context.getExecutor();
+        this.registryAccess = context.getRegistryAccess();
+        this.metricRegistry = context.getMetricRegistry();
+    }
+
+    @Override
+    public void initialize() {
+        final UnitRegistryIndex registryIndex = new UnitRegistryIndex(getThing().getUID().getAsString(), registryAccess, executor, metricRegistry);
+        this.registryIndex = registryIndex;
+        updateStatus(ThingStatus.UNKNOWN);
+
+        // do not block while the binding connects, the index is built once the connection is ready
+        connector.getReadyFuture().thenRun(() -> executor.execute(getThing().getUID().getId(), ExecutionLane.CONFIG, () -> activateIndex(registryIndex)));
+    }
+
+    private void activateIndex(final UnitRegistryIndex registryIndex) {
+        try {
+            registryIndex.activate();
+            if (registryIndex.isActive()) {
+                logger.info("Bridge {} indexed {} units", getThing().getUID().getId(), registryIndex.getUnitCount());
+                updateStatus(ThingStatus.ONLINE);
+            }
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory("Could not index the unit registry for bridge " + getThing().getUID().getId(), ex, logger);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void handleCommand(final ChannelUID channelUID, final Command command) {
+        // the bridge does not provide any channels
+    }
+
+    @Override
+    public void dispose() {
+        final UnitRegistryIndex registryIndex = this.registryIndex;
+        this.registryIndex = null;
+        if (registryIndex != null) {
+            registryIndex.deactivate();
+        }
+        super.dispose();
+    }
+
+    /**
+     * @return the index of the unit registry or null if the bridge is not initialized.
+     */
+    public @Nullable UnitRegistryIndex getRegistryIndex() {
+        return registryIndex;
+    }
+}
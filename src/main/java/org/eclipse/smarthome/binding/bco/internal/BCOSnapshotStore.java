@@ -0,0 +1,468 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.library.types.DateTimeType;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.library.types.UpDownType;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.TypeParser;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BCOSnapshotStore} persists the discovered unit configs and the last known channel states recorded in the
+ * {@link ChannelStateStore}, so that things show their last known values right after a restart while the connection
+ * to bco is still established. States of things which are not handled since the restart are kept from the snapshot
+ * read on activation. Things which are neither registered nor changed within the evict age are dropped.
+ * <p>
+ * The file is only written if unit configs or channel states actually changed, and things whose states did not
+ * change are not encoded again.
+ * <p>
+ * The snapshot is written in the protobuf wire format:
+ * <pre>
+ * snapshot      { 1: uint32 version, 2: int64 time, 3: repeated bytes unit_config, 4: repeated thing_state }
+ * thing_state   { 1: string thing_id, 2: int64 update_time, 3: repeated channel_state }
+ * channel_state { 1: string channel_id, 2: repeated state }
+ * state         { 1: string type, 2: string value }
+ * </pre>
+ * Snapshots of another version are ignored. States are written with {@link State#toFullString()} and read with
+ * the {@link TypeParser}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = BCOSnapshotStore.class, configurationPid = "binding.bco")
+public class BCOSnapshotStore {
+
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "snapshot.pb";
+
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_TIME = 2;
+    private static final int SNAPSHOT_UNIT_CONFIG = 3;
+    private static final int SNAPSHOT_THING_STATE = 4;
+    private static final int THING_ID = 1;
+    private static final int THING_UPDATE_TIME = 2;
+    private static final int THING_CHANNEL_STATE = 3;
+    private static final int CHANNEL_ID = 1;
+    private static final int CHANNEL_STATE = 2;
+    private static final int STATE_TYPE = 1;
+    private static final int STATE_VALUE = 2;
+
+    /**
+     * The state types which can be restored.
+     */
+    private static final Map<String, Class<? extends State>> STATE_TYPE_MAP;
+
+    static {
+        final Map<String, Class<? extends State>> stateTypeMap = new HashMap<>();
+        for (final Class<? extends State> stateType : Arrays.asList(OnOffType.class, OpenClosedType.class, UpDownType.class, DecimalType.class,
+                PercentType.class, HSBType.class, QuantityType.class, StringType.class, DateTimeType.class)) {
+            stateTypeMap.put(stateType.getSimpleName(), stateType);
+        }
+        STATE_TYPE_MAP = Collections.unmodifiableMap(stateTypeMap);
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(BCOSnapshotStore.class);
+
+    private final Path snapshotFile;
+    private final Map<String, ThingSnapshot> thingSnapshotMap;
+    private volatile List<UnitConfig> unitConfigList;
+    private volatile boolean dirty;
+    private volatile long snapshotTime;
+    private long maxAge;
+    private long evictAge;
+    private @Nullable ScheduledFuture<?> writeFuture;
+
+    private @NonNullByDefault({}) ChannelStateStore channelStateStore;
+
+    public BCOSnapshotStore() {
+        this.snapshotFile = Paths.get(ConfigConstants.getUserDataFolder(), BCOBindingConstants.BINDING_ID, FILE_NAME);
+        this.thingSnapshotMap = new ConcurrentHashMap<>();
+        this.unitConfigList = Collections.emptyList();
+    }
+
+    @Reference
+    protected void setChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = channelStateStore;
+    }
+
+    protected void unsetChannelStateStore(final ChannelStateStore channelStateStore) {
+        this.channelStateStore = null;
+    }
+
+    @Activate
+    protected void activate(@Nullable final Map<String, @Nullable Object> configProperties) {
+        maxAge = BCOBindingConstants.DEFAULT_SNAPSHOT_MAX_AGE;
+        evictAge = BCOBindingConstants.DEFAULT_SNAPSHOT_EVICT_AGE;
+        long writeInterval = BCOBindingConstants.DEFAULT_SNAPSHOT_WRITE_INTERVAL;
+        if (configProperties != null) {
+            maxAge = getLong(configProperties, BCOBindingConstants.CONFIG_SNAPSHOT_MAX_AGE, maxAge);
+            evictAge = getLong(configProperties, BCOBindingConstants.CONFIG_SNAPSHOT_EVICT_AGE, evictAge);
+            writeInterval = Math.max(1, getLong(configProperties, BCOBindingConstants.CONFIG_SNAPSHOT_WRITE_INTERVAL, writeInterval));
+        }
+
+        read();
+        writeFuture = ThreadPoolManager.getScheduledPool(BCOBindingConstants.BINDING_ID).scheduleWithFixedDelay(this::writeIfDirty, writeInterval, writeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        final ScheduledFuture<?> writeFuture = this.writeFuture;
+        if (writeFuture != null) {
+            writeFuture.cancel(false);
+            this.writeFuture = null;
+        }
+        writeIfDirty();
+    }
+
+    private long getLong(final Map<String, @Nullable Object> configProperties, final String key, final long defaultValue) {
+        final Object value = configProperties.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException ex) {
+                logger.warn("Ignore invalid value {} of property {}", value, key);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return if the snapshot read on activation is older than the configured maximal age.
+     */
+    public boolean isStale() {
+        return System.currentTimeMillis() - snapshotTime > maxAge;
+    }
+
+    /**
+     * @return the time in milliseconds the snapshot read on activation was written, 0 if none was read.
+     */
+    public long getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    /**
+     * @return the unit configs discovered when the snapshot was written.
+     */
+    public List<UnitConfig> getUnitConfigs() {
+        return unitConfigList;
+    }
+
+    /**
+     * @param unitConfigs the unit configs currently discovered.
+     */
+    public void setUnitConfigs(final Collection<UnitConfig> unitConfigs) {
+        final List<UnitConfig> unitConfigList = new ArrayList<>(unitConfigs);
+        if (unitConfigList.equals(this.unitConfigList)) {
+            return;
+        }
+        this.unitConfigList = Collections.unmodifiableList(unitConfigList);
+        dirty = true;
+    }
+
+    /**
+     * @param thingId the id of a thing.
+     * @return the last known states per channel of the thing.
+     */
+    public Map<String, List<State>> getChannelStates(final String thingId) {
+        final @Nullable ThingSnapshot thingSnapshot = thingSnapshotMap.get(thingId);
+        if (thingSnapshot == null) {
+            return Collections.emptyMap();
+        }
+        return new HashMap<>(thingSnapshot.channelStateMap);
+    }
+
+    private void read() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        try (InputStream inputStream = Files.newInputStream(snapshotFile)) {
+            final CodedInputStream input = CodedInputStream.newInstance(inputStream);
+            final List<UnitConfig> unitConfigList = new ArrayList<>();
+            long time = 0;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case SNAPSHOT_VERSION:
+                        final int version = input.readUInt32();
+                        if (version != VERSION) {
+                            logger.info("Ignore snapshot of version {}", version);
+                            return;
+                        }
+                        break;
+                    case SNAPSHOT_TIME:
+                        time = input.readInt64();
+                        break;
+                    case SNAPSHOT_UNIT_CONFIG:
+                        unitConfigList.add(UnitConfig.parseFrom(input.readBytes()));
+                        break;
+                    case SNAPSHOT_THING_STATE:
+                        readThingSnapshot(input.readBytes());
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
+                }
+            }
+            this.unitConfigList = Collections.unmodifiableList(unitConfigList);
+            this.snapshotTime = time;
+            logger.info("Read snapshot of {} units and {} things in {}ms", unitConfigList.size(), thingSnapshotMap.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Could not read snapshot {}", snapshotFile, ex);
+            thingSnapshotMap.clear();
+        }
+    }
+
+    private void readThingSnapshot(final ByteString bytes) throws IOException {
+        final CodedInputStream input = bytes.newCodedInput();
+        final ThingSnapshot thingSnapshot = new ThingSnapshot();
+        String thingId = "";
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case THING_ID:
+                    thingId = input.readString();
+                    break;
+                case THING_UPDATE_TIME:
+                    thingSnapshot.updateTime = input.readInt64();
+                    break;
+                case THING_CHANNEL_STATE:
+                    readChannelSnapshot(input.readBytes(), thingSnapshot);
+                    break;
+                default:
+                    input.skipField(tag);
+                    break;
+            }
+        }
+        thingSnapshotMap.put(thingId, thingSnapshot);
+    }
+
+    private void readChannelSnapshot(final ByteString bytes, final ThingSnapshot thingSnapshot) throws IOException {
+        final CodedInputStream input = bytes.newCodedInput();
+        final List<State> stateList = new ArrayList<>();
+        String channelId = "";
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case CHANNEL_ID:
+                    channelId = input.readString();
+                    break;
+                case CHANNEL_STATE:
+                    final @Nullable State state = readState(input.readBytes());
+                    if (state != null) {
+                        stateList.add(state);
+                    }
+                    break;
+                default:
+                    input.skipField(tag);
+                    break;
+            }
+        }
+        if (!stateList.isEmpty()) {
+            thingSnapshot.channelStateMap.put(channelId, stateList);
+        }
+    }
+
+    private @Nullable State readState(final ByteString bytes) throws IOException {
+        final CodedInputStream input = bytes.newCodedInput();
+        String type = "";
+        String value = "";
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case STATE_TYPE:
+                    type = input.readString();
+                    break;
+                case STATE_VALUE:
+                    value = input.readString();
+                    break;
+                default:
+                    input.skipField(tag);
+                    break;
+            }
+        }
+
+        final @Nullable Class<? extends State> stateType = STATE_TYPE_MAP.get(type);
+        if (stateType == null) {
+            return null;
+        }
+        return TypeParser.parseState(Collections.singletonList(stateType), value);
+    }
+
+    private synchronized void writeIfDirty() {
+        boolean changed = dirty;
+        dirty = false;
+
+        final long time = System.currentTimeMillis();
+        final List<String> thingIdList = channelStateStore.getUnitIds();
+        if (channelStateStore.resetModified()) {
+            for (final String thingId : thingIdList) {
+                final Map<String, List<State>> channelStateMap = channelStateStore.getChannelStates(thingId);
+                if (channelStateMap.isEmpty()) {
+                    // no live data yet, so the states of the last snapshot are kept
+                    continue;
+                }
+                final ThingSnapshot thingSnapshot = thingSnapshotMap.computeIfAbsent(thingId, key -> new ThingSnapshot());
+                if (thingSnapshot.channelStateMap.entrySet().containsAll(channelStateMap.entrySet())) {
+                    // e.g. the same states received again after a reconnect
+                    continue;
+                }
+                thingSnapshot.channelStateMap.putAll(channelStateMap);
+                thingSnapshot.updateTime = time;
+                thingSnapshot.bytes = null;
+                changed = true;
+            }
+        }
+
+        // drop things which are not registered and were not updated for a long time, e.g. because they have been
+        // removed, while registered things keep their states however long they are dormant
+        final Set<String> thingIdSet = new HashSet<>(thingIdList);
+        changed |= thingSnapshotMap.entrySet().removeIf(entry -> !thingIdSet.contains(entry.getKey()) && time - entry.getValue().updateTime > evictAge);
+
+        if (!changed) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            final Path tempFile = snapshotFile.resolveSibling(FILE_NAME + ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                final CodedOutputStream output = CodedOutputStream.newInstance(outputStream);
+                output.writeUInt32(SNAPSHOT_VERSION, VERSION);
+                output.writeInt64(SNAPSHOT_TIME, time);
+                for (final UnitConfig unitConfig : unitConfigList) {
+                    output.writeBytes(SNAPSHOT_UNIT_CONFIG, unitConfig.toByteString());
+                }
+                for (final Map.Entry<String, ThingSnapshot> entry : thingSnapshotMap.entrySet()) {
+                    output.writeBytes(SNAPSHOT_THING_STATE, getThingSnapshotBytes(entry.getKey(), entry.getValue()));
+                }
+                output.flush();
+            }
+            // replace atomically so that a crash while writing does not corrupt the last snapshot
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            dirty = true;
+            logger.warn("Could not write snapshot {}", snapshotFile, ex);
+        }
+    }
+
+    /**
+     * Note: needs to be called while holding the lock of the store.
+     */
+    private ByteString getThingSnapshotBytes(final String thingId, final ThingSnapshot thingSnapshot) throws IOException {
+        @Nullable ByteString bytes = thingSnapshot.bytes;
+        if (bytes == null) {
+            bytes = writeThingSnapshot(thingId, thingSnapshot);
+            thingSnapshot.bytes = bytes;
+        }
+        return bytes;
+    }
+
+    private ByteString writeThingSnapshot(final String thingId, final ThingSnapshot thingSnapshot) throws IOException {
+        final ByteString.Output bytes = ByteString.newOutput();
+        final CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeString(THING_ID, thingId);
+        output.writeInt64(THING_UPDATE_TIME, thingSnapshot.updateTime);
+        for (final Map.Entry<String, List<State>> entry : thingSnapshot.channelStateMap.entrySet()) {
+            output.writeBytes(THING_CHANNEL_STATE, writeChannelSnapshot(entry.getKey(), entry.getValue()));
+        }
+        output.flush();
+        return bytes.toByteString();
+    }
+
+    private ByteString writeChannelSnapshot(final String channelId, final List<State> stateList) throws IOException {
+        final ByteString.Output bytes = ByteString.newOutput();
+        final CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeString(CHANNEL_ID, channelId);
+        for (final State state : stateList) {
+            if (state instanceof UnDefType || !STATE_TYPE_MAP.containsKey(state.getClass().getSimpleName())) {
+                continue;
+            }
+            final ByteString.Output stateBytes = ByteString.newOutput();
+            final CodedOutputStream stateOutput = CodedOutputStream.newInstance(stateBytes);
+            stateOutput.writeString(STATE_TYPE, state.getClass().getSimpleName());
+            stateOutput.writeString(STATE_VALUE, state.toFullString());
+            stateOutput.flush();
+            output.writeBytes(CHANNEL_STATE, stateBytes.toByteString());
+        }
+        output.flush();
+        return bytes.toByteString();
+    }
+
+    /**
+     * The last known states of a thing.
+     */
+    private static class ThingSnapshot {
+
+        private final Map<String, List<State>> channelStateMap = new ConcurrentHashMap<>();
+        private volatile long updateTime;
+        // encoded form of the thing, reset if the states change
+        private @Nullable ByteString bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.type.domotic.action.ActionParameterType.ActionParameter;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link BatchedCommand} is an action request of a thing collected by the {@link CommandBatcher}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class BatchedCommand {
+
+    private final ChannelUID channelUID;
+    private final ServiceType serviceType;
+    private final UnitRemote<?> unitRemote;
+    private final ActionParameter.Builder actionParameter;
+    private final Consumer<Exception> failureHandler;
+    private final long creationTime;
+
+    /**
+     * @param channelUID      the channel which received the command.
+     * @param serviceType     the service type the action is applied on.
+     * @param unitRemote      the remote of the unit the action is applied on.
+     * @param actionParameter the parameter of the action.
+     * @param failureHandler  called if the action could not be applied, e.g. to reset the channel of the thing.
+     */
+    public BatchedCommand(final ChannelUID channelUID, final ServiceType serviceType, final UnitRemote<?> unitRemote, final ActionParameter.Builder actionParameter, final Consumer<Exception> failureHandler) {
+        this.channelUID = channelUID;
+        this.serviceType = serviceType;
+        this.unitRemote = unitRemote;
+        this.actionParameter = actionParameter;
+        this.failureHandler = failureHandler;
+        this.creationTime = System.nanoTime();
+    }
+
+    public ChannelUID getChannelUID() {
+        return channelUID;
+    }
+
+    public ServiceType getServiceType() {
+        return serviceType;
+    }
+
+    public UnitRemote<?> getUnitRemote() {
+        return unitRemote;
+    }
+
+    public ActionParameter.Builder getActionParameter() {
+        return actionParameter;
+    }
+
+    public Consumer<Exception> getFailureHandler() {
+        return failureHandler;
+    }
+
+    /**
+     * @return the time the command was created measured by {@link System#nanoTime()}.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+}
@@ -0,0 +1,157 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link ChannelSampler} decides if the update of a sampled service is published. A numeric value is published
+ * if it changed by at least the deadband or if the sampling interval passed since the last published value.
+ * Services which are not sampled and states which are not numeric, e.g. on/off, are always published.
+ * <p>
+ * Note: the sampler is not thread safe, the {@link UnitHandler} only uses it while holding its channel state lock.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class ChannelSampler {
+
+    private final SamplingConfiguration configuration;
+    private final Map<ServiceType, Sample> sampleMap;
+
+    /**
+     * @param configuration the services to sample and how.
+     */
+    public ChannelSampler(final SamplingConfiguration configuration) {
+        this.configuration = configuration;
+        this.sampleMap = new EnumMap<>(ServiceType.class);
+    }
+
+    /**
+     * Check if an update can be skipped before its state is transformed. This is the case if the service is known
+     * to be numeric, the sampling interval did not pass yet and no deadband is configured which requires the value.
+     *
+     * @param serviceType the service updated.
+     * @param time        the current time in milliseconds.
+     * @return true if the update can be skipped.
+     */
+    public boolean canSkip(final ServiceType serviceType, final long time) {
+        if (configuration.getDeadband() > 0 || !configuration.getServiceTypes().contains(serviceType)) {
+            return false;
+        }
+        final @Nullable Sample sample = sampleMap.get(serviceType);
+        return sample != null && time - sample.publishTime < configuration.getInterval();
+    }
+
+    /**
+     * Decide if the transformed states of an update are published and record them if so.
+     *
+     * @param serviceType the service updated.
+     * @param stateList   the states the service state was transformed into.
+     * @param time        the current time in milliseconds.
+     * @return true if the states should be published.
+     */
+    public boolean sample(final ServiceType serviceType, final List<State> stateList, final long time) {
+        if (!configuration.getServiceTypes().contains(serviceType)) {
+            return true;
+        }
+
+        final @Nullable Number value = getNumericValue(stateList);
+        if (value == null) {
+            // binary and other states are never sampled
+            return true;
+        }
+
+        final @Nullable Sample sample = sampleMap.get(serviceType);
+        if (sample != null) {
+            final boolean intervalPassed = configuration.getInterval() > 0 && time - sample.publishTime >= configuration.getInterval();
+            final boolean deadbandExceeded = configuration.getDeadband() > 0 && Math.abs(value.doubleValue() - sample.value) >= configuration.getDeadband();
+            if (!intervalPassed && !deadbandExceeded) {
+                return false;
+            }
+        }
+        sampleMap.put(serviceType, new Sample(value.doubleValue(), time));
+        return true;
+    }
+
+    /**
+     * @param serviceType the service updated.
+     * @param time        the current time in milliseconds.
+     * @return the time in milliseconds until the sampling interval of the service passed.
+     */
+    public long getRemainingInterval(final ServiceType serviceType, final long time) {
+        final @Nullable Sample sample = sampleMap.get(serviceType);
+        if (sample == null) {
+            return 0;
+        }
+        return Math.max(0, sample.publishTime + configuration.getInterval() - time);
+    }
+
+    /**
+     * @return if sampled services are published at least once per interval.
+     */
+    public boolean hasInterval() {
+        return configuration.getInterval() > 0;
+    }
+
+    /**
+     * @return if any service is sampled.
+     */
+    public boolean isEnabled() {
+        return configuration.isEnabled();
+    }
+
+    /**
+     * Forget all published values, e.g. after a reconnect.
+     */
+    public void reset() {
+        sampleMap.clear();
+    }
+
+    private static @Nullable Number getNumericValue(final List<State> stateList) {
+        for (final State state : stateList) {
+            if (state instanceof Number) {
+                return (Number) state;
+            }
+        }
+        return null;
+    }
+
+    private static class Sample {
+
+        private final double value;
+        private final long publishTime;
+
+        private Sample(final double value, final long publishTime) {
+            this.value = value;
+            this.publishTime = publishTime;
+        }
+    }
+}
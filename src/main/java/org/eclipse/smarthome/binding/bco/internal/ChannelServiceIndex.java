@@ -0,0 +1,90 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link ChannelServiceIndex} maps channel ids to service types and vice versa.
+ * The index is computed once for all service types so that command handling and channel updates
+ * do not need to build any strings.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public final class ChannelServiceIndex {
+
+    private static final String SERVICE_SUFFIX = "_SERVICE";
+
+    private static final Map<ServiceType, String> SERVICE_TYPE_CHANNEL_ID_MAP;
+    private static final Map<String, ServiceType> CHANNEL_ID_SERVICE_TYPE_MAP;
+
+    static {
+        final Map<ServiceType, String> serviceTypeChannelIdMap = new EnumMap<>(ServiceType.class);
+        final Map<String, ServiceType> channelIdServiceTypeMap = new HashMap<>();
+        for (final ServiceType serviceType : ServiceType.values()) {
+            final String channelId = serviceType.name().replace(SERVICE_SUFFIX, "").toLowerCase();
+            serviceTypeChannelIdMap.put(serviceType, channelId);
+            channelIdServiceTypeMap.put(channelId, serviceType);
+        }
+        SERVICE_TYPE_CHANNEL_ID_MAP = Collections.unmodifiableMap(serviceTypeChannelIdMap);
+        CHANNEL_ID_SERVICE_TYPE_MAP = Collections.unmodifiableMap(channelIdServiceTypeMap);
+    }
+
+    private ChannelServiceIndex() {
+        // utility class
+    }
+
+    /**
+     * Get the id of the channel representing a service type.
+     *
+     * @param serviceType the service type.
+     * @return the channel id, e.g. {@code power_state} for the {@code POWER_STATE_SERVICE}.
+     */
+    public static String getChannelId(final ServiceType serviceType) {
+        return SERVICE_TYPE_CHANNEL_ID_MAP.get(serviceType);
+    }
+
+    /**
+     * Get the service type represented by a channel.
+     *
+     * @param channelId the id of the channel.
+     * @return the service type of the channel.
+     * @throws NotAvailableException if the channel does not represent a service type, e.g. for custom channels.
+     */
+    public static ServiceType getServiceType(final String channelId) throws NotAvailableException {
+        final @Nullable ServiceType serviceType = CHANNEL_ID_SERVICE_TYPE_MAP.get(channelId);
+        if (serviceType == null) {
+            throw new NotAvailableException("ServiceType for channel " + channelId);
+        }
+        return serviceType;
+    }
+}
@@ -0,0 +1,896 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.OpenClosedType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@link ChannelStateStore} keeps the last known states of every channel of every unit handled by the binding.
+ * It is the only place the handlers record published states, the snapshot is written from it as well.
+ * <p>
+ * Each pair of unit and service type, as well as each custom channel of a unit, is assigned a dense integer slot.
+ * A slot holds all states of its channel, e.g. a color state results in an hsb, percent and on/off state, and the
+ * service state they were transformed from. A single on/off, open/closed, percent or decimal state is stored as
+ * primitive, percent and decimal states as unscaled value and scale, so they are restored unchanged. All other states
+ * such as colors, strings or sequences of states are kept as objects.
+ * <p>
+ * Writers of a slot are serialized by one of a fixed number of write locks, so concurrent writers, e.g. the handler
+ * of a unit and the release of its slots, never interleave. Readers do not lock, they compare or read a slot without
+ * allocating and use its stamp to detect a read overlapping with a write. Only such a read is repeated while holding
+ * the write lock of the slot, so a reader never spins and never reports an outdated state.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = ChannelStateStore.class)
+public class ChannelStateStore {
+
+    public static final String SLOT_COUNT = "stateStore.slots";
+    public static final String FOOTPRINT = "stateStore.bytes";
+
+    /**
+     * The kind of state stored in a slot.
+     */
+    public enum Kind {
+        EMPTY,
+        UNDEF,
+        NULL,
+        ON_OFF,
+        OPEN_CLOSED,
+        PERCENT,
+        DECIMAL,
+        OBJECT,
+        LIST
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    // the kind and the scale of percent and decimal states are stored in the lower bits of the stamp, the remaining
+    // bits count the writes, an odd count marks a slot as being written
+    private static final int KIND_BITS = 4;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+    private static final int SCALE_BITS = 5;
+    private static final int MAX_SCALE = (1 << SCALE_BITS) - 1;
+    private static final int CONTENT_BITS = KIND_BITS + SCALE_BITS;
+    private static final int CONTENT_MASK = (1 << CONTENT_BITS) - 1;
+    private static final int WRITE_INCREMENT = 1 << CONTENT_BITS;
+
+    // the number of locks serializing writers, slots share a lock if their numbers are equal modulo this count
+    private static final int WRITE_LOCK_COUNT = 64;
+
+    // on/off and open/closed states are stored as 1 and 0
+    private static final long ON_BITS = 1;
+    private static final long OFF_BITS = 0;
+
+    // slots are allocated in chunks, so growing the store never copies slots which are accessed concurrently
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int SERVICE_TYPE_WORDS = (ServiceType.values().length + 63) / 64;
+
+    private final SyncObject allocationLock = new SyncObject("StateStoreAllocationLock");
+    private final SyncObject[] writeLocks;
+    private final Map<String, UnitSlots> unitSlotsMap;
+    /**
+     * Released blocks of slots by their size, reused by units with the same number of services.
+     * Note: guarded by the allocation lock.
+     */
+    private final Map<Integer, Deque<Integer>> freeBlockMap;
+    private volatile Chunk[] chunks;
+    private int allocatedSlots;
+    private final AtomicBoolean modified = new AtomicBoolean();
+
+    private @NonNullByDefault({}) BCOMetricRegistry metricRegistry;
+
+    public ChannelStateStore() {
+        this.unitSlotsMap = new ConcurrentHashMap<>();
+        this.freeBlockMap = new HashMap<>();
+        this.chunks = new Chunk[0];
+        this.writeLocks = new SyncObject[WRITE_LOCK_COUNT];
+        for (int i = 0; i < WRITE_LOCK_COUNT; i++) {
+            writeLocks[i] = new SyncObject("StateStoreWriteLock" + i);
+        }
+    }
+
+    @Reference
+    protected void setMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    protected void unsetMetricRegistry(final BCOMetricRegistry metricRegistry) {
+        this.metricRegistry = null;
+    }
+
+    @Activate
+    protected void activate() {
+        metricRegistry.registerGauge(SLOT_COUNT, this::getSlotCount);
+        metricRegistry.registerGauge(FOOTPRINT, this::getFootprint);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        metricRegistry.unregisterGauge(SLOT_COUNT);
+        metricRegistry.unregisterGauge(FOOTPRINT);
+    }
+
+    /**
+     * Assign slots to the services of a unit. Slots of a unit whose services did not change are kept, otherwise the
+     * previous slots are cleared and released.
+     *
+     * @param unitId       the id of the unit.
+     * @param serviceTypes the services of the unit.
+     */
+    public void register(final String unitId, final Collection<ServiceType> serviceTypes) {
+        register(unitId, serviceTypes, Collections.emptyList());
+    }
+
+    /**
+     * Assign slots to the services and custom channels of a unit. Slots of a unit whose services and custom
+     * channels did not change are kept, otherwise the previous slots are cleared and released.
+     *
+     * @param unitId           the id of the unit.
+     * @param serviceTypes     the services of the unit.
+     * @param customChannelIds the ids of channels of the unit which do not belong to a single service.
+     */
+    public void register(final String unitId, final Collection<ServiceType> serviceTypes, final List<String> customChannelIds) {
+        final long[] serviceMask = new long[SERVICE_TYPE_WORDS];
+        for (final ServiceType serviceType : serviceTypes) {
+            serviceMask[serviceType.ordinal() >>> 6] |= 1L << serviceType.ordinal();
+        }
+        final String[] customChannelIdArray = customChannelIds.toArray(new String[0]);
+
+        synchronized (allocationLock) {
+            final @Nullable UnitSlots previousUnitSlots = unitSlotsMap.get(unitId);
+            if (previousUnitSlots != null) {
+                if (Arrays.equals(previousUnitSlots.serviceMask, serviceMask) && Arrays.equals(previousUnitSlots.customChannelIds, customChannelIdArray)) {
+                    return;
+                }
+                release(previousUnitSlots);
+            }
+            final int size = countServices(serviceMask) + customChannelIdArray.length;
+            unitSlotsMap.put(unitId, new UnitSlots(serviceMask, customChannelIdArray, allocate(size)));
+        }
+    }
+
+    /**
+     * Clear and release the slots of a unit.
+     *
+     * @param unitId the id of the unit.
+     */
+    public void unregister(final String unitId) {
+        synchronized (allocationLock) {
+            final @Nullable UnitSlots unitSlots = unitSlotsMap.remove(unitId);
+            if (unitSlots != null) {
+                release(unitSlots);
+            }
+        }
+    }
+
+    /**
+     * @param unitId      the id of a unit.
+     * @param serviceType a service of the unit.
+     * @return the slot of the service or -1 if the unit is not registered or does not provide the service.
+     */
+    public int getSlot(final String unitId, final ServiceType serviceType) {
+        final @Nullable UnitSlots unitSlots = unitSlotsMap.get(unitId);
+        return unitSlots == null ? -1 : unitSlots.getSlot(serviceType);
+    }
+
+    /**
+     * @param unitId    the id of a unit.
+     * @param channelId the id of a service channel or custom channel of the unit.
+     * @return the slot of the channel or -1 if the unit is not registered or does not provide the channel.
+     */
+    public int getSlot(final String unitId, final String channelId) {
+        final @Nullable UnitSlots unitSlots = unitSlotsMap.get(unitId);
+        if (unitSlots == null) {
+            return -1;
+        }
+        final int customSlot = unitSlots.getSlot(channelId);
+        if (customSlot >= 0) {
+            return customSlot;
+        }
+        try {
+            return unitSlots.getSlot(ChannelServiceIndex.getServiceType(channelId));
+        } catch (NotAvailableException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the ids of all registered units.
+     */
+    public List<String> getUnitIds() {
+        return new ArrayList<>(unitSlotsMap.keySet());
+    }
+
+    /**
+     * @param unitId the id of a unit.
+     * @return the states of all channels of the unit which contain a state, by channel id.
+     */
+    public Map<String, List<State>> getChannelStates(final String unitId) {
+        final Map<String, List<State>> channelStateMap = new HashMap<>();
+        final @Nullable UnitSlots unitSlots = unitSlotsMap.get(unitId);
+        if (unitSlots == null) {
+            return channelStateMap;
+        }
+        for (final ServiceType serviceType : ServiceType.values()) {
+            final int slot = unitSlots.getSlot(serviceType);
+            if (slot >= 0) {
+                putStates(channelStateMap, ChannelServiceIndex.getChannelId(serviceType), slot);
+            }
+        }
+        for (final String customChannelId : unitSlots.customChannelIds) {
+            putStates(channelStateMap, customChannelId, unitSlots.getSlot(customChannelId));
+        }
+        return channelStateMap;
+    }
+
+    private void putStates(final Map<String, List<State>> channelStateMap, final String channelId, final int slot) {
+        final List<State> stateList = getStates(slot);
+        if (!stateList.isEmpty()) {
+            channelStateMap.put(channelId, stateList);
+        }
+    }
+
+    /**
+     * Clear the slots of a unit, e.g. so that all of its channels are published again.
+     *
+     * @param unitId the id of the unit.
+     */
+    public void clear(final String unitId) {
+        final @Nullable UnitSlots unitSlots = unitSlotsMap.get(unitId);
+        if (unitSlots == null) {
+            return;
+        }
+        for (int slot = unitSlots.base; slot < unitSlots.base + unitSlots.size; slot++) {
+            clear(slot);
+        }
+    }
+
+    /**
+     * @return if a slot was written since the last call, e.g. to decide if the snapshot needs to be written.
+     */
+    public boolean resetModified() {
+        return modified.getAndSet(false);
+    }
+
+    /**
+     * Store a single state in a slot. Writes of the same slot are serialized.
+     *
+     * @param slot  the slot of a service.
+     * @param state the latest state of the service.
+     */
+    public void put(final int slot, final State state) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        synchronized (getWriteLock(slot)) {
+            final int writingStamp = beginWrite(chunk, index);
+            final int content = encode(chunk, index, state);
+            setSource(chunk, index, null);
+            endWrite(chunk, index, writingStamp, content);
+        }
+    }
+
+    /**
+     * Store the states of a channel in a slot. Writes of the same slot are serialized.
+     *
+     * @param slot         the slot of a channel.
+     * @param stateList    the latest states of the channel.
+     * @param serviceState the service state the states were transformed from, null if they do not belong to a
+     *                     single service state.
+     */
+    public void put(final int slot, final List<State> stateList, @Nullable final Message serviceState) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        synchronized (getWriteLock(slot)) {
+            final int writingStamp = beginWrite(chunk, index);
+            final int content;
+            if (stateList.size() == 1) {
+                content = encode(chunk, index, stateList.get(0));
+            } else if (stateList.isEmpty()) {
+                content = Kind.EMPTY.ordinal();
+                releaseObject(chunk, index);
+            } else {
+                content = Kind.LIST.ordinal();
+                getObjects(chunk).set(index, Collections.unmodifiableList(new ArrayList<>(stateList)));
+            }
+            setSource(chunk, index, serviceState);
+            endWrite(chunk, index, writingStamp, content);
+        }
+    }
+
+    /**
+     * Remove the states of a slot. Writes of the same slot are serialized.
+     *
+     * @param slot the slot of a channel.
+     */
+    public void clear(final int slot) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        synchronized (getWriteLock(slot)) {
+            final int writingStamp = beginWrite(chunk, index);
+            releaseObject(chunk, index);
+            setSource(chunk, index, null);
+            endWrite(chunk, index, writingStamp, Kind.EMPTY.ordinal());
+        }
+    }
+
+    /**
+     * Mark a slot as being written, so that readers overlapping with the write detect it.
+     * Note: needs to be called while holding the write lock of the slot.
+     */
+    private static int beginWrite(final Chunk chunk, final int index) {
+        final int writingStamp = chunk.stamps.get(index) + WRITE_INCREMENT;
+        chunk.stamps.set(index, writingStamp);
+        return writingStamp;
+    }
+
+    /**
+     * Note: needs to be called while holding the write lock of the slot.
+     */
+    private void endWrite(final Chunk chunk, final int index, final int writingStamp, final int content) {
+        // the write count wraps around, a reader only compares the stamps before and after its read
+        chunk.stamps.set(index, ((writingStamp + WRITE_INCREMENT) & ~CONTENT_MASK) | content);
+        // the slot is written before the flag, so a snapshot resetting the flag afterwards reads the new state
+        if (!modified.get()) {
+            modified.set(true);
+        }
+    }
+
+    /**
+     * Compare the state of a slot, e.g. to detect if a state changed. Only percent and decimal states with a
+     * fractional part allocate.
+     *
+     * @param slot  the slot of a service.
+     * @param state the state to compare.
+     * @return if the slot contains an equal state.
+     */
+    public boolean equalsState(final int slot, final State state) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            final boolean equal = matches(chunk, index, stamp, state);
+            if (chunk.stamps.get(index) == stamp) {
+                return equal;
+            }
+        }
+        // the read overlapped with a write, so it is repeated once the write is finished
+        synchronized (getWriteLock(slot)) {
+            return matches(chunk, index, chunk.stamps.get(index), state);
+        }
+    }
+
+    /**
+     * Compare the states of a slot, e.g. to detect if the states of a channel changed. Only percent and decimal
+     * states with a fractional part allocate.
+     *
+     * @param slot      the slot of a channel.
+     * @param stateList the states to compare.
+     * @return if the slot contains equal states in the same order.
+     */
+    public boolean equalsStates(final int slot, final List<State> stateList) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            final boolean equal = matches(chunk, index, stamp, stateList);
+            if (chunk.stamps.get(index) == stamp) {
+                return equal;
+            }
+        }
+        // the read overlapped with a write, so it is repeated once the write is finished
+        synchronized (getWriteLock(slot)) {
+            return matches(chunk, index, chunk.stamps.get(index), stateList);
+        }
+    }
+
+    /**
+     * Compare the service state the states of a slot were transformed from, e.g. to skip the transformation of
+     * services which did not change.
+     *
+     * @param slot         the slot of a service.
+     * @param serviceState the service state to compare.
+     * @return if the states of the slot were transformed from an equal service state.
+     */
+    public boolean equalsServiceState(final int slot, final Message serviceState) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            final @Nullable Message source = getSource(chunk, index);
+            if (chunk.stamps.get(index) == stamp) {
+                return serviceState.equals(source);
+            }
+        }
+        // the read overlapped with a write, so it is repeated once the write is finished
+        synchronized (getWriteLock(slot)) {
+            return serviceState.equals(getSource(chunk, index));
+        }
+    }
+
+    /**
+     * @param slot the slot of a service.
+     * @return the kind of state stored in the slot.
+     */
+    public Kind getKind(final int slot) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            return getKind(stamp);
+        }
+        synchronized (getWriteLock(slot)) {
+            return getKind(chunk.stamps.get(index));
+        }
+    }
+
+    /**
+     * Read a primitive state. On/off and open/closed states are reported as 1 and 0. Only percent and decimal
+     * states with a fractional part allocate.
+     *
+     * @param slot the slot of a service.
+     * @return the value of the slot or {@link Double#NaN} if it does not contain a primitive state.
+     */
+    public double getValue(final int slot) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            final long value = chunk.values.get(index);
+            if (chunk.stamps.get(index) == stamp) {
+                return toDouble(stamp, value);
+            }
+        }
+        // the read overlapped with a write, so it is repeated once the write is finished
+        synchronized (getWriteLock(slot)) {
+            return toDouble(chunk.stamps.get(index), chunk.values.get(index));
+        }
+    }
+
+    private static double toDouble(final int stamp, final long value) {
+        switch (getKind(stamp)) {
+            case ON_OFF:
+            case OPEN_CLOSED:
+                return value;
+            case PERCENT:
+            case DECIMAL:
+                final int scale = getScale(stamp);
+                return scale == 0 ? value : BigDecimal.valueOf(value, scale).doubleValue();
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Read the state of a slot. Percent and decimal states are created on every call.
+     *
+     * @param slot the slot of a service.
+     * @return the state of the slot, the first one if the slot contains multiple states, or null if nothing was
+     * stored yet.
+     */
+    public @Nullable State getState(final int slot) {
+        final List<State> stateList = getStates(slot);
+        return stateList.isEmpty() ? null : stateList.get(0);
+    }
+
+    /**
+     * Read the states of a slot. Percent and decimal states are created on every call.
+     *
+     * @param slot the slot of a channel.
+     * @return the states of the slot, empty if nothing was stored yet.
+     */
+    public List<State> getStates(final int slot) {
+        final Chunk chunk = getChunk(slot);
+        final int index = slot & CHUNK_MASK;
+        final int stamp = chunk.stamps.get(index);
+        if (!isWriting(stamp)) {
+            final long value = chunk.values.get(index);
+            final @Nullable Object object = getObject(chunk, index, stamp);
+            if (chunk.stamps.get(index) == stamp) {
+                return decode(stamp, value, object);
+            }
+        }
+        // the read overlapped with a write, so it is repeated once the write is finished
+        synchronized (getWriteLock(slot)) {
+            final int lockedStamp = chunk.stamps.get(index);
+            return decode(lockedStamp, chunk.values.get(index), getObject(chunk, index, lockedStamp));
+        }
+    }
+
+    private static @Nullable Object getObject(final Chunk chunk, final int index, final int stamp) {
+        final Kind kind = getKind(stamp);
+        final AtomicReferenceArray<@Nullable Object> objects = chunk.objects;
+        return (kind == Kind.OBJECT || kind == Kind.LIST) && objects != null ? objects.get(index) : null;
+    }
+
+    private static @Nullable Message getSource(final Chunk chunk, final int index) {
+        final AtomicReferenceArray<@Nullable Message> sources = chunk.sources;
+        return sources != null ? sources.get(index) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<State> decode(final int stamp, final long value, @Nullable final Object object) {
+        switch (getKind(stamp)) {
+            case UNDEF:
+                return Collections.singletonList(UnDefType.UNDEF);
+            case NULL:
+                return Collections.singletonList(UnDefType.NULL);
+            case ON_OFF:
+                return Collections.singletonList(value == ON_BITS ? OnOffType.ON : OnOffType.OFF);
+            case OPEN_CLOSED:
+                return Collections.singletonList(value == ON_BITS ? OpenClosedType.OPEN : OpenClosedType.CLOSED);
+            case PERCENT:
+                return Collections.singletonList(new PercentType(BigDecimal.valueOf(value, getScale(stamp))));
+            case DECIMAL:
+                return Collections.singletonList(new DecimalType(BigDecimal.valueOf(value, getScale(stamp))));
+            case OBJECT:
+                return object == null ? Collections.emptyList() : Collections.singletonList((State) object);
+            case LIST:
+                return object == null ? Collections.emptyList() : (List<State>) object;
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return the number of slots assigned to units.
+     */
+    public int getSlotCount() {
+        int slotCount = 0;
+        for (final UnitSlots unitSlots : unitSlotsMap.values()) {
+            slotCount += unitSlots.size;
+        }
+        return slotCount;
+    }
+
+    /**
+     * @return the approximate number of bytes of the slot arrays, excluding states and service states stored as objects.
+     */
+    public long getFootprint() {
+        long footprint = 0;
+        for (final Chunk chunk : chunks) {
+            // stamp and primitive value per slot
+            footprint += CHUNK_SIZE * (Integer.BYTES + Long.BYTES);
+            // compressed references
+            if (chunk.objects != null) {
+                footprint += CHUNK_SIZE * Integer.BYTES;
+            }
+            if (chunk.sources != null) {
+                footprint += CHUNK_SIZE * Integer.BYTES;
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * Note: needs to be called while the slot is marked as being written.
+     *
+     * @return the kind of the stored state and the scale of percent and decimal states, as stored in the stamp.
+     */
+    private int encode(final Chunk chunk, final int index, final State state) {
+        final Kind kind = kindOf(state);
+        switch (kind) {
+            case ON_OFF:
+                chunk.values.set(index, state == OnOffType.ON ? ON_BITS : OFF_BITS);
+                break;
+            case OPEN_CLOSED:
+                chunk.values.set(index, state == OpenClosedType.OPEN ? ON_BITS : OFF_BITS);
+                break;
+            case PERCENT:
+            case DECIMAL:
+                final BigDecimal value = ((DecimalType) state).toBigDecimal();
+                chunk.values.set(index, value.unscaledValue().longValue());
+                releaseObject(chunk, index);
+                return (value.scale() << KIND_BITS) | kind.ordinal();
+            case OBJECT:
+                getObjects(chunk).set(index, state);
+                return kind.ordinal();
+            default:
+                break;
+        }
+        releaseObject(chunk, index);
+        return kind.ordinal();
+    }
+
+    /**
+     * Release the object previously stored in a slot.
+     * Note: needs to be called while the slot is marked as being written.
+     */
+    private static void releaseObject(final Chunk chunk, final int index) {
+        final AtomicReferenceArray<@Nullable Object> objects = chunk.objects;
+        if (objects != null) {
+            objects.set(index, null);
+        }
+    }
+
+    /**
+     * Note: needs to be called while the slot is marked as being written.
+     */
+    private void setSource(final Chunk chunk, final int index, @Nullable final Message serviceState) {
+        if (serviceState != null) {
+            getSources(chunk).set(index, serviceState);
+            return;
+        }
+        final AtomicReferenceArray<@Nullable Message> sources = chunk.sources;
+        if (sources != null) {
+            sources.set(index, null);
+        }
+    }
+
+    private static Kind kindOf(final State state) {
+        if (state == UnDefType.UNDEF) {
+            return Kind.UNDEF;
+        } else if (state == UnDefType.NULL) {
+            return Kind.NULL;
+        } else if (state instanceof OnOffType) {
+            return Kind.ON_OFF;
+        } else if (state instanceof OpenClosedType) {
+            return Kind.OPEN_CLOSED;
+        } else if (state.getClass() == PercentType.class && isCompact((DecimalType) state)) {
+            // exact class, because a hsb type is a percent type as well
+            return Kind.PERCENT;
+        } else if (state.getClass() == DecimalType.class && isCompact((DecimalType) state)) {
+            return Kind.DECIMAL;
+        }
+        return Kind.OBJECT;
+    }
+
+    /**
+     * @return if the unscaled value of the state fits into a long and its scale into the stamp.
+     */
+    private static boolean isCompact(final DecimalType state) {
+        final BigDecimal value = state.toBigDecimal();
+        return value.scale() >= 0 && value.scale() <= MAX_SCALE && value.unscaledValue().bitLength() < Long.SIZE;
+    }
+
+    private static boolean matches(final Chunk chunk, final int index, final int stamp, final List<State> stateList) {
+        if (getKind(stamp) == Kind.LIST) {
+            final AtomicReferenceArray<@Nullable Object> objects = chunk.objects;
+            return objects != null && stateList.equals(objects.get(index));
+        }
+        return stateList.size() == 1 && matches(chunk, index, stamp, stateList.get(0));
+    }
+
+    private static boolean matches(final Chunk chunk, final int index, final int stamp, final State state) {
+        switch (getKind(stamp)) {
+            case UNDEF:
+                return state == UnDefType.UNDEF;
+            case NULL:
+                return state == UnDefType.NULL;
+            case ON_OFF:
+                return state instanceof OnOffType && chunk.values.get(index) == (state == OnOffType.ON ? ON_BITS : OFF_BITS);
+            case OPEN_CLOSED:
+                return state instanceof OpenClosedType && chunk.values.get(index) == (state == OpenClosedType.OPEN ? ON_BITS : OFF_BITS);
+            case PERCENT:
+                return state.getClass() == PercentType.class && matches(((DecimalType) state).toBigDecimal(), chunk.values.get(index), getScale(stamp));
+            case DECIMAL:
+                return state.getClass() == DecimalType.class && matches(((DecimalType) state).toBigDecimal(), chunk.values.get(index), getScale(stamp));
+            case OBJECT:
+                final AtomicReferenceArray<@Nullable Object> objects = chunk.objects;
+                return objects != null && state.equals(objects.get(index));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compare a value with a stored one numerically, as the decimal types do. Integral values are compared without
+     * allocating.
+     */
+    private static boolean matches(final BigDecimal value, final long unscaledValue, final int scale) {
+        if (scale == 0 && value.scale() == 0 && value.precision() < 19) {
+            return value.longValue() == unscaledValue;
+        }
+        return value.compareTo(BigDecimal.valueOf(unscaledValue, scale)) == 0;
+    }
+
+    private static Kind getKind(final int stamp) {
+        return KINDS[stamp & KIND_MASK];
+    }
+
+    private static int getScale(final int stamp) {
+        return (stamp >>> KIND_BITS) & MAX_SCALE;
+    }
+
+    private SyncObject getWriteLock(final int slot) {
+        return writeLocks[slot & (WRITE_LOCK_COUNT - 1)];
+    }
+
+    private static boolean isWriting(final int stamp) {
+        return (stamp & WRITE_INCREMENT) != 0;
+    }
+
+    private Chunk getChunk(final int slot) {
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    /**
+     * The object array of a chunk is only created once a state of the chunk cannot be stored as primitive.
+     */
+    private AtomicReferenceArray<@Nullable Object> getObjects(final Chunk chunk) {
+        AtomicReferenceArray<@Nullable Object> objects = chunk.objects;
+        if (objects == null) {
+            // not the allocation lock, because the allocation lock is held while slots are cleared
+            synchronized (chunk) {
+                objects = chunk.objects;
+                if (objects == null) {
+                    objects = new AtomicReferenceArray<>(CHUNK_SIZE);
+                    chunk.objects = objects;
+                }
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * The service state array of a chunk is only created once a slot of the chunk records its service state.
+     */
+    private AtomicReferenceArray<@Nullable Message> getSources(final Chunk chunk) {
+        AtomicReferenceArray<@Nullable Message> sources = chunk.sources;
+        if (sources == null) {
+            synchronized (chunk) {
+                sources = chunk.sources;
+                if (sources == null) {
+                    sources = new AtomicReferenceArray<>(CHUNK_SIZE);
+                    chunk.sources = sources;
+                }
+            }
+        }
+        return sources;
+    }
+
+    private static int countServices(final long[] serviceMask) {
+        int count = 0;
+        for (final long word : serviceMask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Note: needs to be called while holding the allocation lock.
+     *
+     * @return the first slot of a block of consecutive slots.
+     */
+    private int allocate(final int size) {
+        final @Nullable Deque<Integer> freeBlocks = freeBlockMap.get(size);
+        if (freeBlocks != null && !freeBlocks.isEmpty()) {
+            return freeBlocks.pop();
+        }
+
+        // blocks do not span chunks, so the few slots left at the end of a chunk are skipped
+        if (size > 0 && (allocatedSlots & CHUNK_MASK) + size > CHUNK_SIZE) {
+            allocatedSlots = (allocatedSlots | CHUNK_MASK) + 1;
+        }
+        final int base = allocatedSlots;
+        allocatedSlots += size;
+
+        final int requiredChunks = (allocatedSlots + CHUNK_MASK) >>> CHUNK_BITS;
+        if (requiredChunks > chunks.length) {
+            final Chunk[] chunks = Arrays.copyOf(this.chunks, requiredChunks);
+            for (int i = this.chunks.length; i < requiredChunks; i++) {
+                chunks[i] = new Chunk();
+            }
+            this.chunks = chunks;
+        }
+        return base;
+    }
+
+    /**
+     * Note: needs to be called while holding the allocation lock.
+     */
+    private void release(final UnitSlots unitSlots) {
+        for (int slot = unitSlots.base; slot < unitSlots.base + unitSlots.size; slot++) {
+            clear(slot);
+        }
+        freeBlockMap.computeIfAbsent(unitSlots.size, key -> new ArrayDeque<>()).push(unitSlots.base);
+    }
+
+    private static class Chunk {
+
+        private final AtomicIntegerArray stamps = new AtomicIntegerArray(CHUNK_SIZE);
+        private final AtomicLongArray values = new AtomicLongArray(CHUNK_SIZE);
+        private volatile @Nullable AtomicReferenceArray<@Nullable Object> objects;
+        private volatile @Nullable AtomicReferenceArray<@Nullable Message> sources;
+    }
+
+    /**
+     * The block of slots of a unit. The slot of a service is the block start plus the number of services of the
+     * unit with a lower ordinal. The slots of custom channels follow the slots of the services.
+     */
+    private static class UnitSlots {
+
+        private final long[] serviceMask;
+        private final String[] customChannelIds;
+        private final int[] rankOffsets;
+        private final int base;
+        private final int serviceCount;
+        private final int size;
+
+        private UnitSlots(final long[] serviceMask, final String[] customChannelIds, final int base) {
+            this.serviceMask = serviceMask;
+            this.customChannelIds = customChannelIds;
+            this.rankOffsets = new int[serviceMask.length];
+            this.base = base;
+            int serviceCount = 0;
+            for (int i = 0; i < serviceMask.length; i++) {
+                rankOffsets[i] = serviceCount;
+                serviceCount += Long.bitCount(serviceMask[i]);
+            }
+            this.serviceCount = serviceCount;
+            this.size = serviceCount + customChannelIds.length;
+        }
+
+        private int getSlot(final String customChannelId) {
+            for (int i = 0; i < customChannelIds.length; i++) {
+                if (customChannelIds[i].equals(customChannelId)) {
+                    return base + serviceCount + i;
+                }
+            }
+            return -1;
+        }
+
+        private int getSlot(final ServiceType serviceType) {
+            final int word = serviceType.ordinal() >>> 6;
+            final long bit = 1L << serviceType.ordinal();
+            if ((serviceMask[word] & bit) == 0) {
+                return -1;
+            }
+            return base + rankOffsets[word] + Long.bitCount(serviceMask[word] & (bit - 1));
+        }
+    }
+}
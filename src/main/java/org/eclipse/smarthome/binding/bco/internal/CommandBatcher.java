@@ -0,0 +1,386 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link CommandBatcher} collects the commands of all things arriving within a short window, e.g. if a rule
+ * or group switches many lights at once. All actions of a batch are requested before waiting for any response,
+ * so the round trips to bco overlap instead of adding up. Each command is completed on its own, so a failure
+ * only affects the thing which issued it.
+ * <p>
+ * The number of actions in flight is limited per unit and for the whole binding. Commands exceeding a limit stay
+ * pending until an action completes. A pending command is superseded by a newer command for the same channel.
+ * <p>
+ * No thread waits for an action. Actions whose future supports callbacks are completed by the callback, all
+ * others are polled by a single sweep task, which also fails actions exceeding the timeout.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class CommandBatcher {
+
+    public static final String SUPERSEDED_COMMANDS = "command.superseded";
+    public static final String PENDING_COMMANDS = "command.pending";
+    public static final String IN_FLIGHT_ACTIONS = "command.inFlight";
+
+    // in milliseconds
+    private static final long ACTION_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    // in milliseconds
+    private static final long SWEEP_INTERVAL = 100;
+
+    // batches are dispatched in order in the command lane of the binding executor
+    private static final String DISPATCH_TASK_KEY = "command-dispatch";
+
+    private final Logger logger = LoggerFactory.getLogger(CommandBatcher.class);
+
+    private final long batchWindow;
+    private final int maxInFlightActionsPerUnit;
+    private final ScheduledExecutorService scheduler;
+    private final BCOExecutor executor;
+    private final BCOMetricRegistry metricRegistry;
+
+    private final SyncObject pendingCommandLock = new SyncObject("PendingCommandLock");
+    private final Map<ChannelUID, BatchedCommand> pendingCommandMap;
+    private boolean dispatchScheduled;
+    private boolean shutdown;
+
+    private final Semaphore inFlightPermits;
+
+    /**
+     * Permits of units with actions in flight. Entries are removed once all permits of a unit are returned.
+     * Note: guarded by the pending command lock.
+     */
+    private final Map<ThingUID, Semaphore> unitInFlightPermitMap;
+
+    private final Set<InFlightAction> inFlightActionSet;
+    // guarded by the pending command lock
+    private @Nullable ScheduledFuture<?> sweepFuture;
+
+    private final LongAdder supersededCommandCounter;
+    private final LatencyHistogram batchLatencyHistogram;
+    private final LatencyHistogram commandLatencyHistogram;
+
+    /**
+     * @param batchWindow               the time in milliseconds commands are collected before they are dispatched.
+     * @param maxInFlightActions        the maximal number of actions in flight for the whole binding.
+     * @param maxInFlightActionsPerUnit the maximal number of actions in flight per unit.
+     * @param scheduler                 the scheduler used to wait for the end of the batch window.
+     * @param executor                  the executor the batches are dispatched on.
+     * @param metricRegistry            the registry the command latencies are recorded in.
+     */
+    public CommandBatcher(final long batchWindow, final int maxInFlightActions, final int maxInFlightActionsPerUnit, final ScheduledExecutorService scheduler, final BCOExecutor executor, final BCOMetricRegistry metricRegistry) {
+        this.batchWindow = Math.max(0, batchWindow);
+        this.maxInFlightActionsPerUnit = Math.max(1, maxInFlightActionsPerUnit);
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.metricRegistry = metricRegistry;
+        this.pendingCommandMap = new LinkedHashMap<>();
+        this.inFlightPermits = new Semaphore(Math.max(1, maxInFlightActions));
+        this.unitInFlightPermitMap = new HashMap<>();
+        this.inFlightActionSet = ConcurrentHashMap.newKeySet();
+        this.supersededCommandCounter = metricRegistry.getCounter(SUPERSEDED_COMMANDS);
+        this.batchLatencyHistogram = metricRegistry.getHistogram("command.batchLatency");
+        this.commandLatencyHistogram = metricRegistry.getHistogram("command.latency");
+        metricRegistry.registerGauge(PENDING_COMMANDS, this::getPendingCommandCount);
+        metricRegistry.registerGauge(IN_FLIGHT_ACTIONS, inFlightActionSet::size);
+    }
+
+    /**
+     * Add a command to the pending commands. The pending commands are dispatched after the batch window passed.
+     * A command for the same channel which is still pending is superseded.
+     *
+     * @param command the command to dispatch.
+     */
+    public void submit(final BatchedCommand command) {
+        synchronized (pendingCommandLock) {
+            if (shutdown) {
+                logger.debug("Drop command for channel {} because the binding is stopped", command.getChannelUID());
+                return;
+            }
+            // remove first so the newer command is dispatched in the order it was submitted
+            final @Nullable BatchedCommand supersededCommand = pendingCommandMap.remove(command.getChannelUID());
+            pendingCommandMap.put(command.getChannelUID(), command);
+            if (supersededCommand != null) {
+                supersededCommandCounter.increment();
+                logger.debug("Pending command for channel {} superseded by a newer one", command.getChannelUID());
+            }
+            scheduleDispatch(batchWindow);
+        }
+    }
+
+    /**
+     * Note: needs to be called while holding the pending command lock.
+     */
+    private void scheduleDispatch(final long delay) {
+        if (shutdown || dispatchScheduled || pendingCommandMap.isEmpty()) {
+            return;
+        }
+        dispatchScheduled = true;
+        if (delay == 0) {
+            executor.execute(DISPATCH_TASK_KEY, ExecutionLane.COMMAND, this::dispatch);
+        } else {
+            scheduler.schedule(() -> executor.execute(DISPATCH_TASK_KEY, ExecutionLane.COMMAND, this::dispatch), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatch() {
+        final List<BatchedCommand> batch = new ArrayList<>();
+        synchronized (pendingCommandLock) {
+            dispatchScheduled = false;
+            final Iterator<BatchedCommand> pendingCommandIterator = pendingCommandMap.values().iterator();
+            while (pendingCommandIterator.hasNext()) {
+                final BatchedCommand command = pendingCommandIterator.next();
+                final Semaphore unitInFlightPermits = getUnitInFlightPermits(command);
+                if (!unitInFlightPermits.tryAcquire()) {
+                    // unit is busy, command stays pending
+                    continue;
+                }
+                if (!inFlightPermits.tryAcquire()) {
+                    // binding is saturated, all remaining commands stay pending
+                    releaseUnitInFlightPermit(command);
+                    break;
+                }
+                pendingCommandIterator.remove();
+                batch.add(command);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        final long batchStartTime = batch.get(0).getCreationTime();
+        final AtomicInteger remainingCommands = new AtomicInteger(batch.size());
+        final Runnable batchCompletion = () -> {
+            if (remainingCommands.decrementAndGet() == 0) {
+                batchLatencyHistogram.recordSince(batchStartTime);
+                logger.debug("Dispatched batch of {} commands, {}, {}", batch.size(), batchLatencyHistogram, commandLatencyHistogram);
+            }
+        };
+
+        // request all actions before waiting for the first response
+        for (final BatchedCommand command : batch) {
+            final Future<?> actionFuture;
+            try {
+                actionFuture = command.getUnitRemote().applyAction(command.getActionParameter());
+                metricRegistry.getCommandDispatchHistogram(command.getServiceType()).recordSince(command.getCreationTime());
+            } catch (CouldNotPerformException ex) {
+                complete(command, ex, batchCompletion);
+                continue;
+            }
+            track(new InFlightAction(command, actionFuture, batchCompletion));
+        }
+    }
+
+    /**
+     * Complete an action once its future is done, every thing is completed independently.
+     */
+    private void track(final InFlightAction action) {
+        inFlightActionSet.add(action);
+        if (action.future instanceof CompletionStage) {
+            ((CompletionStage<?>) action.future).whenComplete((result, failure) -> finish(action));
+        }
+        synchronized (pendingCommandLock) {
+            if (sweepFuture == null) {
+                sweepFuture = scheduler.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Finish the actions which are done and fail the actions which exceeded the timeout. The task stops itself once
+     * no action is in flight anymore.
+     */
+    private void sweep() {
+        final long time = System.nanoTime();
+        for (final InFlightAction action : inFlightActionSet) {
+            if (action.future.isDone()) {
+                finish(action);
+            } else if (TimeUnit.NANOSECONDS.toMillis(time - action.dispatchTime) >= ACTION_TIMEOUT) {
+                if (action.finished.compareAndSet(false, true)) {
+                    inFlightActionSet.remove(action);
+                    complete(action.command, new TimeoutException("Action not completed within " + ACTION_TIMEOUT + "ms"), action.batchCompletion);
+                }
+            }
+        }
+
+        synchronized (pendingCommandLock) {
+            final ScheduledFuture<?> sweepFuture = this.sweepFuture;
+            if (inFlightActionSet.isEmpty() && sweepFuture != null) {
+                sweepFuture.cancel(false);
+                this.sweepFuture = null;
+            }
+        }
+    }
+
+    /**
+     * Complete an action whose future is done. Does nothing if the action was already completed.
+     */
+    private void finish(final InFlightAction action) {
+        if (!action.finished.compareAndSet(false, true)) {
+            return;
+        }
+        inFlightActionSet.remove(action);
+
+        @Nullable Exception failure = null;
+        try {
+            // the future is done, so this does not block
+            action.future.get();
+        } catch (ExecutionException | CancellationException ex) {
+            failure = ex;
+        } catch (InterruptedException ex) {
+            failure = ex;
+            Thread.currentThread().interrupt();
+        }
+        complete(action.command, failure, action.batchCompletion);
+    }
+
+    /**
+     * Note: needs to be called while holding the pending command lock.
+     */
+    private Semaphore getUnitInFlightPermits(final BatchedCommand command) {
+        return unitInFlightPermitMap.computeIfAbsent(command.getChannelUID().getThingUID(), key -> new Semaphore(maxInFlightActionsPerUnit));
+    }
+
+    /**
+     * Return a permit of the unit and forget its permits once all of them are returned, so that removed things do
+     * not leave permits behind.
+     * Note: needs to be called while holding the pending command lock.
+     */
+    private void releaseUnitInFlightPermit(final BatchedCommand command) {
+        final ThingUID thingUID = command.getChannelUID().getThingUID();
+        final @Nullable Semaphore unitInFlightPermits = unitInFlightPermitMap.get(thingUID);
+        if (unitInFlightPermits == null) {
+            return;
+        }
+        unitInFlightPermits.release();
+        if (unitInFlightPermits.availablePermits() >= maxInFlightActionsPerUnit) {
+            unitInFlightPermitMap.remove(thingUID);
+        }
+    }
+
+    private void complete(final BatchedCommand command, @Nullable final Exception failure, final Runnable batchCompletion) {
+        commandLatencyHistogram.recordSince(command.getCreationTime());
+
+        // release the permits and dispatch commands which are pending because of the limits
+        synchronized (pendingCommandLock) {
+            releaseUnitInFlightPermit(command);
+            inFlightPermits.release();
+            scheduleDispatch(0);
+        }
+
+        try {
+            if (failure != null) {
+                command.getFailureHandler().accept(failure);
+            }
+        } finally {
+            batchCompletion.run();
+        }
+    }
+
+    /**
+     * Drop all pending commands and reject further commands. Actions already in flight are completed.
+     */
+    public void shutdown() {
+        synchronized (pendingCommandLock) {
+            shutdown = true;
+            pendingCommandMap.clear();
+        }
+        metricRegistry.unregisterGauge(PENDING_COMMANDS);
+        metricRegistry.unregisterGauge(IN_FLIGHT_ACTIONS);
+    }
+
+    /**
+     * @return the number of commands waiting to be dispatched.
+     */
+    public int getPendingCommandCount() {
+        synchronized (pendingCommandLock) {
+            return pendingCommandMap.size();
+        }
+    }
+
+    /**
+     * @return the histogram of the time from the first command of a batch until all its commands are completed.
+     */
+    public LatencyHistogram getBatchLatencyHistogram() {
+        return batchLatencyHistogram;
+    }
+
+    /**
+     * @return the histogram of the time from submitting a command until it is completed.
+     */
+    public LatencyHistogram getCommandLatencyHistogram() {
+        return commandLatencyHistogram;
+    }
+
+    /**
+     * An action requested from bco whose result is not known yet.
+     */
+    private static class InFlightAction {
+
+        private final BatchedCommand command;
+        private final Future<?> future;
+        private final Runnable batchCompletion;
+        private final long dispatchTime;
+        private final AtomicBoolean finished;
+
+        private InFlightAction(final BatchedCommand command, final Future<?> future, final Runnable batchCompletion) {
+            this.command = command;
+            this.future = future;
+            this.batchCompletion = batchCompletion;
+            this.dispatchTime = System.nanoTime();
+            this.finished = new AtomicBoolean();
+        }
+    }
+}
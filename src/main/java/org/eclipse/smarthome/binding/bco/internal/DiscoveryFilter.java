@@ -0,0 +1,50 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+
+/**
+ * A {@link DiscoveryFilter} decides if a unit is handled by the bco binding and should therefore be discovered as a thing.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public interface DiscoveryFilter {
+
+    /**
+     * @param unitConfig the config of the unit to check.
+     * @return true if the unit passes the filter.
+     * @throws CouldNotPerformException is thrown if the decision could not be made, e.g. because the host of the unit is not available.
+     */
+    boolean accept(final UnitConfig unitConfig) throws CouldNotPerformException;
+
+    /**
+     * Invalidate everything cached by the filter. Called before each discovery pass since the registry could have changed.
+     */
+    default void reset() {
+        // nothing cached by default
+    }
+}
@@ -0,0 +1,99 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link DiscoveryFilterChain} combines multiple filters which are evaluated in order in a single pass.
+ * A unit is handled if it is accepted by all filters.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class DiscoveryFilterChain implements DiscoveryFilter {
+
+    public static final String OPENHAB_BINDING_ID = "openhab";
+
+    private final List<DiscoveryFilter> filterList;
+
+    public DiscoveryFilterChain(final List<DiscoveryFilter> filterList) {
+        this.filterList = Collections.unmodifiableList(new ArrayList<>(filterList));
+    }
+
+    /**
+     * Create the chain used by the discovery. Cheap filters are evaluated first.
+     * Filtered are all units without services, system users, units not matching the unit type includes and excludes
+     * and all units of devices handled by the openhab app.
+     *
+     * @param unitTypeIncludes  unit types to discover, all types are discovered if empty.
+     * @param unitTypeExcludes  unit types to never discover.
+     * @param unitConfigLookup  lookup used to resolve unit hosts.
+     * @param deviceClassLookup lookup used to resolve the device class of a host.
+     * @return the new filter chain.
+     */
+    public static DiscoveryFilterChain createDefault(final Set<UnitType> unitTypeIncludes, final Set<UnitType> unitTypeExcludes, final RegistryLookup<UnitConfig> unitConfigLookup, final RegistryLookup<DeviceClass> deviceClassLookup) {
+        final Set<UnitType> includes = unitTypeIncludes.isEmpty() ? EnumSet.noneOf(UnitType.class) : EnumSet.copyOf(unitTypeIncludes);
+        final Set<UnitType> excludes = unitTypeExcludes.isEmpty() ? EnumSet.noneOf(UnitType.class) : EnumSet.copyOf(unitTypeExcludes);
+
+        final List<DiscoveryFilter> filterList = new ArrayList<>();
+        // ignore all units without services
+        filterList.add(unitConfig -> unitConfig.getServiceConfigCount() > 0);
+        // ignore system users
+        filterList.add(unitConfig -> unitConfig.getUnitType() != UnitType.USER || !unitConfig.getUserConfig().getSystemUser());
+        // ignore unit types as configured
+        if (!includes.isEmpty() || !excludes.isEmpty()) {
+            filterList.add(unitConfig -> (includes.isEmpty() || includes.contains(unitConfig.getUnitType())) && !excludes.contains(unitConfig.getUnitType()));
+        }
+        // ignore all units from devices handled by the openhab app
+        filterList.add(new HostBindingDiscoveryFilter(OPENHAB_BINDING_ID, unitConfigLookup, deviceClassLookup));
+        return new DiscoveryFilterChain(filterList);
+    }
+
+    @Override
+    public boolean accept(final UnitConfig unitConfig) throws CouldNotPerformException {
+        for (final DiscoveryFilter filter : filterList) {
+            if (!filter.accept(unitConfig)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        for (final DiscoveryFilter filter : filterList) {
+            filter.reset();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link ExecutionLane} is the priority of a task of the {@link BCOExecutor}. Waiting tasks of a lane are
+ * always executed before waiting tasks of the lanes declared after it, so that commands issued by users are never
+ * queued behind a storm of state updates.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public enum ExecutionLane {
+
+    COMMAND("command", BCOBindingConstants.CONFIG_COMMAND_LATENCY_BUDGET, BCOBindingConstants.DEFAULT_COMMAND_LATENCY_BUDGET),
+    CONNECTION("connection", BCOBindingConstants.CONFIG_CONNECTION_LATENCY_BUDGET, BCOBindingConstants.DEFAULT_CONNECTION_LATENCY_BUDGET),
+    CHANNEL_STATE("channelState", BCOBindingConstants.CONFIG_CHANNEL_STATE_LATENCY_BUDGET, BCOBindingConstants.DEFAULT_CHANNEL_STATE_LATENCY_BUDGET),
+    CONFIG("config", BCOBindingConstants.CONFIG_CONFIG_LATENCY_BUDGET, BCOBindingConstants.DEFAULT_CONFIG_LATENCY_BUDGET);
+
+    private final String id;
+    private final String latencyBudgetKey;
+    private final long defaultLatencyBudget;
+
+    ExecutionLane(final String id, final String latencyBudgetKey, final long defaultLatencyBudget) {
+        this.id = id;
+        this.latencyBudgetKey = latencyBudgetKey;
+        this.defaultLatencyBudget = defaultLatencyBudget;
+    }
+
+    /**
+     * @return the key of the configuration property defining the latency budget of the lane.
+     */
+    public String getLatencyBudgetKey() {
+        return latencyBudgetKey;
+    }
+
+    /**
+     * @return the time in milliseconds a task of the lane may wait before a warning is logged.
+     */
+    public long getDefaultLatencyBudget() {
+        return defaultLatencyBudget;
+    }
+
+    /**
+     * @return the name of the gauge reporting the number of waiting tasks.
+     */
+    public String getQueueDepthMetric() {
+        return "executor." + id + ".queueDepth";
+    }
+
+    /**
+     * @return the name of the histogram recording the time tasks waited before their execution.
+     */
+    public String getQueueTimeMetric() {
+        return "executor." + id + ".queueTime";
+    }
+
+    /**
+     * @return the name of the gauge reporting how often a task waited longer than the latency budget.
+     */
+    public String getBudgetExceededMetric() {
+        return "executor." + id + ".budgetExceeded";
+    }
+}
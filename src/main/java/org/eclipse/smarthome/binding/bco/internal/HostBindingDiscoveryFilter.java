@@ -0,0 +1,88 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openbase.type.domotic.unit.device.DeviceClassType.DeviceClass;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Filters all units hosted by devices which are handled by another binding, e.g. the openhab app.
+ * The decision per host is cached until the filter is reset, because hosts usually provide many units.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class HostBindingDiscoveryFilter implements DiscoveryFilter {
+
+    private final String excludedBindingId;
+    private final RegistryLookup<UnitConfig> unitConfigLookup;
+    private final RegistryLookup<DeviceClass> deviceClassLookup;
+    private final Map<String, Boolean> hostDecisionMap;
+
+    /**
+     * @param excludedBindingId the id of the binding whose devices are filtered, compared case insensitive.
+     * @param unitConfigLookup  lookup used to resolve unit hosts.
+     * @param deviceClassLookup lookup used to resolve the device class of a host.
+     */
+    public HostBindingDiscoveryFilter(final String excludedBindingId, final RegistryLookup<UnitConfig> unitConfigLookup, final RegistryLookup<DeviceClass> deviceClassLookup) {
+        this.excludedBindingId = excludedBindingId;
+        this.unitConfigLookup = unitConfigLookup;
+        this.deviceClassLookup = deviceClassLookup;
+        this.hostDecisionMap = new HashMap<>();
+    }
+
+    @Override
+    public boolean accept(final UnitConfig unitConfig) throws CouldNotPerformException {
+        if (unitConfig.getUnitHostId().isEmpty()) {
+            return true;
+        }
+
+        final Boolean cachedDecision = hostDecisionMap.get(unitConfig.getUnitHostId());
+        if (cachedDecision != null) {
+            return cachedDecision;
+        }
+
+        final boolean decision = isHostAccepted(unitConfigLookup.getById(unitConfig.getUnitHostId()));
+        hostDecisionMap.put(unitConfig.getUnitHostId(), decision);
+        return decision;
+    }
+
+    private boolean isHostAccepted(final UnitConfig unitHost) throws CouldNotPerformException {
+        if (unitHost.getUnitType() != UnitType.DEVICE) {
+            return true;
+        }
+        final DeviceClass deviceClass = deviceClassLookup.getById(unitHost.getDeviceConfig().getDeviceClassId());
+        return !deviceClass.getBindingConfig().getBindingId().equalsIgnoreCase(excludedBindingId);
+    }
+
+    @Override
+    public void reset() {
+        hostDecisionMap.clear();
+    }
+}
@@ -0,0 +1,154 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link LatencyHistogram} records latencies into exponential buckets, where bucket i contains all
+ * latencies below 2^i microseconds. Recording is lock free and percentiles are reported as bucket upper bounds.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 40;
+
+    private final String name;
+    private final AtomicLongArray bucketArray;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram(final String name) {
+        this.name = name;
+        this.bucketArray = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latency  the latency to record.
+     * @param timeUnit the time unit of the latency.
+     */
+    public void record(final long latency, final TimeUnit timeUnit) {
+        final long micros = Math.max(0, timeUnit.toMicros(latency));
+        final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        bucketArray.incrementAndGet(bucket);
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long currentMax;
+        while ((currentMax = max.get()) < micros && !max.compareAndSet(currentMax, micros)) {
+            // retry until max is updated
+        }
+    }
+
+    /**
+     * Record the time passed since the given start time.
+     *
+     * @param startNanos a start time measured by {@link System#nanoTime()}.
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the mean latency in microseconds.
+     */
+    public long getMean() {
+        final long count = this.count.get();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    /**
+     * @return the maximal latency in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get an upper bound of a percentile.
+     *
+     * @param percentile the percentile between 0 and 1, e.g. 0.99.
+     * @return the upper bound of the bucket containing the percentile in microseconds.
+     */
+    public long getPercentile(final double percentile) {
+        final long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += bucketArray.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clear all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketArray.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return name + "[count=" + getCount()
+                + ", mean=" + formatMillis(getMean())
+                + ", p50=" + formatMillis(getPercentile(0.5))
+                + ", p90=" + formatMillis(getPercentile(0.9))
+                + ", p99=" + formatMillis(getPercentile(0.99))
+                + ", max=" + formatMillis(getMax()) + "]";
+    }
+
+    private static String formatMillis(final long micros) {
+        return String.format("%.3fms", micros / 1000d);
+    }
+}
@@ -0,0 +1,558 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.state.PowerStateType.PowerState;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link LocationAggregateCache} keeps the number of lights which are switched on per location.
+ * The aggregate of a location is made up of the lights placed directly in the location and the aggregates of its
+ * child locations. Every light change is propagated up the location tree, so a location and all its parents can read
+ * their aggregated light state in constant time instead of aggregating their whole subtree on each update.
+ * <p>
+ * Locations are registered by the things representing them. Registering a location registers its child locations
+ * as well, so every location is only aggregated once and every light is only observed by the location it is placed
+ * in. Listeners of a location are notified if its aggregated state changes.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class LocationAggregateCache {
+
+    /**
+     * All unit types aggregated as light.
+     */
+    public static final Set<UnitType> LIGHT_UNIT_TYPES = Collections.unmodifiableSet(EnumSet.of(UnitType.LIGHT, UnitType.DIMMABLE_LIGHT, UnitType.COLORABLE_LIGHT));
+
+    private static final PowerState POWER_STATE_ON = PowerState.newBuilder().setValue(PowerState.State.ON).build();
+    private static final PowerState POWER_STATE_OFF = PowerState.newBuilder().setValue(PowerState.State.OFF).build();
+
+    private final Logger logger = LoggerFactory.getLogger(LocationAggregateCache.class);
+
+    private final SyncObject aggregateLock = new SyncObject("LocationAggregateLock");
+    private final Map<String, LightEntry> lightMap;
+    private final Map<String, LocationEntry> locationMap;
+    private final UnitRemotePool remotePool;
+    private final BCORegistryAccess registryAccess;
+
+    /**
+     * @param remotePool     the pool used to acquire the remotes of lights.
+     * @param registryAccess the access used to resolve locations and their lights.
+     */
+    public LocationAggregateCache(final UnitRemotePool remotePool, final BCORegistryAccess registryAccess) {
+        this.lightMap = new HashMap<>();
+        this.locationMap = new HashMap<>();
+        this.remotePool = remotePool;
+        this.registryAccess = registryAccess;
+    }
+
+    /**
+     * Start aggregating the lights of a location. If the lights cannot be acquired, the registration is rolled back
+     * completely.
+     * Note: acquires the remotes of lights, so it should not be called while holding a lock.
+     *
+     * @param locationId the id of the location.
+     * @param listener   notified whenever the aggregated light state of the location changes.
+     * @throws CouldNotPerformException is thrown if the location or its lights could not be resolved.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    public void register(final String locationId, final Runnable listener) throws CouldNotPerformException, InterruptedException {
+        final Map<String, LocationNode> locationNodeMap = resolveLocationTree(locationId);
+
+        final List<LightAcquisition> lightAcquisitionList = new ArrayList<>();
+        synchronized (aggregateLock) {
+            retainLocation(locationId, null, locationNodeMap, lightAcquisitionList);
+            final LocationEntry locationEntry = locationMap.get(locationId);
+            if (locationEntry != null) {
+                locationEntry.listenerList.add(listener);
+            }
+        }
+
+        try {
+            for (final LightAcquisition lightAcquisition : lightAcquisitionList) {
+                acquireLight(lightAcquisition.locationEntry, lightAcquisition.lightId);
+            }
+        } catch (CouldNotPerformException | InterruptedException | RuntimeException ex) {
+            // only lights acquired by this registration are tracked by their location, so nothing else is released
+            unregister(locationId, listener);
+            throw ex;
+        }
+    }
+
+    /**
+     * Stop aggregating the lights of a location.
+     *
+     * @param locationId the id of the location.
+     * @param listener   the listener passed on registration.
+     */
+    public void unregister(final String locationId, final Runnable listener) {
+        final List<String> lightIdList = new ArrayList<>();
+        synchronized (aggregateLock) {
+            final LocationEntry locationEntry = locationMap.get(locationId);
+            if (locationEntry == null) {
+                return;
+            }
+            locationEntry.listenerList.remove(listener);
+            releaseLocation(locationId, lightIdList);
+        }
+
+        for (final String lightId : lightIdList) {
+            releaseLight(lightId);
+        }
+    }
+
+    /**
+     * Get the aggregated light state of a location.
+     *
+     * @param locationId the id of the location.
+     * @return ON if at least one light of the location is on, OFF if all are off and null if no light state is known.
+     */
+    public @Nullable PowerState getPowerState(final String locationId) {
+        synchronized (aggregateLock) {
+            final LocationEntry locationEntry = locationMap.get(locationId);
+            if (locationEntry == null) {
+                return null;
+            }
+            return getPowerState(locationEntry);
+        }
+    }
+
+    /**
+     * Count the lights of a registered location whose state differs from the given one. Lights without a known
+     * state are counted as well.
+     *
+     * @param locationId the id of the location.
+     * @param state      the state to compare with.
+     * @return the number of lights not in the given state, or -1 if the location is not registered.
+     */
+    public int countLightsNotInState(final String locationId, final PowerState.State state) {
+        synchronized (aggregateLock) {
+            final LocationEntry locationEntry = locationMap.get(locationId);
+            if (locationEntry == null) {
+                return -1;
+            }
+            return countLightsNotInState(locationEntry, state);
+        }
+    }
+
+    /**
+     * Note: needs to be called while holding the aggregate lock.
+     */
+    private int countLightsNotInState(final LocationEntry locationEntry, final PowerState.State state) {
+        int count = 0;
+        for (final String lightId : locationEntry.lightIdSet) {
+            final LightEntry lightEntry = lightMap.get(lightId);
+            if (lightEntry == null || lightEntry.state != state) {
+                count++;
+            }
+        }
+        // lights which could not be acquired yet have no known state
+        count += locationEntry.lightCount - locationEntry.lightIdSet.size();
+        for (final String childId : locationEntry.childIdList) {
+            final LocationEntry childEntry = locationMap.get(childId);
+            if (childEntry != null) {
+                count += countLightsNotInState(childEntry, state);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add a registration to a location and all its child locations. Locations registered for the first time are
+     * created from the resolved location tree and their lights are added to the list of lights to acquire.
+     * Note: needs to be called while holding the aggregate lock.
+     */
+    private void retainLocation(final String locationId, @Nullable final String parentId, final Map<String, LocationNode> locationNodeMap, final List<LightAcquisition> lightAcquisitionList) {
+        final LocationEntry existingEntry = locationMap.get(locationId);
+        if (existingEntry != null) {
+            existingEntry.registrationCount++;
+            if (parentId != null) {
+                existingEntry.parentId = parentId;
+            }
+            for (final String childId : existingEntry.childIdList) {
+                retainLocation(childId, locationId, locationNodeMap, lightAcquisitionList);
+            }
+            return;
+        }
+
+        final LocationNode locationNode = locationNodeMap.get(locationId);
+        if (locationNode == null) {
+            // location has been added to the registry after the tree was resolved
+            return;
+        }
+        final LocationEntry locationEntry = new LocationEntry(locationId, parentId, locationNode.childIdList, locationNode.lightIdList.size());
+        locationMap.put(locationId, locationEntry);
+        for (final String lightId : locationNode.lightIdList) {
+            lightAcquisitionList.add(new LightAcquisition(locationEntry, lightId));
+        }
+        for (final String childId : locationNode.childIdList) {
+            retainLocation(childId, locationId, locationNodeMap, lightAcquisitionList);
+            final LocationEntry childEntry = locationMap.get(childId);
+            if (childEntry != null) {
+                // children registered before already aggregate their lights
+                locationEntry.onCount += childEntry.onCount;
+                locationEntry.totalCount += childEntry.totalCount;
+            }
+        }
+    }
+
+    /**
+     * Remove a registration from a location and all its child locations. The lights of locations without
+     * registrations are added to the list of lights to release.
+     * Note: needs to be called while holding the aggregate lock.
+     */
+    private void releaseLocation(final String locationId, final List<String> lightIdList) {
+        final LocationEntry locationEntry = locationMap.get(locationId);
+        if (locationEntry == null) {
+            return;
+        }
+        final boolean removed = --locationEntry.registrationCount == 0;
+        if (removed) {
+            locationMap.remove(locationId);
+            lightIdList.addAll(locationEntry.lightIdSet);
+            locationEntry.lightIdSet.clear();
+        }
+        for (final String childId : locationEntry.childIdList) {
+            releaseLocation(childId, lightIdList);
+            final LocationEntry childEntry = locationMap.get(childId);
+            if (removed && childEntry != null) {
+                // the child stays registered on its own
+                childEntry.parentId = null;
+            }
+        }
+    }
+
+    /**
+     * Acquire a light of a location and start observing it. Nothing is done if the location has been released
+     * in the meantime.
+     */
+    @SuppressWarnings("unchecked")
+    private void acquireLight(final LocationEntry locationEntry, final String lightId) throws CouldNotPerformException, InterruptedException {
+        List<Runnable> listenerList = Collections.emptyList();
+        boolean attached = false;
+        synchronized (aggregateLock) {
+            if (locationMap.get(locationEntry.locationId) != locationEntry) {
+                return;
+            }
+            final LightEntry lightEntry = lightMap.get(lightId);
+            if (lightEntry != null) {
+                lightEntry.referenceCount++;
+                locationEntry.lightIdSet.add(lightId);
+                listenerList = attachLight(lightEntry, locationEntry);
+                attached = true;
+            }
+        }
+        if (attached) {
+            notify(listenerList);
+            return;
+        }
+
+        final UnitRemote<?> unitRemote = remotePool.acquire(lightId);
+        final LightEntry lightEntry = new LightEntry(lightId, unitRemote, locationEntry);
+        // the observer is added before the entry is published, so a concurrent release always removes it
+        unitRemote.addDataObserver(lightEntry.observer);
+        remotePool.observerAdded(lightId);
+
+        boolean published = false;
+        synchronized (aggregateLock) {
+            if (locationMap.get(locationEntry.locationId) == locationEntry) {
+                final LightEntry existingEntry = lightMap.get(lightId);
+                if (existingEntry == null) {
+                    lightMap.put(lightId, lightEntry);
+                    published = true;
+                } else {
+                    // acquired concurrently
+                    existingEntry.referenceCount++;
+                    listenerList = attachLight(existingEntry, locationEntry);
+                }
+                locationEntry.lightIdSet.add(lightId);
+            }
+        }
+
+        if (!published) {
+            unitRemote.removeDataObserver(lightEntry.observer);
+            remotePool.observerRemoved(lightId);
+            remotePool.release(lightId);
+            notify(listenerList);
+            return;
+        }
+        if (unitRemote.isDataAvailable()) {
+            updateLight(lightEntry);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseLight(final String lightId) {
+        final LightEntry lightEntry;
+        final List<Runnable> listenerList;
+        synchronized (aggregateLock) {
+            lightEntry = lightMap.get(lightId);
+            if (lightEntry == null || --lightEntry.referenceCount > 0) {
+                return;
+            }
+            lightMap.remove(lightId);
+            listenerList = applyState(lightEntry, PowerState.State.UNKNOWN);
+        }
+        lightEntry.unitRemote.removeDataObserver(lightEntry.observer);
+        remotePool.observerRemoved(lightId);
+        remotePool.release(lightId);
+        notify(listenerList);
+    }
+
+    /**
+     * Release all lights and drop all registrations, e.g. if the binding is stopped before all locations were
+     * unregistered.
+     */
+    @SuppressWarnings("unchecked")
+    public void shutdown() {
+        final List<LightEntry> lightEntryList;
+        synchronized (aggregateLock) {
+            lightEntryList = new ArrayList<>(lightMap.values());
+            lightMap.clear();
+            locationMap.clear();
+        }
+        for (final LightEntry lightEntry : lightEntryList) {
+            lightEntry.unitRemote.removeDataObserver(lightEntry.observer);
+            remotePool.observerRemoved(lightEntry.lightId);
+            remotePool.release(lightEntry.lightId);
+        }
+    }
+
+    private void updateLight(final LightEntry lightEntry) {
+        final List<Runnable> listenerList;
+        try {
+            final Message serviceState = lightEntry.unitRemote.getServiceState(ServiceType.POWER_STATE_SERVICE);
+            synchronized (aggregateLock) {
+                if (lightMap.get(lightEntry.lightId) != lightEntry) {
+                    // light has been released in the meantime
+                    return;
+                }
+                listenerList = applyState(lightEntry, ((PowerState) serviceState).getValue());
+            }
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory("Could not update aggregated light state of " + lightEntry.lightId, ex, logger);
+            return;
+        }
+        notify(listenerList);
+    }
+
+    /**
+     * Apply a new light state to the counts of the location of the light and all its registered parents.
+     * Note: needs to be called while holding the aggregate lock.
+     *
+     * @return the listeners of all locations whose aggregated state changed.
+     */
+    private List<Runnable> applyState(final LightEntry lightEntry, final PowerState.State state) {
+        final int onDelta = (state == PowerState.State.ON ? 1 : 0) - (lightEntry.state == PowerState.State.ON ? 1 : 0);
+        final int totalDelta = (isKnown(state) ? 1 : 0) - (isKnown(lightEntry.state) ? 1 : 0);
+        lightEntry.state = state;
+
+        final LocationEntry locationEntry = lightEntry.locationEntry;
+        if ((onDelta == 0 && totalDelta == 0) || locationEntry == null || locationMap.get(locationEntry.locationId) != locationEntry) {
+            return Collections.emptyList();
+        }
+        return propagate(locationEntry, onDelta, totalDelta);
+    }
+
+    /**
+     * Count a light acquired before in the location it has been attached to, if the location it was counted in
+     * has been released in the meantime.
+     * Note: needs to be called while holding the aggregate lock.
+     *
+     * @return the listeners of all locations whose aggregated state changed.
+     */
+    private List<Runnable> attachLight(final LightEntry lightEntry, final LocationEntry locationEntry) {
+        final LocationEntry countedEntry = lightEntry.locationEntry;
+        if (countedEntry != null && locationMap.get(countedEntry.locationId) == countedEntry) {
+            return Collections.emptyList();
+        }
+        lightEntry.locationEntry = locationEntry;
+        if (!isKnown(lightEntry.state)) {
+            return Collections.emptyList();
+        }
+        return propagate(locationEntry, lightEntry.state == PowerState.State.ON ? 1 : 0, 1);
+    }
+
+    /**
+     * Note: needs to be called while holding the aggregate lock.
+     */
+    private List<Runnable> propagate(final LocationEntry startEntry, final int onDelta, final int totalDelta) {
+        final List<Runnable> listenerList = new ArrayList<>();
+        @Nullable LocationEntry locationEntry = startEntry;
+        while (locationEntry != null) {
+            final PowerState previousState = getPowerState(locationEntry);
+            locationEntry.onCount += onDelta;
+            locationEntry.totalCount += totalDelta;
+            if (previousState != getPowerState(locationEntry)) {
+                listenerList.addAll(locationEntry.listenerList);
+            }
+            final String parentId = locationEntry.parentId;
+            locationEntry = parentId == null ? null : locationMap.get(parentId);
+        }
+        return listenerList;
+    }
+
+    private static boolean isKnown(final PowerState.State state) {
+        return state == PowerState.State.ON || state == PowerState.State.OFF;
+    }
+
+    private static @Nullable PowerState getPowerState(final LocationEntry locationEntry) {
+        if (locationEntry.totalCount == 0) {
+            return null;
+        }
+        return locationEntry.onCount > 0 ? POWER_STATE_ON : POWER_STATE_OFF;
+    }
+
+    private void notify(final List<Runnable> listenerList) {
+        for (final Runnable listener : listenerList) {
+            try {
+                listener.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Could not notify listener about aggregated light state change", ex);
+            }
+        }
+    }
+
+    /**
+     * Resolve a location and all its child locations together with the lights placed directly in them.
+     * The unit list of a location contains the units of its whole subtree, so it is only read once.
+     */
+    private Map<String, LocationNode> resolveLocationTree(final String locationId) throws CouldNotPerformException {
+        final UnitConfig locationConfig = registryAccess.getUnitConfigById(locationId);
+
+        final Map<String, List<String>> lightIdMap = new HashMap<>();
+        for (final String unitId : locationConfig.getLocationConfig().getUnitIdList()) {
+            final UnitConfig unitConfig = registryAccess.getUnitConfigById(unitId);
+            if (LIGHT_UNIT_TYPES.contains(unitConfig.getUnitType())) {
+                lightIdMap.computeIfAbsent(unitConfig.getPlacementConfig().getLocationId(), key -> new ArrayList<>()).add(unitId);
+            }
+        }
+
+        final Map<String, LocationNode> locationNodeMap = new HashMap<>();
+        final Deque<UnitConfig> locationConfigQueue = new ArrayDeque<>();
+        locationConfigQueue.add(locationConfig);
+        while (!locationConfigQueue.isEmpty()) {
+            final UnitConfig config = locationConfigQueue.poll();
+            final List<String> childIdList = config.getLocationConfig().getChildIdList();
+            if (locationNodeMap.putIfAbsent(config.getId(), new LocationNode(childIdList, lightIdMap.getOrDefault(config.getId(), Collections.emptyList()))) != null) {
+                continue;
+            }
+            for (final String childId : childIdList) {
+                locationConfigQueue.add(registryAccess.getUnitConfigById(childId));
+            }
+        }
+        return locationNodeMap;
+    }
+
+    private class LightEntry {
+
+        private final String lightId;
+        private final UnitRemote<?> unitRemote;
+        private final Observer observer;
+        private @Nullable LocationEntry locationEntry;
+        private PowerState.State state;
+        private int referenceCount;
+
+        private LightEntry(final String lightId, final UnitRemote<?> unitRemote, final LocationEntry locationEntry) {
+            this.lightId = lightId;
+            this.unitRemote = unitRemote;
+            this.locationEntry = locationEntry;
+            this.observer = (source, data) -> updateLight(this);
+            this.state = PowerState.State.UNKNOWN;
+            this.referenceCount = 1;
+        }
+    }
+
+    private static class LocationEntry {
+
+        private final String locationId;
+        private final List<String> childIdList;
+        private final int lightCount;
+        private final List<Runnable> listenerList = new ArrayList<>();
+        private final Set<String> lightIdSet = new HashSet<>();
+        private @Nullable String parentId;
+        private int registrationCount;
+        private int onCount;
+        private int totalCount;
+
+        private LocationEntry(final String locationId, @Nullable final String parentId, final List<String> childIdList, final int lightCount) {
+            this.locationId = locationId;
+            this.parentId = parentId;
+            this.childIdList = childIdList;
+            this.lightCount = lightCount;
+            this.registrationCount = 1;
+        }
+    }
+
+    /**
+     * A location resolved from the registry before it is registered.
+     */
+    private static class LocationNode {
+
+        private final List<String> childIdList;
+        private final List<String> lightIdList;
+
+        private LocationNode(final List<String> childIdList, final List<String> lightIdList) {
+            this.childIdList = childIdList;
+            this.lightIdList = lightIdList;
+        }
+    }
+
+    /**
+     * A light to acquire for a location after the location has been registered.
+     */
+    private static class LightAcquisition {
+
+        private final LocationEntry locationEntry;
+        private final String lightId;
+
+        private LightAcquisition(final LocationEntry locationEntry, final String lightId) {
+            this.locationEntry = locationEntry;
+            this.lightId = lightId;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link PendingCommandTracker} remembers the commands of a thing until bco confirms them with a state update.
+ * An update reporting exactly the commanded state is an echo of the command. Auto update already posted the
+ * commanded state to the item, so the handler only records the echo unless auto update is disabled for the thing.
+ * Updates still reporting the state from before the command, which is still recorded in the
+ * {@link ChannelStateStore}, are held back, so that the item does not flicker back to the old value.
+ * <p>
+ * The time from receiving a command until its confirmation is recorded per service type and per thing.
+ * Note: not thread safe, the handler calls it while holding its channel state lock.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class PendingCommandTracker {
+
+    /**
+     * How an update of a service with a pending command is handled.
+     */
+    public enum EchoResult {
+        /**
+         * No command pending, the update is published.
+         */
+        NONE,
+        /**
+         * The update reports exactly the commanded state. It is only published if auto update is disabled.
+         */
+        ECHOED,
+        /**
+         * The update confirms the command with other states than commanded and is published.
+         */
+        CONFIRMED,
+        /**
+         * The update still reports the state from before the command and is held back.
+         */
+        STALE,
+        /**
+         * The command was not confirmed in time, the update is published even if it equals the state published last.
+         */
+        EXPIRED
+    }
+
+    // in milliseconds
+    public static final long DEFAULT_ECHO_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final String thingId;
+    private final BCOMetricRegistry metricRegistry;
+    private final ChannelStateStore channelStateStore;
+    // in nanoseconds
+    private final long echoTimeout;
+    private final Map<ServiceType, PendingCommand> pendingCommandMap;
+
+    /**
+     * @param thingId           the thing whose commands are tracked.
+     * @param echoTimeout       the time in milliseconds after which a command is considered unconfirmed.
+     * @param metricRegistry    the registry the round trip latencies are recorded in.
+     * @param channelStateStore the store containing the states published for the channels of the thing.
+     */
+    public PendingCommandTracker(final String thingId, final long echoTimeout, final BCOMetricRegistry metricRegistry, final ChannelStateStore channelStateStore) {
+        this.thingId = thingId;
+        this.echoTimeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, echoTimeout));
+        this.metricRegistry = metricRegistry;
+        this.channelStateStore = channelStateStore;
+        this.pendingCommandMap = new EnumMap<>(ServiceType.class);
+    }
+
+    /**
+     * Remember a command until it is confirmed. A pending command of the same service is superseded.
+     *
+     * @param serviceType    the service targeted by the command.
+     * @param commandedState the state the channel is expected to report once the command is applied.
+     */
+    public void commandIssued(final ServiceType serviceType, final State commandedState) {
+        pendingCommandMap.put(serviceType, new PendingCommand(commandedState, System.nanoTime()));
+    }
+
+    /**
+     * Forget the pending command of a service, e.g. because bco rejected it.
+     *
+     * @param serviceType the service targeted by the command.
+     */
+    public void commandFailed(final ServiceType serviceType) {
+        pendingCommandMap.remove(serviceType);
+    }
+
+    /**
+     * Compare an update of a service with its pending command. The command is finished unless the update is stale.
+     *
+     * @param serviceType the service whose state changed.
+     * @param slot        the slot of the service in the state store.
+     * @param stateList   the channel states of the new service state.
+     * @return how the update is handled.
+     */
+    public EchoResult match(final ServiceType serviceType, final int slot, final List<State> stateList) {
+        final @Nullable PendingCommand pendingCommand = pendingCommandMap.get(serviceType);
+        if (pendingCommand == null) {
+            return EchoResult.NONE;
+        }
+
+        if (stateList.size() == 1 && stateList.get(0).equals(pendingCommand.commandedState)) {
+            confirm(serviceType, pendingCommand);
+            return EchoResult.ECHOED;
+        }
+
+        if (stateList.contains(pendingCommand.commandedState)) {
+            confirm(serviceType, pendingCommand);
+            return EchoResult.CONFIRMED;
+        }
+
+        if (System.nanoTime() - pendingCommand.issueTime >= echoTimeout) {
+            pendingCommandMap.remove(serviceType);
+            return EchoResult.EXPIRED;
+        }
+
+        // nothing is published for the service until the command is finished, so the store still contains the
+        // states from before the command
+        if (channelStateStore.equalsStates(slot, stateList)) {
+            return EchoResult.STALE;
+        }
+
+        // changed to another state than commanded, e.g. because bco limited the value
+        confirm(serviceType, pendingCommand);
+        return EchoResult.CONFIRMED;
+    }
+
+    private void confirm(final ServiceType serviceType, final PendingCommand pendingCommand) {
+        pendingCommandMap.remove(serviceType);
+        metricRegistry.getCommandRoundTripHistogram(serviceType).recordSince(pendingCommand.issueTime);
+        metricRegistry.getCommandRoundTripHistogram(thingId).recordSince(pendingCommand.issueTime);
+    }
+
+    /**
+     * @param serviceType the service targeted by a command.
+     * @return true if a command of the service waits for its confirmation.
+     */
+    public boolean isPending(final ServiceType serviceType) {
+        return pendingCommandMap.containsKey(serviceType);
+    }
+
+    /**
+     * @param serviceType the service targeted by a command.
+     * @return the time in milliseconds until the pending command of the service expires, 0 if none is pending.
+     */
+    public long getRemainingTime(final ServiceType serviceType) {
+        final @Nullable PendingCommand pendingCommand = pendingCommandMap.get(serviceType);
+        if (pendingCommand == null) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(echoTimeout - (System.nanoTime() - pendingCommand.issueTime)));
+    }
+
+    /**
+     * Forget all pending commands, e.g. because the connection to the unit was lost.
+     */
+    public void clear() {
+        pendingCommandMap.clear();
+    }
+
+    private static class PendingCommand {
+
+        private final State commandedState;
+        private final long issueTime;
+
+        private PendingCommand(final State commandedState, final long issueTime) {
+            this.commandedState = commandedState;
+            this.issueTime = issueTime;
+        }
+    }
+}
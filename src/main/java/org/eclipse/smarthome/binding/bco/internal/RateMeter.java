@@ -0,0 +1,99 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link RateMeter} counts events in one second buckets and reports the mean rate of the last minute.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class RateMeter {
+
+    // in seconds
+    private static final int WINDOW = 60;
+    private static final int COUNT_BITS = 32;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    /**
+     * Each bucket packs the second it belongs to into the upper and its count into the lower bits, so that
+     * resetting a bucket for a new second and counting in it is a single compare and set.
+     */
+    private final AtomicLongArray bucketArray;
+    private final AtomicLong totalCount;
+
+    public RateMeter() {
+        this.bucketArray = new AtomicLongArray(WINDOW);
+        this.totalCount = new AtomicLong();
+    }
+
+    /**
+     * Count one event.
+     */
+    public void mark() {
+        final long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        final int bucket = (int) (second % WINDOW);
+        while (true) {
+            final long current = bucketArray.get(bucket);
+            final long next;
+            if ((current >>> COUNT_BITS) == second) {
+                next = current + 1;
+            } else {
+                // bucket belongs to an older second, so start counting again
+                next = (second << COUNT_BITS) | 1;
+            }
+            if (bucketArray.compareAndSet(bucket, current, next)) {
+                break;
+            }
+        }
+        totalCount.incrementAndGet();
+    }
+
+    /**
+     * @return the mean number of events per second during the last minute.
+     */
+    public double getRate() {
+        final long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long count = 0;
+        for (int i = 0; i < WINDOW; i++) {
+            final long current = bucketArray.get(i);
+            if (second - (current >>> COUNT_BITS) < WINDOW) {
+                count += current & COUNT_MASK;
+            }
+        }
+        return count / (double) WINDOW;
+    }
+
+    /**
+     * @return the number of events counted since the meter was created.
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+}
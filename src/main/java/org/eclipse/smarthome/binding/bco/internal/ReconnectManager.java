@@ -0,0 +1,166 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.smarthome.core.common.NamedThreadFactory;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ReconnectManager} resynchronizes the channels of things after the connection to their units was
+ * established again. If the middleware was unavailable many units reconnect at the same time, so reconnects
+ * arriving within a short window are grouped, spread randomly over a jitter window and resynchronized by a
+ * bounded number of threads.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class ReconnectManager {
+
+    // in milliseconds
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Logger logger = LoggerFactory.getLogger(ReconnectManager.class);
+
+    private final long groupingWindow;
+    private final long maxJitter;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor resyncExecutor;
+    private final BCOMetricRegistry metricRegistry;
+
+    private final SyncObject pendingResyncLock = new SyncObject("PendingResyncLock");
+    private final Map<String, Runnable> pendingResyncMap;
+    private boolean flushScheduled;
+
+    /**
+     * @param groupingWindow       the time in milliseconds reconnects are collected before their resync is scheduled.
+     * @param maxJitter            the maximal time in milliseconds the resync of a grouped reconnect is delayed.
+     * @param maxConcurrentResyncs the maximal number of things resynchronized at the same time.
+     * @param scheduler            the scheduler used to delay the resyncs.
+     * @param metricRegistry       the registry the reconnect statistics are recorded in.
+     */
+    public ReconnectManager(final long groupingWindow, final long maxJitter, final int maxConcurrentResyncs, final ScheduledExecutorService scheduler, final BCOMetricRegistry metricRegistry) {
+        final int poolSize = Math.max(1, maxConcurrentResyncs);
+        this.groupingWindow = Math.max(0, groupingWindow);
+        this.maxJitter = Math.max(0, maxJitter);
+        this.scheduler = scheduler;
+        this.resyncExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(BCOBindingConstants.RESYNC_THREAD_NAME));
+        this.resyncExecutor.allowCoreThreadTimeOut(true);
+        this.metricRegistry = metricRegistry;
+        this.pendingResyncMap = new LinkedHashMap<>();
+    }
+
+    /**
+     * Notify that the connection to the unit of a thing was lost.
+     *
+     * @param thingId the id of the thing.
+     */
+    public void disconnected(final String thingId) {
+        metricRegistry.getReconnectStatistics(thingId).disconnected();
+        logger.debug("Connection of {} lost", thingId);
+    }
+
+    /**
+     * Notify that the connection to the unit of a thing was established again and queue its resync.
+     *
+     * @param thingId the id of the thing.
+     * @param resync  the task resynchronizing the channels of the thing.
+     */
+    public void reconnected(final String thingId, final Runnable resync) {
+        metricRegistry.getReconnectStatistics(thingId).reconnected();
+        synchronized (pendingResyncLock) {
+            pendingResyncMap.put(thingId, resync);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, groupingWindow, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Drop a queued resync, e.g. because the thing has been disposed.
+     *
+     * @param thingId the id of the thing.
+     */
+    public void cancel(final String thingId) {
+        synchronized (pendingResyncLock) {
+            pendingResyncMap.remove(thingId);
+        }
+    }
+
+    /**
+     * Drop all queued resyncs and stop the resync threads.
+     *
+     * @throws InterruptedException is thrown if the thread was externally interrupted while waiting for the threads.
+     */
+    public void shutdown() throws InterruptedException {
+        synchronized (pendingResyncLock) {
+            pendingResyncMap.clear();
+        }
+        resyncExecutor.shutdownNow();
+        if (!resyncExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            logger.warn("Resync threads did not stop within {}ms", SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    private void flush() {
+        final List<Runnable> resyncList;
+        synchronized (pendingResyncLock) {
+            flushScheduled = false;
+            resyncList = new ArrayList<>(pendingResyncMap.values());
+            pendingResyncMap.clear();
+        }
+
+        if (resyncList.isEmpty()) {
+            return;
+        }
+
+        if (resyncList.size() == 1) {
+            // a single reconnect does not contend with others, so resync it immediately
+            resyncExecutor.execute(resyncList.get(0));
+            return;
+        }
+
+        logger.info("Resync {} things after reconnect within {}ms", resyncList.size(), maxJitter);
+        for (final Runnable resync : resyncList) {
+            final long delay = maxJitter == 0 ? 0 : ThreadLocalRandom.current().nextLong(maxJitter + 1);
+            scheduler.schedule(() -> {
+                if (!resyncExecutor.isShutdown()) {
+                    resyncExecutor.execute(resync);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.jul.schedule.SyncObject;
+
+/**
+ * The {@link ReconnectStatistics} count how often the connection to a unit was lost and for how long.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class ReconnectStatistics {
+
+    private final SyncObject statisticsLock = new SyncObject("ReconnectStatisticsLock");
+
+    private long reconnectCount;
+    // in milliseconds
+    private long downtime;
+    // in milliseconds, negative while connected
+    private long disconnectedSince = -1;
+
+    /**
+     * Mark the connection as lost. Further calls until the next reconnect are ignored.
+     */
+    public void disconnected() {
+        synchronized (statisticsLock) {
+            if (disconnectedSince < 0) {
+                disconnectedSince = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Mark the connection as established again and add the time since it was lost to the downtime.
+     */
+    public void reconnected() {
+        synchronized (statisticsLock) {
+            if (disconnectedSince >= 0) {
+                downtime += System.currentTimeMillis() - disconnectedSince;
+                disconnectedSince = -1;
+            }
+            reconnectCount++;
+        }
+    }
+
+    /**
+     * @return the number of times the connection was established again after it was lost.
+     */
+    public long getReconnectCount() {
+        synchronized (statisticsLock) {
+            return reconnectCount;
+        }
+    }
+
+    /**
+     * @return the total time in milliseconds the connection was lost, including a current outage.
+     */
+    public long getDowntime() {
+        synchronized (statisticsLock) {
+            if (disconnectedSince >= 0) {
+                return downtime + System.currentTimeMillis() - disconnectedSince;
+            }
+            return downtime;
+        }
+    }
+
+    /**
+     * @return if the connection is currently lost.
+     */
+    public boolean isDisconnected() {
+        synchronized (statisticsLock) {
+            return disconnectedSince >= 0;
+        }
+    }
+}
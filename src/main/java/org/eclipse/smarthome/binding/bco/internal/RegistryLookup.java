@@ -0,0 +1,44 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+/**
+ * Resolves a registry entry by its id. Used to decouple the binding logic from the global registries.
+ *
+ * @param <M> the type of the registry entry.
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+@FunctionalInterface
+public interface RegistryLookup<M> {
+
+    /**
+     * @param id the id of the entry.
+     * @return the entry with the given id.
+     * @throws CouldNotPerformException is thrown if no entry with the given id is available.
+     */
+    M getById(final String id) throws CouldNotPerformException;
+}
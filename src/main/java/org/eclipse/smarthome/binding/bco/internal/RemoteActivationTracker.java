@@ -0,0 +1,124 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link RemoteActivationTracker} decides if things acquire their unit remote only while at least one of their
+ * channels is linked and keeps track of which things are active and which are dormant.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class RemoteActivationTracker {
+
+    public static final String ACTIVE_REMOTES = "remotes.active";
+    public static final String DORMANT_REMOTES = "remotes.dormant";
+
+    private final boolean lazyActivation;
+    private final long idleTimeout;
+    private final BCOMetricRegistry metricRegistry;
+    private final Map<String, Boolean> activeMap;
+
+    /**
+     * @param lazyActivation if true remotes are only active while a channel of the thing is linked.
+     * @param idleTimeout    the time in milliseconds a remote stays active after the last link was removed.
+     * @param metricRegistry the registry the number of active and dormant remotes is reported to.
+     */
+    public RemoteActivationTracker(final boolean lazyActivation, final long idleTimeout, final BCOMetricRegistry metricRegistry) {
+        this.lazyActivation = lazyActivation;
+        this.idleTimeout = Math.max(0, idleTimeout);
+        this.metricRegistry = metricRegistry;
+        this.activeMap = new ConcurrentHashMap<>();
+        metricRegistry.registerGauge(ACTIVE_REMOTES, this::getActiveCount);
+        metricRegistry.registerGauge(DORMANT_REMOTES, this::getDormantCount);
+    }
+
+    /**
+     * @return if remotes are only active while a channel of the thing is linked.
+     */
+    public boolean isLazyActivation() {
+        return lazyActivation;
+    }
+
+    /**
+     * @return the time in milliseconds a remote stays active after the last link was removed.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param thingId the thing which acquired its remote.
+     */
+    public void activated(final String thingId) {
+        activeMap.put(thingId, true);
+    }
+
+    /**
+     * @param thingId the thing which released its remote or did not acquire it.
+     */
+    public void deactivated(final String thingId) {
+        activeMap.put(thingId, false);
+    }
+
+    /**
+     * @param thingId the thing which was disposed.
+     */
+    public void remove(final String thingId) {
+        activeMap.remove(thingId);
+    }
+
+    /**
+     * @return the number of things holding their remote.
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (final boolean active : activeMap.values()) {
+            if (active) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of things without remote because none of their channels is linked.
+     */
+    public int getDormantCount() {
+        return activeMap.size() - getActiveCount();
+    }
+
+    /**
+     * Stop reporting to the metric registry.
+     */
+    public void shutdown() {
+        metricRegistry.unregisterGauge(ACTIVE_REMOTES);
+        metricRegistry.unregisterGauge(DORMANT_REMOTES);
+        activeMap.clear();
+    }
+}
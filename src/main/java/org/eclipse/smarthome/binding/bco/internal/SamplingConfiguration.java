@@ -0,0 +1,129 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The {@link SamplingConfiguration} defines which services are sampled instead of publishing every update,
+ * e.g. if bco is only mirrored into openHAB for dashboards and persistence.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class SamplingConfiguration {
+
+    /**
+     * Configuration which does not sample any service.
+     */
+    public static final SamplingConfiguration DISABLED = new SamplingConfiguration(Collections.emptySet(), 0, 0);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SamplingConfiguration.class);
+
+    private final Set<ServiceType> serviceTypes;
+    private final long interval;
+    private final double deadband;
+
+    /**
+     * @param serviceTypes the service types to sample.
+     * @param interval     the minimal time in milliseconds between two updates of a sampled service.
+     * @param deadband     the minimal change of a sampled value which is published immediately, 0 to disable.
+     */
+    public SamplingConfiguration(final Set<ServiceType> serviceTypes, final long interval, final double deadband) {
+        this.serviceTypes = serviceTypes.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(serviceTypes));
+        this.interval = Math.max(0, interval);
+        this.deadband = Math.max(0, deadband);
+    }
+
+    /**
+     * Read a configuration. Values which are not configured are taken from the defaults.
+     *
+     * @param lookup   provides the configured value of a parameter or null if it is not configured.
+     * @param defaults the configuration providing the defaults.
+     * @return the configuration read.
+     */
+    public static SamplingConfiguration read(final Function<String, @Nullable Object> lookup, final SamplingConfiguration defaults) {
+        final Object serviceTypes = lookup.apply(BCOBindingConstants.CONFIG_SAMPLING_SERVICE_TYPES);
+        final Object interval = lookup.apply(BCOBindingConstants.CONFIG_SAMPLING_INTERVAL);
+        final Object deadband = lookup.apply(BCOBindingConstants.CONFIG_SAMPLING_DEADBAND);
+        return new SamplingConfiguration(
+                serviceTypes instanceof String ? parseServiceTypes((String) serviceTypes) : defaults.serviceTypes,
+                interval != null ? parseNumber(interval, defaults.interval).longValue() : defaults.interval,
+                deadband != null ? parseNumber(deadband, defaults.deadband).doubleValue() : defaults.deadband);
+    }
+
+    private static Set<ServiceType> parseServiceTypes(final String value) {
+        final Set<ServiceType> serviceTypes = EnumSet.noneOf(ServiceType.class);
+        for (final String serviceTypeName : value.split(",")) {
+            if (serviceTypeName.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                serviceTypes.add(ServiceType.valueOf(serviceTypeName.trim().toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("Ignore unknown service type {}", serviceTypeName);
+            }
+        }
+        return serviceTypes;
+    }
+
+    private static Number parseNumber(final Object value, final Number defaultValue) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("Ignore invalid sampling value {}", value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return if at least one service type is sampled.
+     */
+    public boolean isEnabled() {
+        return !serviceTypes.isEmpty() && (interval > 0 || deadband > 0);
+    }
+
+    public Set<ServiceType> getServiceTypes() {
+        return serviceTypes;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public double getDeadband() {
+        return deadband;
+    }
+}
@@ -0,0 +1,133 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.openbase.bco.device.openhab.manager.transform.ServiceStateCommandTransformer;
+import org.openbase.bco.device.openhab.manager.transform.ServiceStateCommandTransformerPool;
+import org.openbase.bco.device.openhab.manager.transform.ServiceTypeCommandMapping;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link TransformerCache} resolves the transformers between service states and openHAB types once per
+ * service type and command class. Unsupported combinations are cached as well, so they are only reported once
+ * instead of on every update.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class TransformerCache {
+
+    private static final TransformerCache INSTANCE = new TransformerCache();
+
+    private final Logger logger = LoggerFactory.getLogger(TransformerCache.class);
+
+    private final Map<ServiceType, List<ServiceStateCommandTransformer<Message, Command>>> stateTransformerMap;
+    private final Map<ServiceType, Map<Class<? extends Command>, Optional<ServiceStateCommandTransformer<Message, Command>>>> commandTransformerMap;
+
+    private TransformerCache() {
+        this.stateTransformerMap = new ConcurrentHashMap<>();
+        this.commandTransformerMap = new ConcurrentHashMap<>();
+    }
+
+    public static TransformerCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get all transformers which convert the state of a service into openHAB states.
+     * Command classes which are not states, e.g. the StopMoveType, are already filtered.
+     *
+     * @param serviceType       the service type of the state.
+     * @param serviceStateClass the class of the service state.
+     * @return an immutable list of transformers which is empty if the service cannot be represented in openHAB.
+     */
+    public List<ServiceStateCommandTransformer<Message, Command>> getStateTransformers(final ServiceType serviceType, final Class<? extends Message> serviceStateClass) {
+        return stateTransformerMap.computeIfAbsent(serviceType, key -> resolveStateTransformers(key, serviceStateClass));
+    }
+
+    /**
+     * Get the transformer which converts a command into the state of a service.
+     *
+     * @param serviceType  the service type the command is targeting.
+     * @param commandClass the class of the command.
+     * @return the transformer or null if the combination is not supported.
+     */
+    public @Nullable ServiceStateCommandTransformer<Message, Command> getCommandTransformer(final ServiceType serviceType, final Class<? extends Command> commandClass) {
+        return commandTransformerMap
+                .computeIfAbsent(serviceType, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(commandClass, key -> resolveCommandTransformer(serviceType, key))
+                .orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ServiceStateCommandTransformer<Message, Command>> resolveStateTransformers(final ServiceType serviceType, final Class<? extends Message> serviceStateClass) {
+        final Set<Class<? extends Command>> commandClasses;
+        try {
+            commandClasses = ServiceTypeCommandMapping.getCommandClasses(serviceType);
+        } catch (NotAvailableException ex) {
+            logger.warn("Skip channel updates for service {} because no command classes are available", serviceType.name());
+            return Collections.emptyList();
+        }
+
+        final List<ServiceStateCommandTransformer<Message, Command>> transformerList = new ArrayList<>(commandClasses.size());
+        for (final Class<? extends Command> commandClass : commandClasses) {
+            if (!State.class.isAssignableFrom(commandClass)) {
+                // command is not a state, is the case e.g. for StopMoveType, just ignore these values
+                continue;
+            }
+
+            try {
+                transformerList.add((ServiceStateCommandTransformer<Message, Command>) ServiceStateCommandTransformerPool.getInstance().getTransformer(serviceStateClass, commandClass));
+            } catch (CouldNotPerformException ex) {
+                logger.warn("Skip transformation of {} to command {}", serviceStateClass.getSimpleName(), commandClass.getSimpleName());
+            }
+        }
+        return Collections.unmodifiableList(transformerList);
+    }
+
+    private Optional<ServiceStateCommandTransformer<Message, Command>> resolveCommandTransformer(final ServiceType serviceType, final Class<? extends Command> commandClass) {
+        try {
+            return Optional.of(ServiceStateCommandTransformerPool.getInstance().getTransformer(serviceType, commandClass));
+        } catch (CouldNotPerformException ex) {
+            logger.warn("Transformer from service {} to command {} is not available", serviceType.name(), commandClass.getSimpleName());
+            return Optional.empty();
+        }
+    }
+}
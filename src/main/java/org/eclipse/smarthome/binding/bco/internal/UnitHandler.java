@@ -24,12 +24,17 @@ package org.eclipse.smarthome.binding.bco.internal;
 
 import com.google.protobuf.Message;
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Channel;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.eclipse.smarthome.core.thing.ThingStatusInfo;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
+import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.eclipse.smarthome.core.thing.binding.builder.ChannelBuilder;
 import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
 import org.eclipse.smarthome.core.types.Command;
@@ -38,33 +43,44 @@ import org.eclipse.smarthome.core.types.State;
 import org.openbase.bco.dal.lib.action.ActionDescriptionProcessor;
 import org.openbase.bco.dal.lib.layer.service.Services;
 import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
-import org.openbase.bco.dal.remote.layer.unit.Units;
 import org.openbase.bco.dal.remote.layer.unit.location.LocationRemote;
 import org.openbase.bco.device.openhab.manager.transform.PowerStateOnOffTypeTransformer;
 import org.openbase.bco.device.openhab.manager.transform.ServiceStateCommandTransformer;
 import org.openbase.bco.device.openhab.manager.transform.ServiceStateCommandTransformerPool;
-import org.openbase.bco.device.openhab.manager.transform.ServiceTypeCommandMapping;
 import org.openbase.bco.device.openhab.registry.synchronizer.OpenHABItemProcessor;
-import org.openbase.bco.registry.remote.Registries;
 import org.openbase.jul.exception.CouldNotPerformException;
-import org.openbase.jul.exception.CouldNotTransformException;
 import org.openbase.jul.exception.NotAvailableException;
-import org.openbase.jul.exception.TypeNotSupportedException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.extension.type.processing.LabelProcessor;
 import org.openbase.jul.pattern.Observer;
 import org.openbase.jul.pattern.controller.Remote;
+import org.openbase.jul.schedule.SyncObject;
 import org.openbase.type.domotic.action.ActionParameterType.ActionParameter;
 import org.openbase.type.domotic.action.ActionPriorityType.ActionPriority.Priority;
+import org.openbase.type.domotic.service.ServiceConfigType.ServiceConfig;
 import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
 import org.openbase.type.domotic.state.ConnectionStateType.ConnectionState;
+import org.openbase.type.domotic.state.PowerStateType.PowerState;
 import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
 import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The {@link UnitHandler} is responsible for handling commands, which are
@@ -75,29 +91,143 @@ import java.util.concurrent.TimeUnit;
 @NonNullByDefault
 public class UnitHandler extends BaseThingHandler {
 
+    // in milliseconds
+    private static final long RESYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private static final String DORMANT_DESCRIPTION = "Dormant until a channel is linked";
+
     private final Logger logger = LoggerFactory.getLogger(UnitHandler.class);
 
     private final Observer<Remote<?>, ConnectionState.State> connectionStateObserver;
     private final Observer unitDataObserver, unitConfigObserver;
+    private final Runnable registryConfigListener;
+
+    /**
+     * The registry index of the bridge config changes are received from. If null, the config of the remote is
+     * observed instead. Written while holding the initialization lock.
+     */
+    private volatile @Nullable UnitRegistryIndex subscribedRegistryIndex;
+
+    /**
+     * Guards the channel states of the thing in the {@link ChannelStateStore}, which makes the handler their single
+     * writer, as well as the sampler and the pending commands.
+     */
+    private final SyncObject channelStateLock = new SyncObject("ChannelStateLock");
+
+    private final LongAdder emittedUpdateCounter;
+    private final LongAdder suppressedUpdateCounter;
+    private final LongAdder heldBackUpdateCounter;
+
+    /**
+     * Commands waiting for their confirmation by bco. Guarded by the channel state lock.
+     */
+    private final PendingCommandTracker pendingCommandTracker;
+    private @Nullable ScheduledFuture<?> echoTimeoutFuture;
+
+    /**
+     * Data updates are coalesced so that channels are updated at most once per update interval.
+     * The flag is reset before the latest data is read, so the last value is always delivered.
+     */
+    private final AtomicBoolean channelUpdateScheduled = new AtomicBoolean();
+    private final LongAdder coalescedUpdateCounter;
+    private final long defaultUpdateInterval;
+    private final BCOConnector connector;
+    private final ReconnectManager reconnectManager;
+    private final UnitRemotePool remotePool;
+    private final BCOExecutor executor;
+    private final CommandBatcher commandBatcher;
+    private final UnitInitializer unitInitializer;
+    private final LocationAggregateCache locationAggregateCache;
+    private final BCOMetricRegistry metricRegistry;
+    private final RateMeter stateUpdateRate;
+    private final LatencyHistogram observerQueueHistogram;
+
+    /**
+     * Registered at the location aggregate cache if this thing represents a location providing the light power channel.
+     */
+    private final Runnable lightAggregateListener = this::scheduleChannelUpdate;
+    private boolean lightAggregateRegistered;
+    private long updateInterval;
+    // if auto update posts commanded states to the items, in which case the echo of a command is not published
+    private volatile boolean autoUpdate = BCOBindingConstants.DEFAULT_AUTO_UPDATE;
+    private volatile long lastChannelUpdateTime;
+    // time the first data change coalesced into the scheduled update arrived, measured by System.nanoTime()
+    private volatile long channelUpdateRequestTime;
+    private @Nullable ScheduledFuture<?> channelUpdateFuture;
+
+    /**
+     * Set while the connection to the unit is lost. The channels are resynchronized by the {@link ReconnectManager}
+     * once the unit is connected again.
+     */
+    private volatile boolean channelsStale;
+
+    /**
+     * Decides which updates of sampled services are published. Replaced on initialization because the sampling
+     * can be configured per thing.
+     */
+    private ChannelSampler channelSampler = new ChannelSampler(SamplingConfiguration.DISABLED);
+    private @Nullable ScheduledFuture<?> samplingUpdateFuture;
+    private final SamplingConfiguration defaultSamplingConfiguration;
+    private final BCOSnapshotStore snapshotStore;
+    private final BCORegistryAccess registryAccess;
+    private final RemoteActivationTracker activationTracker;
+    private final ChannelStateStore channelStateStore;
+
+    /**
+     * The remote is acquired in the background. The generation is increased on dispose so that an initialization
+     * finishing after the thing has been disposed does not register its observers.
+     */
+    private final SyncObject initializationLock = new SyncObject("InitializationLock");
+    private long initializationGeneration;
+    private UnitInitializer.@Nullable InitializationTask initializationTask;
+    private volatile boolean remoteAcquired;
+
+    /**
+     * Set from the request to acquire the remote until the remote is released. With lazy activation the remote is
+     * only requested while a channel is linked and released after the idle timeout once the last link is removed.
+     */
+    private boolean activationRequested;
+    private @Nullable ScheduledFuture<?> idleReleaseFuture;
+
+    private @Nullable ThingFingerprint lastThingFingerprint;
 
     private UnitRemote<?> unitRemote;
 
-    public UnitHandler(Thing thing) {
+    /**
+     * @param thing   the thing handled.
+     * @param context the components shared by all handlers of the binding.
+     */
+    public UnitHandler(Thing thing, final BCOBindingContext context) {
         super(thing);
+        this.defaultUpdateInterval = context.getDefaultUpdateInterval();
+        this.connector = context.getConnector();
+        this.reconnectManager = context.getReconnectManager();
+        this.remotePool = context.getRemotePool();
+        this.executor = context.getExecutor();
+        this.defaultSamplingConfiguration = context.getDefaultSamplingConfiguration();
+        this.snapshotStore = context.getSnapshotStore();
+        this.registryAccess = context.getRegistryAccess();
+        this.activationTracker = context.getActivationTracker();
+        this.channelStateStore = context.getChannelStateStore();
+        this.commandBatcher = context.getCommandBatcher();
+        this.unitInitializer = context.getUnitInitializer();
+        this.locationAggregateCache = context.getLocationAggregateCache();
+        this.metricRegistry = context.getMetricRegistry();
+        this.stateUpdateRate = metricRegistry.getStateUpdateRate(thing.getUID().getId());
+        this.emittedUpdateCounter = metricRegistry.getCounter(BCOMetricRegistry.CHANNEL_UPDATES_EMITTED);
+        this.suppressedUpdateCounter = metricRegistry.getCounter(BCOMetricRegistry.CHANNEL_UPDATES_SUPPRESSED);
+        this.coalescedUpdateCounter = metricRegistry.getCounter(BCOMetricRegistry.CHANNEL_UPDATES_COALESCED);
+        this.heldBackUpdateCounter = metricRegistry.getCounter(BCOMetricRegistry.CHANNEL_UPDATES_HELD_BACK);
+        this.observerQueueHistogram = metricRegistry.getHistogram(BCOMetricRegistry.OBSERVER_QUEUE_TIME);
+        this.pendingCommandTracker = new PendingCommandTracker(thing.getUID().getId(), PendingCommandTracker.DEFAULT_ECHO_TIMEOUT, metricRegistry, channelStateStore);
+        this.updateInterval = defaultUpdateInterval;
         logger.debug("Create unit handler for thing {}", thing.getUID().toString());
-        connectionStateObserver = (observable, connectionState) -> {
-            logger.debug("Unit {} switched to connection state {}", unitRemote.getLabel(), connectionState.name());
-            switch (connectionState) {
-                case CONNECTED:
-                    updateStatus(ThingStatus.ONLINE);
-                    break;
-                default:
-                    updateStatus(ThingStatus.OFFLINE);
-                    break;
-            }
-        };
-        unitConfigObserver = (source, config) -> updateThingConfig();
-        unitDataObserver = (source, data) -> updateChannels();
+        // connection changes, config changes and channel updates of a thing are processed one after another on
+        // the binding executor, connection changes before channel updates and channel updates before config changes
+        connectionStateObserver = (observable, connectionState) -> executor.execute(getThing().getUID().getId(), ExecutionLane.CONNECTION, () -> updateConnectionState(connectionState));
+        unitConfigObserver = (source, config) -> scheduleThingConfigUpdate();
+        registryConfigListener = this::scheduleThingConfigUpdate;
+        unitDataObserver = (source, data) -> scheduleChannelUpdate();
     }
 
     @Override
@@ -105,128 +235,810 @@ public class UnitHandler extends BaseThingHandler {
         logger.debug("Receive command {} for channel {} of unit {}", command.getClass().getSimpleName(), channelUID.getId(), getThing().getUID().getId());
 
         if (command instanceof RefreshType) {
-            //type is not supported
+            // republish the last known state, e.g. if an item was linked after the state has been published
+            republishChannel(channelUID.getId());
             return;
         }
 
+        if (unitRemote == null || !remoteAcquired) {
+            logger.warn("Skip command for channel {} because the unit remote is not yet initialized", channelUID.getId());
+            return;
+        }
+
+        if (channelUID.getId().equalsIgnoreCase(BCOBindingConstants.CHANNEL_POWER_LIGHT)) {
+            handleLightPowerCommand(channelUID, command);
+            return;
+        }
+
+        final ServiceType serviceType;
         try {
-            final ServiceType serviceType = getServiceType(channelUID);
-            final ServiceStateCommandTransformer<Message, Command> transformer;
-            try {
-                transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(serviceType, command.getClass());
-            } catch (CouldNotPerformException e) {
-                logger.error("Transformer from service {} to command {} is not available", serviceType.name(), command.getClass().getSimpleName());
-                return;
+            serviceType = ChannelServiceIndex.getServiceType(channelUID.getId());
+        } catch (NotAvailableException ex) {
+            logger.error("Receive command for unknown channel {}", channelUID.getId());
+            return;
+        }
+
+        final ServiceStateCommandTransformer<Message, Command> transformer = TransformerCache.getInstance().getCommandTransformer(serviceType, command.getClass());
+        if (transformer == null) {
+            logger.debug("Ignore command {} for channel {} because it cannot be transformed", command.getClass().getSimpleName(), channelUID.getId());
+            return;
+        }
+
+        final ActionParameter.Builder actionParameter;
+        try {
+            actionParameter = createActionParameter(transformer.transform(command), serviceType, unitRemote);
+        } catch (CouldNotPerformException ex) {
+            logger.warn("Could not update channel {} to value {}", channelUID, command, ex);
+            scheduler.execute(() -> resetChannel(channelUID, serviceType, transformer));
+            return;
+        }
+
+        // updates still reporting the state from before the command are held back until bco confirms it
+        if (command instanceof State) {
+            synchronized (channelStateLock) {
+                pendingCommandTracker.commandIssued(serviceType, (State) command);
             }
+        }
 
-            try {
-                final ActionParameter.Builder actionParameter = ActionDescriptionProcessor.generateDefaultActionParameter(transformer.transform(command), serviceType, unitRemote);
-                actionParameter.setExecutionTimePeriod(TimeUnit.MINUTES.toMicros(30));
-                actionParameter.setInterruptible(true);
-                actionParameter.setSchedulable(true);
-                actionParameter.setAutoContinueWithLowPriority(true);
-                actionParameter.setPriority(Priority.HIGH);
-                unitRemote.applyAction(actionParameter);
-            } catch (CouldNotPerformException ex) {
-                logger.warn("Could not update channel {} to value {}", channelUID, command, ex);
-                try {
-                    updateState(channelUID.getId(), (State) transformer.transform(Services.invokeProviderServiceMethod(serviceType, unitRemote)));
-                } catch (CouldNotPerformException exx) {
-                    logger.warn("Could not reset channel", exx);
-                } catch (ClassCastException exxx) {
-                    // command is not a state, is the case e.g. for StopMoveType, just ignore these values
-                }
+        // the command is dispatched asynchronously, failures reset the channel on the thread completing the action
+        commandBatcher.submit(new BatchedCommand(channelUID, serviceType, unitRemote, actionParameter, ex -> {
+            logger.warn("Could not update channel {} to value {}", channelUID, command, ex);
+            synchronized (channelStateLock) {
+                pendingCommandTracker.commandFailed(serviceType);
             }
-        } catch (IllegalArgumentException ex) {
-            try {
-                if (channelUID.getId().equalsIgnoreCase(BCOBindingConstants.CHANNEL_POWER_LIGHT)) {
-                    PowerStateOnOffTypeTransformer transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(PowerStateOnOffTypeTransformer.class);
+            resetChannel(channelUID, serviceType, transformer);
+        }));
+    }
 
-                    // todo setup execution time
-                    ((LocationRemote) unitRemote).setPowerState(transformer.transform((OnOffType) command), UnitType.LIGHT);
-                } else {
-                    logger.error("Receive command for unknown channel {}", channelUID.getId());
-                }
-            } catch (CouldNotPerformException exx) {
-                logger.warn("Could not update channel {} to value {}", channelUID, command, ex);
+    /**
+     * Reset a channel to the current state of the unit, e.g. after a command could not be applied.
+     */
+    private void resetChannel(final ChannelUID channelUID, final ServiceType serviceType, final ServiceStateCommandTransformer<Message, Command> transformer) {
+        try {
+            updateState(channelUID.getId(), (State) transformer.transform(Services.invokeProviderServiceMethod(serviceType, unitRemote)));
+        } catch (CouldNotPerformException ex) {
+            logger.warn("Could not reset channel", ex);
+        } catch (ClassCastException ex) {
+            // command is not a state, is the case e.g. for StopMoveType, just ignore these values
+        }
+    }
+
+    private void handleLightPowerCommand(final ChannelUID channelUID, final Command command) {
+        if (!(command instanceof OnOffType)) {
+            logger.debug("Ignore command {} for channel {} because it cannot be transformed", command.getClass().getSimpleName(), channelUID.getId());
+            return;
+        }
+
+        try {
+            PowerStateOnOffTypeTransformer transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(PowerStateOnOffTypeTransformer.class);
+            final PowerState powerState = transformer.transform((OnOffType) command);
+
+            // skip the action if the aggregate cache knows that every light is already in the target state
+            if (locationAggregateCache.countLightsNotInState(getThing().getUID().getId(), powerState.getValue()) == 0) {
+                logger.debug("Skip command {} for channel {} because all lights are already in the target state", command, channelUID.getId());
+                return;
             }
+
+            // a single location action switches all lights, it uses the default execution time of bco
+            ((LocationRemote) unitRemote).setPowerState(powerState, UnitType.LIGHT);
+        } catch (CouldNotPerformException ex) {
+            logger.warn("Could not update channel {} to value {}", channelUID, command, ex);
         }
     }
 
+    private ActionParameter.Builder createActionParameter(final Message serviceState, final ServiceType serviceType, final UnitRemote<?> unitRemote) throws CouldNotPerformException {
+        final ActionParameter.Builder actionParameter = ActionDescriptionProcessor.generateDefaultActionParameter(serviceState, serviceType, unitRemote);
+        actionParameter.setExecutionTimePeriod(TimeUnit.MINUTES.toMicros(30));
+        actionParameter.setInterruptible(true);
+        actionParameter.setSchedulable(true);
+        actionParameter.setAutoContinueWithLowPriority(true);
+        actionParameter.setPriority(Priority.HIGH);
+        return actionParameter;
+    }
+
     @SuppressWarnings("deprecation")
     @Override
     public void initialize() {
         // deprecation usage seems to be ok since just the default method of the BaseThingHandler is deprecated but not the interface method and an explicit overwrite is recommended!
-        try {
+        updateInterval = getUpdateInterval();
+        autoUpdate = getAutoUpdate();
+        final SamplingConfiguration samplingConfiguration = SamplingConfiguration.read(getConfig()::get, defaultSamplingConfiguration);
+        synchronized (channelStateLock) {
+            channelSampler = new ChannelSampler(samplingConfiguration);
+        }
+        if (connector.getReadyFuture().isDone()) {
+            updateStatus(ThingStatus.UNKNOWN);
+        } else {
+            updateStatus(ThingStatus.UNKNOWN, ThingStatusDetail.NONE, "Waiting for the connection to bco");
+        }
+
+        // show the last known values until live data arrives
+        if (restoreSnapshot() && snapshotStore.isStale()) {
+            updateStatus(ThingStatus.UNKNOWN, ThingStatusDetail.NONE, "Showing stale values from " + new Date(snapshotStore.getSnapshotTime()));
+        }
+
+        final boolean linked = hasLinkedChannel();
+        if (activationTracker.isLazyActivation() && !linked && !getThing().getChannels().isEmpty()) {
+            // nothing receives the states of the thing, so the remote is acquired once a channel is linked
+            // things without channels are activated once to create their channels
+            activationTracker.deactivated(getThing().getUID().getId());
+            updateStatus(ThingStatus.UNKNOWN, ThingStatusDetail.NONE, DORMANT_DESCRIPTION);
+            return;
+        }
+        requestActivation(linked);
+    }
+
+    @Override
+    public void channelLinked(final ChannelUID channelUID) {
+        cancelIdleRelease();
+        requestActivation(true);
+        // refreshes the channel so that the new item receives the last state
+        super.channelLinked(channelUID);
+    }
+
+    @Override
+    public void channelUnlinked(final ChannelUID channelUID) {
+        super.channelUnlinked(channelUID);
+        if (activationTracker.isLazyActivation() && !hasLinkedChannel()) {
+            scheduleIdleRelease();
+        }
+    }
 
-            unitRemote = Units.getUnit(getThing().getUID().getId(), false);
-            unitRemote.addConnectionStateObserver(connectionStateObserver);
+    private boolean hasLinkedChannel() {
+        return getThing().getChannels().stream().anyMatch(channel -> isLinked(channel.getUID()));
+    }
+
+    /**
+     * Queue the acquisition of the remote once the connection to bco is ready. Nothing is done if the remote is
+     * already acquired or queued.
+     *
+     * @param linked if a channel of the thing is linked, linked things are initialized first.
+     */
+    private void requestActivation(final boolean linked) {
+        final String location = getThing().getLocation() == null ? "" : getThing().getLocation();
+        final long generation;
+        synchronized (initializationLock) {
+            if (activationRequested) {
+                return;
+            }
+            activationRequested = true;
+            generation = initializationGeneration;
+            activationTracker.activated(getThing().getUID().getId());
+        }
+
+        // do not block while the binding connects, the initialization is queued once the connection is ready
+        connector.getReadyFuture().thenRun(() -> {
+            synchronized (initializationLock) {
+                if (generation != initializationGeneration) {
+                    // thing has been disposed or released in the meantime
+                    return;
+                }
+                initializationTask = unitInitializer.submit(getThing().getUID().getId(), linked, location, () -> initializeRemote(generation));
+            }
+        });
+    }
+
+    private void scheduleIdleRelease() {
+        synchronized (initializationLock) {
+            if (!activationRequested) {
+                return;
+            }
+            final ScheduledFuture<?> idleReleaseFuture = this.idleReleaseFuture;
+            if (idleReleaseFuture != null && !idleReleaseFuture.isDone()) {
+                return;
+            }
+            this.idleReleaseFuture = scheduler.schedule(this::releaseIdleRemote, activationTracker.getIdleTimeout(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelIdleRelease() {
+        synchronized (initializationLock) {
+            final ScheduledFuture<?> idleReleaseFuture = this.idleReleaseFuture;
+            if (idleReleaseFuture != null) {
+                idleReleaseFuture.cancel(false);
+                this.idleReleaseFuture = null;
+            }
+        }
+    }
+
+    /**
+     * Release the remote if no channel was linked during the idle timeout. The thing stays dormant until one of its
+     * channels is linked again.
+     */
+    private void releaseIdleRemote() {
+        synchronized (initializationLock) {
+            idleReleaseFuture = null;
+            if (!activationRequested || hasLinkedChannel()) {
+                return;
+            }
+            releaseRemote();
+            activationTracker.deactivated(getThing().getUID().getId());
+        }
+        logger.debug("Release and deactivate remote of thing {} because none of its channels is linked", getThing().getUID().getId());
+
+        cancelChannelUpdates();
+        reconnectManager.cancel(getThing().getUID().getId());
+        channelsStale = false;
+        // the states are outdated once the thing is activated again, so all of them are published again
+        synchronized (channelStateLock) {
+            resetChannelStates();
+            channelSampler.reset();
+        }
+        updateStatus(ThingStatus.UNKNOWN, ThingStatusDetail.NONE, DORMANT_DESCRIPTION);
+    }
+
+    /**
+     * Cancel a queued initialization and release the remote including all observers.
+     * Note: needs to be called while holding the initialization lock.
+     */
+    private void releaseRemote() {
+        initializationGeneration++;
+        activationRequested = false;
+        final UnitInitializer.InitializationTask initializationTask = this.initializationTask;
+        if (initializationTask != null) {
+            unitInitializer.cancel(initializationTask);
+            this.initializationTask = null;
+        }
+
+        if (lightAggregateRegistered) {
+            locationAggregateCache.unregister(getThing().getUID().getId(), lightAggregateListener);
+            lightAggregateRegistered = false;
+        }
+
+        if (remoteAcquired) {
+            unitRemote.removeConnectionStateObserver(connectionStateObserver);
+            remotePool.observerRemoved(getThing().getUID().getId());
+            unsubscribeConfigChanges();
+            unitRemote.removeDataObserver(unitDataObserver);
+            remotePool.observerRemoved(getThing().getUID().getId());
+            remotePool.release(getThing().getUID().getId());
+            remoteAcquired = false;
+        }
+    }
+
+    private void updateConnectionState(final ConnectionState.State connectionState) {
+        if (!remoteAcquired) {
+            // remote released while the change was queued
+            return;
+        }
+        logger.debug("Unit {} switched to connection state {}", unitRemote.getLabel(), connectionState.name());
+        switch (connectionState) {
+            case CONNECTED:
+                updateStatus(ThingStatus.ONLINE);
+                if (channelsStale) {
+                    channelsStale = false;
+                    reconnectManager.reconnected(getThing().getUID().getId(), this::resyncChannels);
+                }
+                break;
+            default:
+                if (getThing().getStatus() == ThingStatus.ONLINE) {
+                    // connection lost, so the published states may be outdated
+                    channelsStale = true;
+                    reconnectManager.disconnected(getThing().getUID().getId());
+                    markChannelsStale();
+                }
+                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, "Connection to unit lost, channel states may be outdated");
+                break;
+        }
+    }
+
+    @Override
+    public void bridgeStatusChanged(final ThingStatusInfo bridgeStatusInfo) {
+        // the remote does not depend on the bridge, only the source of config changes is switched
+        synchronized (initializationLock) {
+            if (!remoteAcquired) {
+                return;
+            }
+            unsubscribeConfigChanges();
+            subscribeConfigChanges();
+        }
+        scheduleThingConfigUpdate();
+    }
+
+    /**
+     * @return the registry index of the bridge or null if the thing has no active bco server bridge.
+     */
+    private @Nullable UnitRegistryIndex getRegistryIndex() {
+        final Bridge bridge = getBridge();
+        if (bridge == null) {
+            return null;
+        }
+        final ThingHandler bridgeHandler = bridge.getHandler();
+        if (!(bridgeHandler instanceof BCOServerHandler)) {
+            return null;
+        }
+        final UnitRegistryIndex registryIndex = ((BCOServerHandler) bridgeHandler).getRegistryIndex();
+        return registryIndex != null && registryIndex.isActive() ? registryIndex : null;
+    }
+
+    /**
+     * Receive config changes from the registry index of the bridge if available, else from the remote.
+     * Note: needs to be called while holding the initialization lock.
+     */
+    private void subscribeConfigChanges() {
+        final UnitRegistryIndex registryIndex = getRegistryIndex();
+        if (registryIndex != null) {
+            registryIndex.addListener(getThing().getUID().getId(), registryConfigListener);
+        } else {
             unitRemote.addConfigObserver(unitConfigObserver);
-            unitRemote.addDataObserver(unitDataObserver);
+            remotePool.observerAdded(getThing().getUID().getId());
+        }
+        subscribedRegistryIndex = registryIndex;
+    }
+
+    /**
+     * Note: needs to be called while holding the initialization lock.
+     */
+    private void unsubscribeConfigChanges() {
+        final UnitRegistryIndex registryIndex = subscribedRegistryIndex;
+        if (registryIndex != null) {
+            registryIndex.removeListener(getThing().getUID().getId(), registryConfigListener);
+            subscribedRegistryIndex = null;
+        } else {
+            unitRemote.removeConfigObserver(unitConfigObserver);
+            remotePool.observerRemoved(getThing().getUID().getId());
+        }
+    }
+
+    /**
+     * Config changes are processed on the binding executor with the lowest priority.
+     */
+    private void scheduleThingConfigUpdate() {
+        executor.execute(getThing().getUID().getId(), ExecutionLane.CONFIG, () -> {
+            if (!remoteAcquired) {
+                return;
+            }
+            try {
+                updateThingConfig();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not update thing " + getThing().getUID().getId(), ex, logger);
+            }
+        });
+    }
+
+    /**
+     * Cancel all scheduled channel updates.
+     */
+    private void cancelChannelUpdates() {
+        final ScheduledFuture<?> channelUpdateFuture = this.channelUpdateFuture;
+        if (channelUpdateFuture != null) {
+            channelUpdateFuture.cancel(false);
+        }
+        channelUpdateScheduled.set(false);
+        synchronized (channelStateLock) {
+            final ScheduledFuture<?> samplingUpdateFuture = this.samplingUpdateFuture;
+            if (samplingUpdateFuture != null) {
+                samplingUpdateFuture.cancel(false);
+                this.samplingUpdateFuture = null;
+            }
+            final ScheduledFuture<?> echoTimeoutFuture = this.echoTimeoutFuture;
+            if (echoTimeoutFuture != null) {
+                echoTimeoutFuture.cancel(false);
+                this.echoTimeoutFuture = null;
+            }
+            pendingCommandTracker.clear();
+        }
+    }
+
+    /**
+     * Acquire the unit remote and perform the initial update. Executed by the {@link UnitInitializer}.
+     *
+     * @param generation the initialization generation at the time the initialization was queued.
+     */
+    private void initializeRemote(final long generation) {
+        try {
+            final UnitRemote<?> unitRemote = remotePool.acquire(getThing().getUID().getId());
+            synchronized (initializationLock) {
+                if (generation != initializationGeneration) {
+                    // thing has been disposed in the meantime
+                    remotePool.release(getThing().getUID().getId());
+                    return;
+                }
+                initializationTask = null;
+                remoteAcquired = true;
+                this.unitRemote = unitRemote;
+                unitRemote.addConnectionStateObserver(connectionStateObserver);
+                remotePool.observerAdded(getThing().getUID().getId());
+                subscribeConfigChanges();
+                unitRemote.addDataObserver(unitDataObserver);
+                remotePool.observerAdded(getThing().getUID().getId());
+            }
+
+            if (unitRemote.getUnitType() == UnitType.LOCATION && unitRemote.getAvailableServiceTypes().contains(ServiceType.POWER_STATE_SERVICE) && !registerLightAggregate(generation)) {
+                return;
+            }
 
             // perform initial update
+            lastThingFingerprint = null;
             updateThingConfig();
             if (unitRemote.isDataAvailable()) {
                 updateChannels();
             }
+            updateStatus(unitRemote.isConnected() ? ThingStatus.ONLINE : ThingStatus.OFFLINE);
+
+            // the thing was only activated to create its channels
+            if (activationTracker.isLazyActivation() && !hasLinkedChannel()) {
+                scheduleIdleRelease();
+            }
         } catch (CouldNotPerformException | InterruptedException ex) {
             logger.error("Could not initialize thing for unit remote", ex);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, ex.getMessage());
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private void updateChannels() throws CouldNotPerformException {
-        for (final ServiceType serviceType : unitRemote.getAvailableServiceTypes()) {
-            final Message serviceState = unitRemote.getServiceState(serviceType);
-            Set<Class<? extends Command>> commandClasses;
-            try {
-                commandClasses = ServiceTypeCommandMapping.getCommandClasses(serviceType);
-            } catch (NotAvailableException ex) {
-                logger.warn("Skip applying channel update for service {} because no command classes are available", serviceType.name());
+    /**
+     * Aggregate the light states of the location. The lights are acquired without holding the initialization lock,
+     * so the registration is undone if the remote has been released in the meantime. If the lights cannot be
+     * aggregated, the light channel falls back to the state computed by the location.
+     *
+     * @param generation the initialization generation at the time the initialization was queued.
+     * @return false if the remote has been released in the meantime.
+     * @throws InterruptedException is thrown if the thread was externally interrupted.
+     */
+    private boolean registerLightAggregate(final long generation) throws InterruptedException {
+        try {
+            locationAggregateCache.register(getThing().getUID().getId(), lightAggregateListener);
+        } catch (CouldNotPerformException ex) {
+            logger.warn("Could not aggregate the light states of location {}", getThing().getUID().getId(), ex);
+            return true;
+        }
+
+        synchronized (initializationLock) {
+            if (generation == initializationGeneration) {
+                lightAggregateRegistered = true;
+                return true;
+            }
+        }
+        // the release could not see the registration
+        locationAggregateCache.unregister(getThing().getUID().getId(), lightAggregateListener);
+        return false;
+    }
+
+    /**
+     * Publish the channel states of the snapshot. The published states are not recorded, so live data always
+     * replaces them.
+     *
+     * @return true if at least one channel was restored.
+     */
+    private boolean restoreSnapshot() {
+        boolean restored = false;
+        for (final Map.Entry<String, List<State>> entry : snapshotStore.getChannelStates(getThing().getUID().getId()).entrySet()) {
+            if (getThing().getChannel(entry.getKey()) == null) {
                 continue;
             }
+            for (final State state : entry.getValue()) {
+                updateState(entry.getKey(), state);
+            }
+            restored = true;
+        }
+        return restored;
+    }
 
-            for (final Class<? extends Command> commandClass : commandClasses) {
-                try {
-                    final ServiceStateCommandTransformer transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(serviceState.getClass(), commandClass);
+    private boolean getAutoUpdate() {
+        final Object value = getConfig().get(BCOBindingConstants.CONFIG_AUTO_UPDATE);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return BCOBindingConstants.DEFAULT_AUTO_UPDATE;
+    }
+
+    private long getUpdateInterval() {
+        final Object value = getConfig().get(BCOBindingConstants.CONFIG_UPDATE_INTERVAL);
+        if (value instanceof BigDecimal) {
+            return Math.max(0, ((BigDecimal) value).longValue());
+        }
+        return defaultUpdateInterval;
+    }
+
+    /**
+     * Schedule a channel update on the shared scheduler. If an update is already scheduled the data change is
+     * coalesced into it because the scheduled update reads the latest data of the unit.
+     */
+    private void scheduleChannelUpdate() {
+        if (!channelUpdateScheduled.compareAndSet(false, true)) {
+            coalescedUpdateCounter.increment();
+            return;
+        }
+
+        channelUpdateRequestTime = System.nanoTime();
+        final long delay = Math.max(0, lastChannelUpdateTime + updateInterval - System.currentTimeMillis());
+        channelUpdateFuture = scheduler.schedule(() -> executor.execute(getThing().getUID().getId(), ExecutionLane.CHANNEL_STATE, this::flushScheduledChannelUpdate), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushScheduledChannelUpdate() {
+        // reset before reading the data so that every change arriving afterwards schedules a new update, and only by
+        // the flush claiming the flag so that an update flushed or cancelled in the meantime is not published twice
+        if (!channelUpdateScheduled.compareAndSet(true, false)) {
+            return;
+        }
+        publishChannelUpdate();
+    }
+
+    /**
+     * Publish the latest data of the unit immediately. A scheduled update is covered by this one and skipped.
+     */
+    private void flushChannelUpdate() {
+        channelUpdateScheduled.set(false);
+        publishChannelUpdate();
+    }
+
+    private void publishChannelUpdate() {
+        if (!remoteAcquired) {
+            // remote released while the update was queued
+            return;
+        }
+        lastChannelUpdateTime = System.currentTimeMillis();
+        // includes the time the update was delayed to respect the update interval
+        observerQueueHistogram.recordSince(channelUpdateRequestTime);
+        try {
+            updateChannels();
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory("Could not update channels of " + getThing().getUID().getId(), ex, logger);
+        }
+    }
+
+    private void updateChannels() throws CouldNotPerformException {
+        synchronized (channelStateLock) {
+            final long time = System.currentTimeMillis();
+            for (final ServiceType serviceType : unitRemote.getAvailableServiceTypes()) {
+                final int slot = channelStateStore.getSlot(getThing().getUID().getId(), serviceType);
+                if (slot < 0) {
+                    // the thing does not provide a channel for the service yet
+                    continue;
+                }
+                final Message serviceState = unitRemote.getServiceState(serviceType);
+
+                // skip transformation if the service state did not change since the last update, unless a command
+                // waits for its confirmation and has to be held back or expired
+                if (channelStateStore.equalsServiceState(slot, serviceState) && !pendingCommandTracker.isPending(serviceType)) {
+                    suppressedUpdateCounter.increment();
+                    continue;
+                }
+
+                // skip transformation of sampled services until their interval passed
+                if (channelSampler.canSkip(serviceType, time)) {
+                    holdBackSampledUpdate(serviceType, time);
+                    continue;
+                }
+
+                final long transformStartTime = System.nanoTime();
+                final List<ServiceStateCommandTransformer<Message, Command>> transformerList = TransformerCache.getInstance().getStateTransformers(serviceType, serviceState.getClass());
+                final List<State> stateList = new ArrayList<>(transformerList.size());
+                for (final ServiceStateCommandTransformer<Message, Command> transformer : transformerList) {
                     try {
-                        final State state = (State) transformer.transform(serviceState);
-                        updateState(getChannelId(serviceType), state);
-                    } catch (ClassCastException ex) {
-                        // command is not a state, is the case e.g. for StopMoveType, just ignore these values
+                        stateList.add((State) transformer.transform(serviceState));
+                    } catch (CouldNotPerformException ex) {
+                        logger.warn("Skip transformation of {} for channel {}", serviceState, ChannelServiceIndex.getChannelId(serviceType));
                     }
-                } catch (TypeNotSupportedException | CouldNotTransformException ex) {
-                    // skip transformation
-                    logger.warn("Skip transformation of {} to command {}", serviceState, commandClass.getSimpleName());
                 }
+                metricRegistry.getTransformHistogram(serviceType).recordSince(transformStartTime);
+
+                if (!channelSampler.sample(serviceType, stateList, time)) {
+                    holdBackSampledUpdate(serviceType, time);
+                    continue;
+                }
+
+                boolean force = false;
+                switch (pendingCommandTracker.match(serviceType, slot, stateList)) {
+                    case STALE:
+                        // the state from before the command would let the item flicker back, so the service is
+                        // evaluated again with the next update or once the command expired
+                        scheduleEchoTimeout(serviceType);
+                        heldBackUpdateCounter.increment();
+                        continue;
+                    case ECHOED:
+                        if (autoUpdate) {
+                            // auto update already posted the commanded state, so the echo is only recorded
+                            channelStateStore.put(slot, stateList, serviceState);
+                            suppressedUpdateCounter.increment();
+                            continue;
+                        }
+                        break;
+                    case EXPIRED:
+                        // the item shows a state bco never confirmed, so it is corrected even if nothing changed
+                        force = true;
+                        break;
+                    default:
+                        break;
+                }
+                publishChannel(slot, ChannelServiceIndex.getChannelId(serviceType), stateList, serviceState, force);
+            }
+
+            final int lightSlot = channelStateStore.getSlot(getThing().getUID().getId(), BCOBindingConstants.CHANNEL_POWER_LIGHT);
+            if (lightSlot >= 0 && unitRemote instanceof LocationRemote) {
+                PowerStateOnOffTypeTransformer transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(PowerStateOnOffTypeTransformer.class);
+                @Nullable PowerState lightPowerState = locationAggregateCache.getPowerState(getThing().getUID().getId());
+                if (lightPowerState == null) {
+                    // aggregate not available yet, so let the location compute it
+                    lightPowerState = ((LocationRemote) unitRemote).getPowerState(UnitType.LIGHT);
+                }
+                final List<State> stateList = new ArrayList<>(1);
+                stateList.add(transformer.transform(lightPowerState));
+                publishChannel(lightSlot, BCOBindingConstants.CHANNEL_POWER_LIGHT, stateList, null, false);
             }
         }
+    }
 
-        if (unitRemote instanceof LocationRemote && unitRemote.getAvailableServiceTypes().contains(ServiceType.POWER_STATE_SERVICE)) {
-            PowerStateOnOffTypeTransformer transformer = ServiceStateCommandTransformerPool.getInstance().getTransformer(PowerStateOnOffTypeTransformer.class);
-            updateState(BCOBindingConstants.CHANNEL_POWER_LIGHT, transformer.transform(((LocationRemote) unitRemote).getPowerState(UnitType.LIGHT)));
+    /**
+     * Skip the update of a sampled service. The service state is not recorded, so an update is scheduled at the end
+     * of the sampling interval which publishes the latest state.
+     * Note: needs to be called while holding the channel state lock.
+     */
+    private void holdBackSampledUpdate(final ServiceType serviceType, final long time) {
+        suppressedUpdateCounter.increment();
+        if (!channelSampler.hasInterval()) {
+            // pure deadband sampling, the value is published once it changes enough
+            return;
+        }
+        final ScheduledFuture<?> samplingUpdateFuture = this.samplingUpdateFuture;
+        if (samplingUpdateFuture != null && !samplingUpdateFuture.isDone()) {
+            return;
+        }
+        this.samplingUpdateFuture = scheduler.schedule(this::scheduleChannelUpdate, channelSampler.getRemainingInterval(serviceType, time), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedule a channel update once the pending command of a service expires.
+     * Note: needs to be called while holding the channel state lock.
+     */
+    private void scheduleEchoTimeout(final ServiceType serviceType) {
+        final ScheduledFuture<?> echoTimeoutFuture = this.echoTimeoutFuture;
+        if (echoTimeoutFuture != null && !echoTimeoutFuture.isDone()) {
+            return;
+        }
+        this.echoTimeoutFuture = scheduler.schedule(this::scheduleChannelUpdate, pendingCommandTracker.getRemainingTime(serviceType), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record the given states of a channel in the {@link ChannelStateStore} and publish them if they differ from the
+     * states published last.
+     * Note: All states are published in order if one of them changed, so the item ends up with the same state as
+     * if every update would have been published.
+     * Note: needs to be called while holding the channel state lock.
+     *
+     * @param slot         the slot of the channel in the state store.
+     * @param channelId    the id of the channel to update.
+     * @param stateList    the states to publish.
+     * @param serviceState the service state the states were transformed from, null for custom channels.
+     * @param force        if the states are published even if they did not change.
+     */
+    private void publishChannel(final int slot, final String channelId, final List<State> stateList, @Nullable final Message serviceState, final boolean force) {
+        if (stateList.isEmpty()) {
+            suppressedUpdateCounter.increment();
+            return;
+        }
+        final boolean changed = force || !channelStateStore.equalsStates(slot, stateList);
+        // the service state is recorded even if the states did not change, so it is not transformed again
+        channelStateStore.put(slot, stateList, serviceState);
+        if (!changed) {
+            suppressedUpdateCounter.increment();
+            return;
+        }
+        for (final State state : stateList) {
+            updateState(channelId, state);
+        }
+        emittedUpdateCounter.increment();
+        stateUpdateRate.mark();
+    }
+
+    private void republishChannel(final String channelId) {
+        synchronized (channelStateLock) {
+            final int slot = channelStateStore.getSlot(getThing().getUID().getId(), channelId);
+            if (slot < 0) {
+                return;
+            }
+            for (final State state : channelStateStore.getStates(slot)) {
+                updateState(channelId, state);
+            }
+        }
+    }
+
+    /**
+     * Forget pending commands and samples of the lost connection. The published channel states are kept, the
+     * thing status reports that they may be outdated and the resync after a reconnect publishes every change.
+     */
+    private void markChannelsStale() {
+        synchronized (channelStateLock) {
+            channelSampler.reset();
+            pendingCommandTracker.clear();
+        }
+    }
+
+    /**
+     * Request the latest data of the unit and publish all channels. Executed by the {@link ReconnectManager}.
+     * Note: the resync can already be running when the thing is disposed, so it is skipped once the remote has been
+     * released.
+     */
+    private void resyncChannels() {
+        final UnitRemote<?> unitRemote;
+        final long generation;
+        synchronized (initializationLock) {
+            if (!remoteAcquired) {
+                // thing disposed or remote released while the resync was queued
+                return;
+            }
+            unitRemote = this.unitRemote;
+            generation = initializationGeneration;
+        }
+
+        try {
+            if (!unitRemote.isConnected()) {
+                // connection lost again, the next reconnect triggers a new resync
+                return;
+            }
+            unitRemote.requestData().get(RESYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            synchronized (initializationLock) {
+                if (generation != initializationGeneration) {
+                    // thing has been disposed while the data was requested
+                    return;
+                }
+            }
+            executor.execute(getThing().getUID().getId(), ExecutionLane.CHANNEL_STATE, this::flushChannelUpdate);
+        } catch (CouldNotPerformException | ExecutionException | TimeoutException ex) {
+            ExceptionPrinter.printHistory("Could not resync channels of " + getThing().getUID().getId(), ex, logger);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Forget all published states so that the next update publishes every channel again.
+     */
+    private void resetChannelStates() {
+        synchronized (channelStateLock) {
+            channelStateStore.clear(getThing().getUID().getId());
         }
     }
 
     private void updateThingConfig() throws CouldNotPerformException {
-        final ThingBuilder thingBuilder = editThing();
-        final UnitConfig unitConfig = unitRemote.getConfig();
+        final UnitConfig unitConfig;
+        final String label;
+        final String locationLabel;
+        final Set<ServiceType> serviceTypes;
+        final UnitRegistryIndex registryIndex = subscribedRegistryIndex;
+        if (registryIndex != null && registryIndex.contains(getThing().getUID().getId())) {
+            // the index of the bridge can be ahead of the config of the remote, so it is preferred
+            unitConfig = registryIndex.getUnitConfig(getThing().getUID().getId());
+            label = LabelProcessor.getBestMatch(unitConfig.getLabel());
+            locationLabel = registryIndex.getLocationLabel(unitConfig.getPlacementConfig().getLocationId());
+            serviceTypes = EnumSet.noneOf(ServiceType.class);
+            for (final ServiceConfig serviceConfig : unitConfig.getServiceConfigList()) {
+                serviceTypes.add(serviceConfig.getServiceDescription().getServiceType());
+            }
+        } else {
+            unitConfig = unitRemote.getConfig();
+            label = unitRemote.getLabel();
+            final UnitConfig location = registryAccess.getUnitConfigById(unitConfig.getPlacementConfig().getLocationId());
+            locationLabel = LabelProcessor.getBestMatch(location.getLabel());
+            serviceTypes = unitRemote.getAvailableServiceTypes();
+        }
 
-        // update thing label
-        thingBuilder.withLabel(unitRemote.getLabel());
+        // skip if nothing changed which affects the thing, e.g. if only meta data of the unit was modified
+        final ThingFingerprint thingFingerprint = new ThingFingerprint(label, locationLabel, unitRemote.getUnitType(), serviceTypes);
+        if (thingFingerprint.equals(lastThingFingerprint)) {
+            logger.debug("Skip update of thing {} because its config did not change", getThing().getUID().getId());
+            return;
+        }
+        lastThingFingerprint = thingFingerprint;
+        final List<String> customChannelIdList = new ArrayList<>(1);
+        if (unitRemote.getUnitType() == UnitType.LOCATION && serviceTypes.contains(ServiceType.POWER_STATE_SERVICE)) {
+            customChannelIdList.add(BCOBindingConstants.CHANNEL_POWER_LIGHT);
+        }
+        // slots are only released or reassigned while no channel update writes them
+        synchronized (channelStateLock) {
+            channelStateStore.register(getThing().getUID().getId(), serviceTypes, customChannelIdList);
+        }
 
-        // update thing location
-        UnitConfig location = Registries.getUnitRegistry().getUnitConfigById(unitConfig.getPlacementConfig().getLocationId());
-        thingBuilder.withLocation(LabelProcessor.getBestMatch(location.getLabel()));
-
-        // update available channels
-        // clear channels
-        thingBuilder.withChannels();
-        // add all channels
-        for (ServiceType serviceType : unitRemote.getAvailableServiceTypes()) {
-            ChannelUID channelUID = new ChannelUID(getThing().getUID(), getChannelId(serviceType));
+        // collect all channels the thing should provide
+        final Map<ChannelUID, Channel> channelMap = new LinkedHashMap<>();
+        for (ServiceType serviceType : serviceTypes) {
+            ChannelUID channelUID = new ChannelUID(getThing().getUID(), ChannelServiceIndex.getChannelId(serviceType));
             try {
                 Channel channel = ChannelBuilder.create(channelUID, OpenHABItemProcessor.getItemType(serviceType)).build();
-                thingBuilder.withChannel(channel);
+                channelMap.put(channelUID, channel);
             } catch (NotAvailableException ex) {
                 logger.warn("Skip service {} of unit {} because item type not available", serviceType.name(), unitConfig.getAlias(0));
             }
@@ -234,11 +1046,11 @@ public class UnitHandler extends BaseThingHandler {
 
         // add custom location channels
         if (unitRemote.getUnitType() == UnitType.LOCATION) {
-            if (unitRemote.getAvailableServiceTypes().contains(ServiceType.POWER_STATE_SERVICE)) {
-                ChannelUID channelUID = new ChannelUID(getThing().getUID(), getChannelId(ServiceType.POWER_STATE_SERVICE) + "_light");
+            if (serviceTypes.contains(ServiceType.POWER_STATE_SERVICE)) {
+                ChannelUID channelUID = new ChannelUID(getThing().getUID(), BCOBindingConstants.CHANNEL_POWER_LIGHT);
                 try {
                     Channel channel = ChannelBuilder.create(channelUID, OpenHABItemProcessor.getItemType(ServiceType.POWER_STATE_SERVICE)).build();
-                    thingBuilder.withChannel(channel);
+                    channelMap.put(channelUID, channel);
                 } catch (NotAvailableException ex) {
                     // this should not happen
                     ExceptionPrinter.printHistory("Could no create light control channel of location.", ex , logger);
@@ -246,25 +1058,105 @@ public class UnitHandler extends BaseThingHandler {
             }
         }
 
+        // only apply the differences to the current thing
+        final ThingBuilder thingBuilder = editThing();
+        boolean thingChanged = false;
+
+        // update thing label
+        if (!label.equals(getThing().getLabel())) {
+            thingBuilder.withLabel(label);
+            thingChanged = true;
+        }
+
+        // update thing location
+        if (!locationLabel.equals(getThing().getLocation())) {
+            thingBuilder.withLocation(locationLabel);
+            thingChanged = true;
+        }
+
+        // remove channels of services which are not available anymore
+        for (final Channel channel : getThing().getChannels()) {
+            if (!channelMap.containsKey(channel.getUID())) {
+                thingBuilder.withoutChannel(channel.getUID());
+                thingChanged = true;
+            }
+        }
+
+        // add channels of new services
+        boolean channelsAdded = false;
+        for (final Channel channel : channelMap.values()) {
+            if (getThing().getChannel(channel.getUID().getId()) == null) {
+                thingBuilder.withChannel(channel);
+                channelsAdded = true;
+            }
+        }
+
+        if (!thingChanged && !channelsAdded) {
+            logger.debug("Skip update of thing {} because it is already up to date", getThing().getUID().getId());
+            return;
+        }
+
         updateThing(thingBuilder.build());
+
+        if (channelsAdded) {
+            // new channels need to receive their states, so all states are published again
+            resetChannelStates();
+        }
     }
 
-    @Override
-    public void dispose() {
-        if(unitRemote != null) {
-            unitRemote.removeConnectionStateObserver(connectionStateObserver);
-            unitRemote.removeConfigObserver(unitConfigObserver);
-            unitRemote.removeDataObserver(unitDataObserver);
+    /**
+     * Everything of a unit which affects the thing representing it.
+     */
+    private static final class ThingFingerprint {
+
+        private final String label;
+        private final String locationLabel;
+        private final UnitType unitType;
+        private final Set<ServiceType> serviceTypes;
+
+        private ThingFingerprint(final String label, final String locationLabel, final UnitType unitType, final Set<ServiceType> serviceTypes) {
+            this.label = label;
+            this.locationLabel = locationLabel;
+            this.unitType = unitType;
+            this.serviceTypes = serviceTypes.isEmpty() ? EnumSet.noneOf(ServiceType.class) : EnumSet.copyOf(serviceTypes);
         }
 
-        updateStatus(ThingStatus.OFFLINE);
-    }
+        @Override
+        public boolean equals(final @Nullable Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof ThingFingerprint)) {
+                return false;
+            }
+            final ThingFingerprint other = (ThingFingerprint) object;
+            return label.equals(other.label)
+                    && locationLabel.equals(other.locationLabel)
+                    && unitType == other.unitType
+                    && serviceTypes.equals(other.serviceTypes);
+        }
 
-    private ServiceType getServiceType(final ChannelUID channelUID) {
-        return ServiceType.valueOf(channelUID.getId().toUpperCase() + "_SERVICE");
+        @Override
+        public int hashCode() {
+            return Objects.hash(label, locationLabel, unitType, serviceTypes);
+        }
     }
 
-    private String getChannelId(final ServiceType serviceType) {
-        return serviceType.name().replace("_SERVICE", "").toLowerCase();
+    @Override
+    public void dispose() {
+        // drop a queued resync before the remote is released
+        reconnectManager.cancel(getThing().getUID().getId());
+        cancelChannelUpdates();
+        cancelIdleRelease();
+        synchronized (initializationLock) {
+            releaseRemote();
+        }
+
+        activationTracker.remove(getThing().getUID().getId());
+        synchronized (channelStateLock) {
+            channelStateStore.unregister(getThing().getUID().getId());
+        }
+        metricRegistry.removeThing(getThing().getUID().getId());
+        updateStatus(ThingStatus.OFFLINE);
     }
 }
@@ -0,0 +1,216 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.smarthome.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link UnitInitializer} acquires the unit remotes of all things in the background on a bounded pool,
+ * so openHAB does not initialize hundreds of things one after another on its own threads.
+ * Things with linked channels are initialized first, ordered by location so that rooms come online together.
+ * The timeline of each startup wave is logged and reported to the {@link BCOMetricRegistry}.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class UnitInitializer {
+
+    public static final String PENDING_INITIALIZATIONS = "initialization.pending";
+    public static final String LAST_WAVE_DURATION = "initialization.lastWaveDuration";
+    public static final String LAST_WAVE_SIZE = "initialization.lastWaveSize";
+
+    // in milliseconds
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Logger logger = LoggerFactory.getLogger(UnitInitializer.class);
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence;
+    private final BCOMetricRegistry metricRegistry;
+
+    private final AtomicInteger pendingCounter;
+    private final AtomicInteger completedCounter;
+    private volatile long timelineStartTime;
+    private volatile long lastTimelineDuration;
+    private volatile int lastTimelineSize;
+    private final LatencyHistogram queueTimeHistogram;
+    private final LatencyHistogram initializationTimeHistogram;
+
+    /**
+     * @param threadCount    the number of things initialized in parallel.
+     * @param metricRegistry the registry the timeline of the startup waves is reported to.
+     */
+    public UnitInitializer(final int threadCount, final BCOMetricRegistry metricRegistry) {
+        final int poolSize = Math.max(1, threadCount);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), new NamedThreadFactory(BCOBindingConstants.INITIALIZATION_THREAD_NAME));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.sequence = new AtomicLong();
+        this.pendingCounter = new AtomicInteger();
+        this.completedCounter = new AtomicInteger();
+        this.queueTimeHistogram = new LatencyHistogram("InitializationQueueTime");
+        this.initializationTimeHistogram = new LatencyHistogram("InitializationTime");
+        this.metricRegistry = metricRegistry;
+        metricRegistry.register(queueTimeHistogram);
+        metricRegistry.register(initializationTimeHistogram);
+        metricRegistry.registerGauge(PENDING_INITIALIZATIONS, this::getPendingCount);
+        metricRegistry.registerGauge(LAST_WAVE_DURATION, this::getLastTimelineDuration);
+        metricRegistry.registerGauge(LAST_WAVE_SIZE, () -> lastTimelineSize);
+    }
+
+    /**
+     * Queue the initialization of a thing.
+     *
+     * @param thingId        the id of the thing.
+     * @param linked         if the thing has linked channels and should therefore be initialized first.
+     * @param location       the location label of the thing, empty if not known yet.
+     * @param initialization the initialization to perform.
+     * @return the queued task which can be used to cancel the initialization.
+     */
+    public InitializationTask submit(final String thingId, final boolean linked, final String location, final Runnable initialization) {
+        if (pendingCounter.getAndIncrement() == 0) {
+            timelineStartTime = System.nanoTime();
+        }
+        final InitializationTask task = new InitializationTask(thingId, linked, location, sequence.getAndIncrement(), initialization);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Remove an initialization from the queue if it has not been started yet.
+     *
+     * @param task the task to cancel.
+     */
+    public void cancel(final InitializationTask task) {
+        if (executor.remove(task)) {
+            finish();
+        }
+    }
+
+    /**
+     * Stop all threads and drop all queued initializations.
+     *
+     * @throws InterruptedException is thrown if the thread was externally interrupted while waiting for the threads.
+     */
+    public void shutdown() throws InterruptedException {
+        metricRegistry.unregisterGauge(PENDING_INITIALIZATIONS);
+        metricRegistry.unregisterGauge(LAST_WAVE_DURATION);
+        metricRegistry.unregisterGauge(LAST_WAVE_SIZE);
+        executor.shutdownNow();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            logger.warn("Initialization threads did not stop within {}ms", SHUTDOWN_TIMEOUT);
+        }
+    }
+
+    private void finish() {
+        completedCounter.incrementAndGet();
+        if (pendingCounter.decrementAndGet() == 0) {
+            lastTimelineDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timelineStartTime);
+            lastTimelineSize = completedCounter.get();
+            logger.info("Initialized {} things in {}ms, {}, {}", lastTimelineSize, lastTimelineDuration, queueTimeHistogram, initializationTimeHistogram);
+            completedCounter.set(0);
+        }
+    }
+
+    /**
+     * @return the number of initializations queued or running.
+     */
+    public int getPendingCount() {
+        return pendingCounter.get();
+    }
+
+    /**
+     * @return the duration in milliseconds from the first queued initialization until the queue was empty again.
+     */
+    public long getLastTimelineDuration() {
+        return lastTimelineDuration;
+    }
+
+    /**
+     * An initialization queued by the {@link UnitInitializer}.
+     */
+    public class InitializationTask implements Runnable, Comparable<InitializationTask> {
+
+        private final String thingId;
+        private final boolean linked;
+        private final String location;
+        private final long sequenceNumber;
+        private final Runnable initialization;
+        private final long creationTime;
+
+        private InitializationTask(final String thingId, final boolean linked, final String location, final long sequenceNumber, final Runnable initialization) {
+            this.thingId = thingId;
+            this.linked = linked;
+            this.location = location;
+            this.sequenceNumber = sequenceNumber;
+            this.initialization = initialization;
+            this.creationTime = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            final long startTime = System.nanoTime();
+            queueTimeHistogram.record(startTime - creationTime, TimeUnit.NANOSECONDS);
+            try {
+                initialization.run();
+            } catch (RuntimeException ex) {
+                logger.error("Could not initialize thing {}", thingId, ex);
+            } finally {
+                initializationTimeHistogram.recordSince(startTime);
+                logger.debug("Thing {} of location {} initialized {}ms after startup began (queued {}ms, took {}ms)",
+                        thingId,
+                        location,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - timelineStartTime),
+                        TimeUnit.NANOSECONDS.toMillis(startTime - creationTime),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                finish();
+            }
+        }
+
+        /**
+         * Linked things first, then things with a known location grouped by location, then in order of submission.
+         */
+        @Override
+        public int compareTo(final InitializationTask other) {
+            if (linked != other.linked) {
+                return linked ? -1 : 1;
+            }
+            if (location.isEmpty() != other.location.isEmpty()) {
+                return location.isEmpty() ? 1 : -1;
+            }
+            final int locationComparison = location.compareTo(other.location);
+            if (locationComparison != 0) {
+                return locationComparison;
+            }
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.extension.type.processing.LabelProcessor;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.jul.pattern.provider.DataProvider;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.registry.UnitRegistryDataType.UnitRegistryData;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link UnitRegistryIndex} observes the unit registry once for all handlers of a bridge. It keeps the unit
+ * configs and location labels indexed by id and notifies only the handlers of units whose config changed.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class UnitRegistryIndex {
+
+    // followed by the uid of the bridge, so that the gauges of multiple bridges do not replace each other
+    public static final String INDEXED_UNITS_PREFIX = "registry.index.units.";
+    public static final String DISPATCHED_CHANGES_PREFIX = "registry.index.dispatched.";
+
+    // index updates of a bridge are executed in order on the binding executor
+    private static final String INDEX_TASK_KEY_PREFIX = "registry-index-";
+
+    private final Logger logger = LoggerFactory.getLogger(UnitRegistryIndex.class);
+
+    private final BCORegistryAccess registryAccess;
+    private final BCOExecutor executor;
+    private final BCOMetricRegistry metricRegistry;
+    private final String indexedUnitsGauge;
+    private final String dispatchedChangesGauge;
+    private final String indexTaskKey;
+    private final Observer<DataProvider<UnitRegistryData>, UnitRegistryData> unitRegistryObserver;
+
+    private final Map<String, UnitConfig> unitConfigMap;
+    private final Map<String, String> locationLabelMap;
+    private final Map<String, Runnable> listenerMap;
+
+    /**
+     * Set while an update is queued, so that a burst of registry changes results in a single update.
+     */
+    private final AtomicBoolean updateScheduled;
+    private final AtomicLong dispatchCounter;
+
+    private final SyncObject updateLock = new SyncObject("RegistryIndexUpdateLock");
+    private final SyncObject activationLock = new SyncObject("RegistryIndexActivationLock");
+    private boolean subscribed;
+    private boolean active;
+    private boolean closed;
+
+    /**
+     * @param bridgeUID      the uid of the bridge the index belongs to.
+     * @param registryAccess the access to the bco registries.
+     * @param executor       the executor the index is updated on.
+     * @param metricRegistry the registry the size of the index and the number of dispatched changes are reported to.
+     */
+    public UnitRegistryIndex(final String bridgeUID, final BCORegistryAccess registryAccess, final BCOExecutor executor, final BCOMetricRegistry metricRegistry) {
+        this.registryAccess = registryAccess;
+        this.executor = executor;
+        this.metricRegistry = metricRegistry;
+        this.indexedUnitsGauge = INDEXED_UNITS_PREFIX + bridgeUID;
+        this.dispatchedChangesGauge = DISPATCHED_CHANGES_PREFIX + bridgeUID;
+        this.indexTaskKey = INDEX_TASK_KEY_PREFIX + bridgeUID;
+        this.unitConfigMap = new ConcurrentHashMap<>();
+        this.locationLabelMap = new ConcurrentHashMap<>();
+        this.listenerMap = new ConcurrentHashMap<>();
+        this.updateScheduled = new AtomicBoolean(false);
+        this.dispatchCounter = new AtomicLong();
+        this.unitRegistryObserver = (source, data) -> scheduleUpdate();
+        metricRegistry.registerGauge(indexedUnitsGauge, unitConfigMap::size);
+        metricRegistry.registerGauge(dispatchedChangesGauge, dispatchCounter::get);
+    }
+
+    /**
+     * Wait for the registry, subscribe to its changes and build the index. Nothing is done if the index has
+     * already been deactivated.
+     *
+     * @throws CouldNotPerformException is thrown if the unit registry is not available.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    public void activate() throws CouldNotPerformException, InterruptedException {
+        registryAccess.waitForData();
+        synchronized (activationLock) {
+            if (closed || subscribed) {
+                return;
+            }
+            registryAccess.addUnitRegistryObserver(unitRegistryObserver);
+            subscribed = true;
+        }
+
+        // handlers only use the index once it contains all units
+        update();
+        synchronized (activationLock) {
+            active = !closed;
+        }
+        logger.debug("Indexed {} units and {} locations", unitConfigMap.size(), locationLabelMap.size());
+    }
+
+    /**
+     * Unsubscribe from the registry and forget all units and listeners. The index cannot be activated again.
+     */
+    public void deactivate() {
+        synchronized (activationLock) {
+            closed = true;
+            active = false;
+            if (subscribed) {
+                subscribed = false;
+                try {
+                    registryAccess.removeUnitRegistryObserver(unitRegistryObserver);
+                } catch (NotAvailableException ex) {
+                    // registry already shut down so the observer is gone anyway
+                }
+            }
+        }
+        listenerMap.clear();
+        unitConfigMap.clear();
+        locationLabelMap.clear();
+        metricRegistry.unregisterGauge(indexedUnitsGauge);
+        metricRegistry.unregisterGauge(dispatchedChangesGauge);
+    }
+
+    /**
+     * @return if the index is subscribed to the registry and contains all units.
+     */
+    public boolean isActive() {
+        synchronized (activationLock) {
+            return active;
+        }
+    }
+
+    /**
+     * Register the listener notified whenever the config of a unit or the label of its location changes.
+     * Only one listener is kept per unit.
+     *
+     * @param unitId   the id of the unit.
+     * @param listener the listener, executed on the thread updating the index so it should return quickly.
+     */
+    public void addListener(final String unitId, final Runnable listener) {
+        listenerMap.put(unitId, listener);
+    }
+
+    /**
+     * @param unitId   the id of the unit.
+     * @param listener the listener registered before.
+     */
+    public void removeListener(final String unitId, final Runnable listener) {
+        listenerMap.remove(unitId, listener);
+    }
+
+    /**
+     * @param unitId the id of the unit.
+     * @return if the unit is part of the index.
+     */
+    public boolean contains(final String unitId) {
+        return unitConfigMap.containsKey(unitId);
+    }
+
+    /**
+     * @param unitId the id of the unit.
+     * @return the latest config of the unit.
+     * @throws NotAvailableException is thrown if the unit is not part of the index.
+     */
+    public UnitConfig getUnitConfig(final String unitId) throws NotAvailableException {
+        final @Nullable UnitConfig unitConfig = unitConfigMap.get(unitId);
+        if (unitConfig == null) {
+            throw new NotAvailableException("UnitConfig of " + unitId);
+        }
+        return unitConfig;
+    }
+
+    /**
+     * @param locationId the id of the location.
+     * @return the best matching label of the location.
+     * @throws NotAvailableException is thrown if the location is not part of the index.
+     */
+    public String getLocationLabel(final String locationId) throws NotAvailableException {
+        final @Nullable String locationLabel = locationLabelMap.get(locationId);
+        if (locationLabel == null) {
+            throw new NotAvailableException("Label of location " + locationId);
+        }
+        return locationLabel;
+    }
+
+    /**
+     * @return the number of units in the index.
+     */
+    public int getUnitCount() {
+        return unitConfigMap.size();
+    }
+
+    /**
+     * @return the number of changes dispatched to listeners.
+     */
+    public long getDispatchCount() {
+        return dispatchCounter.get();
+    }
+
+    private void scheduleUpdate() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            executor.execute(indexTaskKey, ExecutionLane.CONFIG, this::update);
+        }
+    }
+
+    /**
+     * Apply the current registry data to the index and notify the listeners of all changed units.
+     */
+    private void update() {
+        // reset before reading the data so that every change arriving afterwards schedules a new update
+        updateScheduled.set(false);
+        synchronized (updateLock) {
+            synchronized (activationLock) {
+                if (!subscribed) {
+                    return;
+                }
+            }
+
+            final List<UnitConfig> unitConfigs;
+            try {
+                unitConfigs = registryAccess.getUnitConfigs();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not update registry index", ex, logger);
+                return;
+            }
+
+            final Set<String> currentUnitIdSet = new HashSet<>(unitConfigs.size());
+            final Set<String> changedUnitIdSet = new HashSet<>();
+            final Set<String> relabeledLocationIdSet = new HashSet<>();
+            for (final UnitConfig unitConfig : unitConfigs) {
+                currentUnitIdSet.add(unitConfig.getId());
+                final @Nullable UnitConfig previousUnitConfig = unitConfigMap.put(unitConfig.getId(), unitConfig);
+                if (unitConfig.equals(previousUnitConfig)) {
+                    continue;
+                }
+                changedUnitIdSet.add(unitConfig.getId());
+
+                if (unitConfig.getUnitType() == UnitType.LOCATION) {
+                    try {
+                        final String locationLabel = LabelProcessor.getBestMatch(unitConfig.getLabel());
+                        final @Nullable String previousLocationLabel = locationLabelMap.put(unitConfig.getId(), locationLabel);
+                        if (previousLocationLabel != null && !previousLocationLabel.equals(locationLabel)) {
+                            relabeledLocationIdSet.add(unitConfig.getId());
+                        }
+                    } catch (NotAvailableException ex) {
+                        locationLabelMap.remove(unitConfig.getId());
+                    }
+                }
+            }
+
+            // forget removed units, their things are removed by the discovery
+            unitConfigMap.keySet().retainAll(currentUnitIdSet);
+            locationLabelMap.keySet().retainAll(currentUnitIdSet);
+
+            // the location of a thing is the label of the location its unit is placed in
+            if (!relabeledLocationIdSet.isEmpty()) {
+                for (final UnitConfig unitConfig : unitConfigs) {
+                    if (relabeledLocationIdSet.contains(unitConfig.getPlacementConfig().getLocationId())) {
+                        changedUnitIdSet.add(unitConfig.getId());
+                    }
+                }
+            }
+
+            for (final String unitId : changedUnitIdSet) {
+                final @Nullable Runnable listener = listenerMap.get(unitId);
+                if (listener != null) {
+                    dispatchCounter.incrementAndGet();
+                    listener.run();
+                }
+            }
+        }
+    }
+}
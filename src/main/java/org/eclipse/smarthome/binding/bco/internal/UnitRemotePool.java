@@ -0,0 +1,263 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openbase.bco.dal.lib.layer.unit.UnitRemote;
+import org.openbase.bco.dal.remote.layer.unit.Units;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@link UnitRemotePool} counts the references to unit remotes held by the binding and the observers registered
+ * on them. Every component acquiring a remote releases it after removing its observers, so remaining references or
+ * observers after all handlers have been disposed point to leaks.
+ * A remote is activated when its first reference is acquired and deactivated when its last reference is released,
+ * so that released remotes do not keep their middleware subscriptions.
+ *
+ * @author Tamino Huxohl - Initial contribution
+ */
+@NonNullByDefault
+public class UnitRemotePool {
+
+    private final Logger logger = LoggerFactory.getLogger(UnitRemotePool.class);
+
+    private final SyncObject poolLock = new SyncObject("UnitRemotePoolLock");
+    private final Map<String, RemoteEntry> remoteEntryMap;
+    private final Map<String, Integer> observerCountMap;
+
+    public UnitRemotePool() {
+        this.remoteEntryMap = new HashMap<>();
+        this.observerCountMap = new HashMap<>();
+    }
+
+    /**
+     * Acquire the remote of a unit. Every call has to be matched by a call of {@link #release(String)}.
+     * If the remote is not active, it is activated.
+     *
+     * @param unitId the id of the unit.
+     * @return the remote of the unit.
+     * @throws CouldNotPerformException is thrown if the remote could not be acquired.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    public UnitRemote<?> acquire(final String unitId) throws CouldNotPerformException, InterruptedException {
+        final UnitRemote<?> unitRemote = getRemote(unitId);
+        final RemoteEntry remoteEntry;
+        synchronized (poolLock) {
+            remoteEntry = remoteEntryMap.computeIfAbsent(unitId, RemoteEntry::new);
+            remoteEntry.unitRemote = unitRemote;
+            remoteEntry.referenceCount++;
+        }
+
+        // activation and deactivation of a remote are serialized by its entry, so a release racing with this
+        // acquisition either sees the new reference or is followed by the activation below
+        synchronized (remoteEntry) {
+            try {
+                if (!unitRemote.isActive()) {
+                    unitRemote.activate();
+                }
+            } catch (CouldNotPerformException | InterruptedException | RuntimeException ex) {
+                release(unitId);
+                throw ex;
+            }
+        }
+        return unitRemote;
+    }
+
+    /**
+     * Resolve the remote of a unit. Remotes are cached by {@link Units}, so this does not create a new remote
+     * for every call.
+     *
+     * @param unitId the id of the unit.
+     * @return the remote of the unit.
+     * @throws CouldNotPerformException is thrown if the remote could not be resolved.
+     * @throws InterruptedException     is thrown if the thread was externally interrupted.
+     */
+    protected UnitRemote<?> getRemote(final String unitId) throws CouldNotPerformException, InterruptedException {
+        return Units.getUnit(unitId, false);
+    }
+
+    /**
+     * Release a remote acquired before. If this was the last reference, the remote is deactivated.
+     *
+     * @param unitId the id of the unit.
+     */
+    public void release(final String unitId) {
+        final RemoteEntry remoteEntry;
+        synchronized (poolLock) {
+            remoteEntry = remoteEntryMap.get(unitId);
+            if (remoteEntry == null || remoteEntry.referenceCount == 0) {
+                return;
+            }
+            remoteEntry.referenceCount--;
+            if (remoteEntry.referenceCount > 0) {
+                return;
+            }
+        }
+
+        synchronized (remoteEntry) {
+            final UnitRemote<?> unitRemote;
+            synchronized (poolLock) {
+                unitRemote = remoteEntry.unitRemote;
+                // the remote may have been acquired again in the meantime
+                if (remoteEntry.referenceCount > 0 || unitRemote == null) {
+                    return;
+                }
+            }
+
+            try {
+                if (unitRemote.isActive()) {
+                    unitRemote.deactivate();
+                }
+            } catch (CouldNotPerformException | RuntimeException ex) {
+                logger.warn("Could not deactivate remote of unit {}", unitId, ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Record an observer added to the remote of a unit. Every call has to be matched by a call of
+     * {@link #observerRemoved(String)} once the observer is removed again.
+     *
+     * @param unitId the id of the unit.
+     */
+    public void observerAdded(final String unitId) {
+        synchronized (poolLock) {
+            observerCountMap.merge(unitId, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Record an observer removed from the remote of a unit.
+     *
+     * @param unitId the id of the unit.
+     */
+    public void observerRemoved(final String unitId) {
+        synchronized (poolLock) {
+            observerCountMap.computeIfPresent(unitId, (key, observerCount) -> observerCount > 1 ? observerCount - 1 : null);
+        }
+    }
+
+    /**
+     * @return the number of references currently held.
+     */
+    public int getReferenceCount() {
+        synchronized (poolLock) {
+            int referenceCount = 0;
+            for (final RemoteEntry remoteEntry : remoteEntryMap.values()) {
+                referenceCount += remoteEntry.referenceCount;
+            }
+            return referenceCount;
+        }
+    }
+
+    /**
+     * @return the number of references held per unit id, sorted by unit id.
+     */
+    public Map<String, Integer> getReferenceCountMap() {
+        synchronized (poolLock) {
+            final Map<String, Integer> referenceCountMap = new TreeMap<>();
+            for (final RemoteEntry remoteEntry : remoteEntryMap.values()) {
+                if (remoteEntry.referenceCount > 0) {
+                    referenceCountMap.put(remoteEntry.unitId, remoteEntry.referenceCount);
+                }
+            }
+            return referenceCountMap;
+        }
+    }
+
+    /**
+     * Note: Remotes are only deactivated by this pool, so a remote listed here was either activated again by
+     * someone else or could not be deactivated.
+     *
+     * @return the ids of all units whose remote has been released completely but is still active, sorted by unit id.
+     */
+    public List<String> getActiveReleasedRemoteIds() {
+        final List<RemoteEntry> releasedEntryList = new ArrayList<>();
+        synchronized (poolLock) {
+            for (final RemoteEntry remoteEntry : remoteEntryMap.values()) {
+                if (remoteEntry.referenceCount == 0 && remoteEntry.unitRemote != null) {
+                    releasedEntryList.add(remoteEntry);
+                }
+            }
+        }
+
+        final List<String> unitIdList = new ArrayList<>();
+        for (final RemoteEntry remoteEntry : releasedEntryList) {
+            final UnitRemote<?> unitRemote = remoteEntry.unitRemote;
+            if (unitRemote != null && unitRemote.isActive()) {
+                unitIdList.add(remoteEntry.unitId);
+            }
+        }
+        unitIdList.sort(null);
+        return unitIdList;
+    }
+
+    /**
+     * @return the number of observers currently registered on remotes.
+     */
+    public int getObserverCount() {
+        synchronized (poolLock) {
+            int observerCount = 0;
+            for (final int count : observerCountMap.values()) {
+                observerCount += count;
+            }
+            return observerCount;
+        }
+    }
+
+    /**
+     * @return the number of observers registered per unit id, sorted by unit id.
+     */
+    public Map<String, Integer> getObserverCountMap() {
+        synchronized (poolLock) {
+            return new TreeMap<>(observerCountMap);
+        }
+    }
+
+    /**
+     * The remote of a unit together with the number of references held on it. Entries are kept after the last
+     * release, so that released remotes can still be checked for deactivation.
+     */
+    private static class RemoteEntry {
+
+        private final String unitId;
+        private volatile @Nullable UnitRemote<?> unitRemote;
+        private int referenceCount;
+
+        private RemoteEntry(final String unitId) {
+            this.unitId = unitId;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.eclipse.smarthome.binding.bco.internal;
+
+/*-
+ * #%L
+ * BCO Binding
+ * %%
+ * Copyright (C) 2018 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.State;
+import org.junit.Test;
+import org.openbase.type.domotic.service.ServiceTemplateType.ServiceTemplate.ServiceType;
+import org.openbase.type.domotic.state.PowerStateType.PowerState;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Tamino Huxohl - Initial contribution
+ */
+public class ChannelStateStoreTest {
+
+    private static final EnumSet<ServiceType> SERVICE_TYPES = EnumSet.of(ServiceType.POWER_STATE_SERVICE, ServiceType.BRIGHTNESS_STATE_SERVICE);
+
+    @Test
+    public void testSlotReuse() {
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        channelStateStore.register("unit-a", SERVICE_TYPES);
+        final int powerSlot = channelStateStore.getSlot("unit-a", ServiceType.POWER_STATE_SERVICE);
+        final int brightnessSlot = channelStateStore.getSlot("unit-a", ServiceType.BRIGHTNESS_STATE_SERVICE);
+        final PowerState powerState = PowerState.newBuilder().setValue(PowerState.State.ON).build();
+        channelStateStore.put(powerSlot, Arrays.asList(OnOffType.ON), powerState);
+        channelStateStore.put(brightnessSlot, new StringType("object"));
+        channelStateStore.unregister("unit-a");
+
+        // a unit with the same number of services reuses the released block
+        channelStateStore.register("unit-b", EnumSet.of(ServiceType.POWER_STATE_SERVICE, ServiceType.COLOR_STATE_SERVICE));
+        final int reusedPowerSlot = channelStateStore.getSlot("unit-b", ServiceType.POWER_STATE_SERVICE);
+        final int reusedColorSlot = channelStateStore.getSlot("unit-b", ServiceType.COLOR_STATE_SERVICE);
+        assertEquals(Math.min(powerSlot, brightnessSlot), Math.min(reusedPowerSlot, reusedColorSlot));
+        assertEquals(Math.max(powerSlot, brightnessSlot), Math.max(reusedPowerSlot, reusedColorSlot));
+        assertEquals(-1, channelStateStore.getSlot("unit-a", ServiceType.POWER_STATE_SERVICE));
+
+        // nothing of the previous unit is visible in the reused slots
+        for (final int slot : new int[]{reusedPowerSlot, reusedColorSlot}) {
+            assertEquals(ChannelStateStore.Kind.EMPTY, channelStateStore.getKind(slot));
+            assertTrue(channelStateStore.getStates(slot).isEmpty());
+            assertNull(channelStateStore.getState(slot));
+            assertFalse(channelStateStore.equalsServiceState(slot, powerState));
+        }
+        assertFalse(channelStateStore.equalsState(reusedPowerSlot, OnOffType.ON));
+        assertFalse(channelStateStore.equalsState(reusedColorSlot, new StringType("object")));
+        assertEquals(2, channelStateStore.getSlotCount());
+    }
+
+    @Test
+    public void testDecimalScaleIsPreserved() {
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        channelStateStore.register("unit", SERVICE_TYPES);
+        final int slot = channelStateStore.getSlot("unit", ServiceType.BRIGHTNESS_STATE_SERVICE);
+
+        for (final State state : new State[]{new PercentType("50"), new PercentType("50.0"), new PercentType("0.125"), new DecimalType("12.340"), new DecimalType("-3"), new DecimalType("123456789012345678")}) {
+            channelStateStore.put(slot, state);
+            final State restoredState = channelStateStore.getState(slot);
+            assertEquals(state, restoredState);
+            assertEquals(state.toFullString(), restoredState.toFullString());
+            assertEquals(state.getClass(), restoredState.getClass());
+            assertTrue(channelStateStore.equalsState(slot, state));
+            assertEquals(((DecimalType) state).doubleValue(), channelStateStore.getValue(slot), 0);
+        }
+        assertEquals(ChannelStateStore.Kind.DECIMAL, channelStateStore.getKind(slot));
+
+        // values which do not fit into a long or have a negative scale are kept as objects
+        for (final State state : new State[]{new DecimalType(new BigDecimal("1234567890123456789012.5")), new DecimalType(new BigDecimal("1E+3"))}) {
+            channelStateStore.put(slot, state);
+            assertEquals(ChannelStateStore.Kind.OBJECT, channelStateStore.getKind(slot));
+            assertEquals(state.toFullString(), channelStateStore.getState(slot).toFullString());
+            assertTrue(channelStateStore.equalsState(slot, state));
+        }
+    }
+
+    @Test
+    public void testWriteCountWrapsAround() {
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        channelStateStore.register("unit", SERVICE_TYPES);
+        final int slot = channelStateStore.getSlot("unit", ServiceType.POWER_STATE_SERVICE);
+
+        // more writes than the write count of a stamp can hold, with the kind changing on every write
+        final int writeCount = (1 << 23) + 5;
+        final State objectState = new StringType("object");
+        for (int i = 0; i < writeCount; i++) {
+            channelStateStore.put(slot, (i & 1) == 0 ? OnOffType.ON : objectState);
+            if ((i & 0xFFFFF) == 0) {
+                assertEquals(OnOffType.ON, channelStateStore.getState(slot));
+            }
+        }
+        assertEquals(OnOffType.ON, channelStateStore.getState(slot));
+        channelStateStore.put(slot, new PercentType("42.5"));
+        assertEquals(new PercentType("42.5"), channelStateStore.getState(slot));
+        assertTrue(channelStateStore.equalsState(slot, new PercentType("42.5")));
+        channelStateStore.clear(slot);
+        assertEquals(ChannelStateStore.Kind.EMPTY, channelStateStore.getKind(slot));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentReadWrite() throws Exception {
+        final ChannelStateStore channelStateStore = new ChannelStateStore();
+        channelStateStore.register("unit", SERVICE_TYPES);
+        final int slot = channelStateStore.getSlot("unit", ServiceType.BRIGHTNESS_STATE_SERVICE);
+        channelStateStore.put(slot, new DecimalType(BigDecimal.ZERO));
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            try {
+                for (int i = 1; i <= 500000; i++) {
+                    switch (i % 3) {
+                        case 0:
+                            // the scale is derived from the value, so a torn read mixes up both
+                            channelStateStore.put(slot, new DecimalType(BigDecimal.valueOf(i, i % 7)));
+                            break;
+                        case 1:
+                            channelStateStore.put(slot, new StringType(Integer.toString(i)));
+                            break;
+                        default:
+                            final DecimalType state = new DecimalType(i);
+                            channelStateStore.put(slot, Arrays.asList(state, state), null);
+                            break;
+                    }
+                }
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            } finally {
+                running.set(false);
+            }
+        });
+
+        final Runnable reader = () -> {
+            try {
+                while (running.get()) {
+                    final List<State> stateList = channelStateStore.getStates(slot);
+                    if (stateList.isEmpty()) {
+                        throw new AssertionError("Read empty slot");
+                    }
+                    final State state = stateList.get(0);
+                    if (stateList.size() == 2) {
+                        assertEquals(state, stateList.get(1));
+                    } else if (state instanceof DecimalType) {
+                        final BigDecimal value = ((DecimalType) state).toBigDecimal();
+                        assertEquals(value.unscaledValue().longValue() % 7, value.scale());
+                    } else {
+                        Integer.parseInt(state.toString());
+                    }
+                    // a state read before is either still stored or has been replaced
+                    channelStateStore.equalsState(slot, state);
+                }
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            }
+        };
+
+        final Thread[] readers = new Thread[]{new Thread(reader), new Thread(reader)};
+        for (final Thread thread : readers) {
+            thread.start();
+        }
+        writer.start();
+        writer.join();
+        for (final Thread thread : readers) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Concurrent access failed", failure.get());
+        }
+        final DecimalType lastState = new DecimalType(500000);
+        assertEquals(Arrays.asList(lastState, lastState), channelStateStore.getStates(slot));
+    }
+}